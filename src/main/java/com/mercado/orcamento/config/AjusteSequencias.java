@@ -0,0 +1,71 @@
+package com.mercado.orcamento.config;
+
+import com.mercado.orcamento.model.PrecoAtual;
+import com.mercado.orcamento.model.Produto;
+import com.mercado.orcamento.model.RegistroPreco;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Migração única: posiciona as sequences de id à frente dos ids já gravados.
+ *
+ * As tabelas criadas quando os ids eram IDENTITY já têm linhas, mas o ddl-auto cria a sequence
+ * começando em 1. Roda logo depois do EntityManagerFactory (que cria as sequences), ainda durante a
+ * subida do contexto: o Tomcat só aceita requisições depois, então nenhum insert pegou um bloco da
+ * sequence antiga. A sequence é reiniciada em MAX(id) + bloco + 1 (o otimizador pooled do Hibernate
+ * usa o valor lido como topo do bloco).
+ *
+ * A execução fica registrada em {@code migracao_aplicada} e não se repete nas próximas subidas.
+ * Qualquer falha interrompe a subida: seguir com as sequences em 1 faria todo insert colidir.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class AjusteSequencias {
+
+    private static final Logger logger = LoggerFactory.getLogger(AjusteSequencias.class);
+
+    static final String MIGRACAO = "ajuste-sequencias-identity";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transacao;
+
+    public AjusteSequencias(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transacao = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void ajustar() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS migracao_aplicada ("
+                + "nome VARCHAR(100) PRIMARY KEY, aplicada_em TIMESTAMP NOT NULL)");
+        Integer aplicada = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM migracao_aplicada WHERE nome = ?", Integer.class, MIGRACAO);
+        if (aplicada != null && aplicada > 0) {
+            logger.debug("Migracao {} ja aplicada", MIGRACAO);
+            return;
+        }
+
+        // Sequences e registro da migração juntos: se algo falhar, a próxima subida tenta de novo
+        transacao.executeWithoutResult(status -> {
+            ajustar("produto_seq", "produto", Produto.BLOCO_IDS);
+            ajustar("registro_preco_seq", "registro_preco", RegistroPreco.BLOCO_IDS);
+            ajustar("preco_atual_seq", "preco_atual", PrecoAtual.BLOCO_IDS);
+            jdbcTemplate.update("INSERT INTO migracao_aplicada (nome, aplicada_em) VALUES (?, CURRENT_TIMESTAMP)", MIGRACAO);
+        });
+        logger.info("Migracao {} aplicada", MIGRACAO);
+    }
+
+    private void ajustar(String sequence, String tabela, int bloco) {
+        Long maiorId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + tabela, Long.class);
+        if (maiorId == null) return; // Tabela vazia: a sequence já começa do início
+        long reinicio = maiorId + bloco + 1;
+        jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + reinicio);
+        logger.info("Sequence {} reiniciada em {} (maior id em {}: {})", sequence, reinicio, tabela, maiorId);
+    }
+}
@@ -23,6 +23,7 @@ public class WebMvcConfig implements WebMvcConfigurer {
                         "/favicon.ico",
                         "/error",
                         "/h2-console/**",
+                        "/actuator/prometheus", // Coleta de métricas (Prometheus) não cria sessão
                         "/api/logout" // Permite logout sem validar token novamente (embora o método precise dele)
                 );
     }
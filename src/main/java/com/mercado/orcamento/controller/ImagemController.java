@@ -1,13 +1,26 @@
 package com.mercado.orcamento.controller;
 
 import com.mercado.orcamento.dto.DadosExtraidos;
+import com.mercado.orcamento.dto.FotoArmazenada;
+import com.mercado.orcamento.dto.ResumoUploadLote;
+import com.mercado.orcamento.dto.StatusJobOcr;
+import com.mercado.orcamento.dto.StatusLoteOcr;
+import com.mercado.orcamento.service.OcrJobService;
+import com.mercado.orcamento.service.OcrLoteService;
+import com.mercado.orcamento.service.ArmazenamentoFotos;
+import com.mercado.orcamento.service.IndiceGaleria;
+import com.mercado.orcamento.service.MiniaturaService;
 import com.mercado.orcamento.service.OcrService;
+import com.mercado.orcamento.service.ProcessamentoUploadService;
+import com.mercado.orcamento.service.UploadLoteService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -16,20 +29,19 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.MalformedURLException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
-import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @Controller
 public class ImagemController {
@@ -38,60 +50,113 @@ public class ImagemController {
 
     private final String CAMINHO_FOTOS = "C:\\Users\\Borges\\Downloads\\MERCADO_FOTOS";
     private final OcrService ocrService;
+    private final OcrJobService ocrJobService;
+    private final OcrLoteService ocrLoteService;
+    private final ProcessamentoUploadService processamentoUploadService;
+    private final MiniaturaService miniaturaService;
+    private final IndiceGaleria indiceGaleria;
+    private final ArmazenamentoFotos armazenamentoFotos;
+    private final UploadLoteService uploadLoteService;
     
-    // Cache simples para evitar ler o disco toda hora
-    private List<String> cacheImagens = Collections.emptyList();
-    private long ultimaAtualizacaoCache = 0;
-
-    public ImagemController(OcrService ocrService) {
+    public ImagemController(OcrService ocrService, OcrJobService ocrJobService, OcrLoteService ocrLoteService,
+                            ProcessamentoUploadService processamentoUploadService, MiniaturaService miniaturaService,
+                            IndiceGaleria indiceGaleria, ArmazenamentoFotos armazenamentoFotos,
+                            UploadLoteService uploadLoteService) {
         this.ocrService = ocrService;
+        this.ocrJobService = ocrJobService;
+        this.ocrLoteService = ocrLoteService;
+        this.processamentoUploadService = processamentoUploadService;
+        this.miniaturaService = miniaturaService;
+        this.indiceGaleria = indiceGaleria;
+        this.armazenamentoFotos = armazenamentoFotos;
+        this.uploadLoteService = uploadLoteService;
     }
 
-    // Retorna a lista de nomes de arquivos de imagem
+    // Retorna a lista de nomes de arquivos de imagem (snapshot do índice, sem acessar o disco)
     public List<String> listarImagens() {
-        long agora = System.currentTimeMillis();
-        
-        // Atualiza o cache apenas se passou 5 minutos (300.000 ms)
-        if (agora - ultimaAtualizacaoCache < 300000 && !cacheImagens.isEmpty()) {
-            return cacheImagens;
-        }
-        
-        try (Stream<Path> paths = Files.walk(Paths.get(CAMINHO_FOTOS))) {
-            cacheImagens = paths
-                    .filter(Files::isRegularFile)
-                    .map(Path::getFileName)
-                    .map(Path::toString)
-                    .filter(nome -> nome.toLowerCase().endsWith(".jpg") || nome.toLowerCase().endsWith(".jpeg") || nome.toLowerCase().endsWith(".png"))
-                    .collect(Collectors.toList());
-            ultimaAtualizacaoCache = agora;
-            return cacheImagens;
-        } catch (IOException e) {
-            logger.error("Erro ao listar imagens do diretório {}: ", CAMINHO_FOTOS, e);
-            return Collections.emptyList();
-        }
+        return indiceGaleria.listarNomes();
     }
 
-    // Serve a imagem para o navegador conseguir mostrar
+    // Serve a imagem para o navegador conseguir mostrar.
+    // ?tamanho=mini|media devolve uma versão reduzida (cache em disco); sem tamanho, o original.
+    // A redução roda no pool de miniaturas, fora da thread do Tomcat; com o pool lotado vai o original,
+    // sem cache, e o navegador pega a miniatura numa próxima visita.
+    // ETag/Last-Modified permitem 304 e, por ser Resource, o Spring atende requisições Range (206).
     @GetMapping("/imagens/{nomeArquivo:.+}")
     @ResponseBody
-    public ResponseEntity<Resource> servirImagem(@PathVariable String nomeArquivo) {
+    public CompletableFuture<ResponseEntity<Resource>> servirImagem(@PathVariable String nomeArquivo,
+                                                                    @RequestParam(required = false) String tamanho) {
+        Path diretorio = Paths.get(CAMINHO_FOTOS).toAbsolutePath().normalize();
+        Path arquivoPath = diretorio.resolve(nomeArquivo).normalize();
+        if (!arquivoPath.startsWith(diretorio)) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        if (!Files.isReadable(arquivoPath)) {
+            return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
+        }
+        if (tamanho == null) {
+            return CompletableFuture.completedFuture(responderImagem(nomeArquivo, arquivoPath, arquivoPath, null));
+        }
+
+        Integer lado = miniaturaService.ladoDoTamanho(tamanho);
+        if (lado == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
         try {
-            Path arquivoPath = Paths.get(CAMINHO_FOTOS).resolve(nomeArquivo);
-            Resource resource = new UrlResource(arquivoPath.toUri());
-
-            if (resource.exists() || resource.isReadable()) {
-                return ResponseEntity.ok()
-                        .cacheControl(CacheControl.maxAge(30, TimeUnit.DAYS)) // Cache de 30 dias
-                        .contentType(MediaType.IMAGE_JPEG) // Assumindo JPEG, o navegador se vira com outros
-                        .body(resource);
-            } else {
-                return ResponseEntity.notFound().build();
+            Path pronta = miniaturaService.pronta(arquivoPath, lado);
+            if (pronta != null) {
+                return CompletableFuture.completedFuture(responderImagem(nomeArquivo, arquivoPath, pronta, tamanho));
             }
-        } catch (MalformedURLException e) {
-            return ResponseEntity.badRequest().build();
+            return miniaturaService.agendar(arquivoPath, lado)
+                    .handle((reduzida, erro) -> {
+                        if (erro == null) {
+                            return responderImagem(nomeArquivo, arquivoPath, reduzida, tamanho);
+                        }
+                        // Imagem que o ImageIO não decodifica: o navegador ainda pode mostrar o original
+                        logger.warn("Falha ao reduzir {} para {}: {}", nomeArquivo, tamanho, erro.getMessage());
+                        return responderImagem(nomeArquivo, arquivoPath, arquivoPath, null);
+                    });
+        } catch (RejectedExecutionException e) {
+            logger.debug("Fila de miniaturas cheia. {} servida no tamanho original", nomeArquivo);
+            return CompletableFuture.completedFuture(responderOriginalSemCache(arquivoPath));
+        } catch (IOException e) {
+            logger.error("Erro ao servir imagem {}: ", nomeArquivo, e);
+            return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
         }
     }
 
+    private ResponseEntity<Resource> responderImagem(String nomeArquivo, Path original, Path servido, String tamanho) {
+        try {
+            long tamanhoBytes = Files.size(servido);
+            long modificadoEm = Files.getLastModifiedTime(servido).toMillis();
+            // ETag forte: muda sempre que o arquivo servido (original ou reduzido) muda
+            String etag = "\"" + Long.toHexString(tamanhoBytes) + "-" + Long.toHexString(modificadoEm)
+                    + (servido.equals(original) ? "" : "-" + tamanho.toLowerCase()) + "\"";
+
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.maxAge(30, TimeUnit.DAYS)) // Cache de 30 dias
+                    .eTag(etag)
+                    .lastModified(modificadoEm)
+                    .contentType(tipoDaImagem(servido))
+                    .body(new FileSystemResource(servido));
+        } catch (IOException e) {
+            logger.error("Erro ao servir imagem {}: ", nomeArquivo, e);
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    // Substituto da miniatura: não pode ficar no cache do navegador com a URL da miniatura
+    private ResponseEntity<Resource> responderOriginalSemCache(Path original) {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .contentType(tipoDaImagem(original))
+                .body(new FileSystemResource(original));
+    }
+
+    private static MediaType tipoDaImagem(Path arquivo) {
+        return MediaTypeFactory.getMediaType(arquivo.getFileName().toString()).orElse(MediaType.APPLICATION_OCTET_STREAM);
+    }
+
     // NOVO: Endpoint para extrair dados da imagem via OCR
     @GetMapping("/ocr/{nomeArquivo:.+}")
     @ResponseBody
@@ -100,6 +165,55 @@ public class ImagemController {
         return ResponseEntity.ok(dados);
     }
 
+    // Jobs assíncronos de OCR: devolve o id na hora, o andamento vem por polling ou SSE
+    @PostMapping("/ocr/jobs/{nomeArquivo:.+}")
+    @ResponseBody
+    public ResponseEntity<StatusJobOcr> criarJobOcr(@PathVariable String nomeArquivo) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(ocrJobService.submeter(nomeArquivo));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Fila de jobs OCR cheia. Scan recusado: {}", nomeArquivo);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    @GetMapping("/ocr/jobs/{id}")
+    @ResponseBody
+    public ResponseEntity<StatusJobOcr> consultarJobOcr(@PathVariable String id) {
+        return ocrJobService.consultar(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping(value = "/ocr/jobs/{id}/eventos", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public ResponseEntity<SseEmitter> acompanharJobOcr(@PathVariable String id) {
+        return ocrJobService.acompanhar(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // OCR em lote: a galeria inteira ou os arquivos informados, em paralelo
+    @PostMapping("/ocr/lote")
+    @ResponseBody
+    public ResponseEntity<StatusLoteOcr> iniciarLoteOcr(@RequestParam(required = false) List<String> arquivos) {
+        List<String> selecionados = (arquivos == null || arquivos.isEmpty()) ? listarImagens() : arquivos;
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(ocrLoteService.iniciar(selecionados));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Fila de lotes OCR cheia. Lote de {} imagem(ns) recusado", selecionados.size());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    @GetMapping("/ocr/lote/{id}")
+    @ResponseBody
+    public ResponseEntity<StatusLoteOcr> consultarLoteOcr(@PathVariable String id) {
+        return ocrLoteService.consultar(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     // NOVO: Endpoint para Upload de Imagens
     @PostMapping("/upload")
     public String uploadImagem(@RequestParam("file") MultipartFile file, RedirectAttributes redirectAttributes) {
@@ -109,33 +223,31 @@ public class ImagemController {
         }
 
         try {
-            // Garante que o diretório existe
-            Path diretorio = Paths.get(CAMINHO_FOTOS);
-            if (!Files.exists(diretorio)) {
-                Files.createDirectories(diretorio);
-            }
+            String nomeSeguro = ArmazenamentoFotos.nomeSeguro(file.getOriginalFilename());
 
-            // Normaliza o nome para evitar caminhos vindos do navegador e
-            // caracteres invalidos em Windows durante o upload.
-            String nomeOriginal = file.getOriginalFilename();
-            String nomeSeguro = (nomeOriginal == null || nomeOriginal.isBlank())
-                    ? "imagem-upload.jpg"
-                    : Paths.get(nomeOriginal).getFileName().toString().replaceAll("[\\\\/:*?\"<>|]", "_");
+            // Grava por conteúdo: a mesma foto com outro nome não é duplicada e
+            // fotos diferentes com o mesmo nome não se sobrescrevem
+            FotoArmazenada foto;
+            try (InputStream conteudo = file.getInputStream()) {
+                foto = armazenamentoFotos.armazenar(conteudo, nomeSeguro);
+            }
 
-            Path path = diretorio.resolve(nomeSeguro);
-            if (Files.exists(path)) {
-                logger.info("Arquivo ja existente na galeria. Reutilizando imagem: {}", nomeSeguro);
+            String jobOcr = null;
+            if (foto.isNova()) {
+                // Entra no índice já, sem esperar o evento do WatchService
+                indiceGaleria.registrar(Paths.get(CAMINHO_FOTOS).resolve(foto.getNome()));
+                // OCR e miniatura começam já, enquanto o navegador segue o redirect
+                jobOcr = processamentoUploadService.processar(foto.getNome(), foto.getHash()).jobOcr();
+                redirectAttributes.addFlashAttribute("mensagem", "Imagem pronta para leitura: " + foto.getNome());
             } else {
-                Files.copy(file.getInputStream(), path, StandardCopyOption.REPLACE_EXISTING);
+                // Conteúdo conhecido: OCR e miniatura já existem (ou saem do cache no scan)
+                redirectAttributes.addFlashAttribute("mensagem", "Imagem ja existente na galeria: " + foto.getNome());
             }
 
-            // Invalida o cache para mostrar a nova imagem imediatamente
-            this.cacheImagens = Collections.emptyList();
-            this.ultimaAtualizacaoCache = 0;
-
-            redirectAttributes.addFlashAttribute("mensagem", "Imagem pronta para leitura: " + nomeSeguro);
             // Passa o nome do arquivo para que a tela já possa sugerir o scan
-            redirectAttributes.addFlashAttribute("arquivoRecemCarregado", nomeSeguro);
+            redirectAttributes.addFlashAttribute("arquivoRecemCarregado", foto.getNome());
+            // Id do job já em andamento: a tela acompanha este job em vez de pedir um novo scan
+            redirectAttributes.addFlashAttribute("jobOcrRecemCarregado", jobOcr);
 
         } catch (IOException e) {
             logger.error("Erro ao fazer upload da imagem: {}", file.getOriginalFilename(), e);
@@ -144,4 +256,11 @@ public class ImagemController {
 
         return "redirect:/";
     }
+
+    // Upload em lote: várias fotos e/ou ZIPs numa requisição só, com um resumo no fim
+    @PostMapping("/upload/lote")
+    @ResponseBody
+    public ResponseEntity<ResumoUploadLote> uploadLote(@RequestParam("arquivos") List<MultipartFile> arquivos) {
+        return ResponseEntity.ok(uploadLoteService.importar(arquivos));
+    }
 }
@@ -1,14 +1,33 @@
 package com.mercado.orcamento.controller;
 
+import com.mercado.orcamento.model.Granularidade;
 import com.mercado.orcamento.model.Mercado;
 import com.mercado.orcamento.model.Produto;
 import com.mercado.orcamento.model.TipoPreco;
+import com.mercado.orcamento.service.ConsolidacaoHistoricoService;
+import com.mercado.orcamento.service.ConsultaOrcamentoService;
+import com.mercado.orcamento.service.EstatisticasPrecoService;
+import com.mercado.orcamento.service.ImportacaoPrecosService;
 import com.mercado.orcamento.service.OcrService;
 import com.mercado.orcamento.service.OrcamentoService;
+import com.mercado.orcamento.service.OtimizadorCesta;
 import com.mercado.orcamento.service.SessaoService;
+import com.mercado.orcamento.service.VersaoDados;
 import com.mercado.orcamento.dto.DadosExtraidos;
+import com.mercado.orcamento.dto.EstatisticaPrecoDTO;
+import com.mercado.orcamento.dto.HistoricoPrecoDTO;
+import com.mercado.orcamento.dto.PaginaDTO;
+import com.mercado.orcamento.dto.PrecoAtualDTO;
+import com.mercado.orcamento.dto.ProdutoResumoDTO;
+import com.mercado.orcamento.dto.RegistroPrecoDTO;
+import com.mercado.orcamento.dto.ResultadoCestaDTO;
+import com.mercado.orcamento.dto.ResumoConsolidacaoHistorico;
+import com.mercado.orcamento.dto.ResumoPrecoDTO;
+import com.mercado.orcamento.dto.ResumoImportacaoPrecos;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,11 +40,16 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.CookieValue;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
+import java.util.EnumSet;
 import java.util.List;
-
-import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.function.Supplier;
 
 @Controller
 public class OrcamentoController {
@@ -35,15 +59,29 @@ public class OrcamentoController {
     private final OrcamentoService service;
     private final ImagemController imagemController;
     private final OcrService ocrService;
-    private final ObjectMapper objectMapper;
     private final SessaoService sessaoService;
+    private final ConsultaOrcamentoService consultaService;
+    private final VersaoDados versaoDados;
+    private final ImportacaoPrecosService importacaoPrecosService;
+    private final OtimizadorCesta otimizadorCesta;
+    private final ConsolidacaoHistoricoService consolidacaoHistorico;
+    private final EstatisticasPrecoService estatisticasPreco;
 
-    public OrcamentoController(OrcamentoService service, ImagemController imagemController, OcrService ocrService, ObjectMapper objectMapper, SessaoService sessaoService) {
+    public OrcamentoController(OrcamentoService service, ImagemController imagemController, OcrService ocrService, SessaoService sessaoService,
+                               ConsultaOrcamentoService consultaService,
+                               VersaoDados versaoDados, ImportacaoPrecosService importacaoPrecosService,
+                               OtimizadorCesta otimizadorCesta, ConsolidacaoHistoricoService consolidacaoHistorico,
+                               EstatisticasPrecoService estatisticasPreco) {
         this.service = service;
         this.imagemController = imagemController;
         this.ocrService = ocrService;
-        this.objectMapper = objectMapper;
         this.sessaoService = sessaoService;
+        this.consultaService = consultaService;
+        this.versaoDados = versaoDados;
+        this.importacaoPrecosService = importacaoPrecosService;
+        this.otimizadorCesta = otimizadorCesta;
+        this.consolidacaoHistorico = consolidacaoHistorico;
+        this.estatisticasPreco = estatisticasPreco;
     }
 
     @GetMapping("/")
@@ -51,30 +89,12 @@ public class OrcamentoController {
         try {
             long inicio = System.currentTimeMillis();
             
-            List<Produto> itens = service.listarItens();
-            model.addAttribute("itens", itens);
-            
+            // Produtos, lista de compras e histórico não vêm no HTML: a página busca em /api/produtos
             model.addAttribute("mercados", Mercado.values());
             model.addAttribute("tiposPreco", TipoPreco.values());
             
-            model.addAttribute("tabelaPrecos", service.listarPrecosPlanos());
             model.addAttribute("fotos", imagemController.listarImagens());
             
-            // Verifica se a lista de compras está vazia (para uso na View)
-            boolean listaVazia = itens == null || itens.stream().noneMatch(Produto::isNaListaDeCompras);
-            model.addAttribute("listaVazia", listaVazia);
-            
-            // Serializa os itens para JSON para uso no JavaScript (Lógica de Melhor Preço)
-            String itensJson = "[]";
-            try {
-                if (itens != null && !itens.isEmpty()) {
-                    itensJson = objectMapper.writeValueAsString(itens);
-                }
-            } catch (Exception e) {
-                logger.error("Erro ao serializar itens para JSON: ", e);
-            }
-            model.addAttribute("itensJson", itensJson);
-            
             long fim = System.currentTimeMillis();
             logger.info("Tempo processamento Controller Index: {}ms", (fim - inicio));
             
@@ -116,6 +136,35 @@ public class OrcamentoController {
         return ResponseEntity.ok().build();
     }
 
+    // Vários itens de uma vez: ids=1,2,3 (ou ids repetido); responde quantos mudaram de estado
+    @PostMapping("/api/lista-compras")
+    @ResponseBody
+    public ResponseEntity<Integer> atualizarListaComprasEmLote(@RequestParam List<Long> ids, @RequestParam boolean naLista) {
+        return ResponseEntity.ok(service.atualizarStatusListaCompras(ids, naLista));
+    }
+
+    // Mercado único mais barato e melhor divisão da lista em até maxMercados mercados,
+    // com as mesmas preferências da aba "Quero Comprar" (tipos aceitos e mercados com cartão)
+    @GetMapping("/api/lista-compras/otimizacao")
+    @ResponseBody
+    public ResponseEntity<ResultadoCestaDTO> otimizarListaCompras(@RequestParam(defaultValue = "2") int maxMercados,
+                                                                  @RequestParam(defaultValue = "VAREJO,ATACADO") List<TipoPreco> tipos,
+                                                                  @RequestParam(required = false) List<Mercado> cartoes,
+                                                                  WebRequest request) {
+        String etag = versaoDados.etag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        ResultadoCestaDTO resultado = otimizadorCesta.otimizar(
+                tipos.isEmpty() ? EnumSet.noneOf(TipoPreco.class) : EnumSet.copyOf(tipos),
+                cartoes == null || cartoes.isEmpty() ? EnumSet.noneOf(Mercado.class) : EnumSet.copyOf(cartoes),
+                maxMercados);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(resultado);
+    }
+
     @PostMapping("/importarLista")
     public String importarLista(@RequestParam String listaRapida) {
         service.importarListaRapida(listaRapida);
@@ -154,6 +203,149 @@ public class OrcamentoController {
         return "redirect:/?tab=home";
     }
 
+    // Histórico de preços sob demanda (a tela principal só carrega os preços vigentes)
+    @GetMapping("/api/produtos/{idItem}/historico")
+    @ResponseBody
+    public ResponseEntity<List<HistoricoPrecoDTO>> historicoPrecos(@PathVariable Long idItem) {
+        return ResponseEntity.ok(service.listarHistorico(idItem));
+    }
+
+    // Tendência por dia/semana/mês a partir dos agregados (cobre também o que já saiu da retenção do bruto)
+    @GetMapping("/api/produtos/{idItem}/historico/resumo")
+    @ResponseBody
+    public ResponseEntity<List<ResumoPrecoDTO>> resumoHistoricoPrecos(@PathVariable Long idItem,
+                                                                      @RequestParam(defaultValue = "SEMANA") Granularidade granularidade,
+                                                                      @RequestParam(required = false) Mercado mercado,
+                                                                      @RequestParam(required = false) TipoPreco tipoPreco) {
+        return ResponseEntity.ok(consolidacaoHistorico.listarSerie(idItem, granularidade, mercado, tipoPreco));
+    }
+
+    // Mínimo/média/máximo/último de todos os produtos com preço (ou só dos ids pedidos), saídos da
+    // tabela em memória: o mesmo custo para um produto ou para o catálogo inteiro
+    @GetMapping("/api/precos/estatisticas")
+    @ResponseBody
+    public ResponseEntity<List<EstatisticaPrecoDTO>> estatisticasPrecos(@RequestParam(required = false) List<Long> ids,
+                                                                        WebRequest request) {
+        String etag = versaoDados.etag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        List<EstatisticaPrecoDTO> estatisticas = ids == null || ids.isEmpty()
+                ? estatisticasPreco.listar()
+                : estatisticasPreco.listar(ids);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(estatisticas);
+    }
+
+    // Consolidação sob demanda (normalmente roda sozinha, ver visionmarket.precos.historico.intervalo-minutos)
+    @PostMapping("/api/precos/historico/consolidacao")
+    @ResponseBody
+    public ResponseEntity<ResumoConsolidacaoHistorico> consolidarHistorico() {
+        return ResponseEntity.ok(consolidacaoHistorico.consolidar());
+    }
+
+    // Importação em massa (encarte): multipart "arquivo" ou o CSV/JSON direto no corpo da requisição.
+    // Linhas inválidas ou de produtos desconhecidos voltam em "rejeicoes" (linha -> motivo).
+    // Não é atômica: se a leitura falhar no meio, responde 422 com o resumo e "linhaInterrupcao";
+    // o que veio antes dessa linha já está gravado, então o reenvio deve começar nela.
+
+    @PostMapping(value = "/api/precos/importacao", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @ResponseBody
+    public ResponseEntity<ResumoImportacaoPrecos> importarPrecos(@RequestParam("arquivo") MultipartFile arquivo) {
+        String tipo = arquivo.getContentType() + " " + arquivo.getOriginalFilename();
+        try (InputStream entrada = arquivo.getInputStream()) {
+            return respostaImportacao(importacaoPrecosService.importar(entrada, tipo));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Importacao de precos recusada: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IOException e) {
+            logger.error("Erro ao ler arquivo de precos: ", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @PostMapping(value = "/api/precos/importacao", consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    @ResponseBody
+    public ResponseEntity<ResumoImportacaoPrecos> importarPrecos(InputStream corpo,
+                                                                 @RequestHeader(HttpHeaders.CONTENT_TYPE) String tipo) {
+        try {
+            return respostaImportacao(importacaoPrecosService.importar(corpo, tipo));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Importacao de precos recusada: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IOException e) {
+            logger.error("Erro ao ler precos da requisicao: ", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    private static ResponseEntity<ResumoImportacaoPrecos> respostaImportacao(ResumoImportacaoPrecos resumo) {
+        return resumo.getLinhaInterrupcao() == null
+                ? ResponseEntity.ok(resumo)
+                : ResponseEntity.unprocessableEntity().body(resumo);
+    }
+
+    // APIs paginadas por cursor: ?cursor=<proximoCursor da página anterior>&limite=50 (máx. 200).
+    // Respondem 304 quando o If-None-Match ainda é a versão atual dos dados, sem consultar o banco.
+
+    @GetMapping("/api/produtos")
+    @ResponseBody
+    public ResponseEntity<PaginaDTO<ProdutoResumoDTO>> listarProdutos(@RequestParam(required = false) String q,
+                                                                     @RequestParam(required = false) Boolean naLista,
+                                                                     @RequestParam(required = false) String cursor,
+                                                                     @RequestParam(required = false) Integer limite,
+                                                                     WebRequest request) {
+        String etag = versaoDados.etag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return respostaPaginada(etag, () -> consultaService.listarProdutos(q, naLista, cursor, limite));
+    }
+
+    @GetMapping("/api/precos")
+    @ResponseBody
+    public ResponseEntity<PaginaDTO<PrecoAtualDTO>> listarPrecos(@RequestParam(required = false) Long produtoId,
+                                                                @RequestParam(required = false) Mercado mercado,
+                                                                @RequestParam(required = false) TipoPreco tipoPreco,
+                                                                @RequestParam(required = false) String cursor,
+                                                                @RequestParam(required = false) Integer limite,
+                                                                WebRequest request) {
+        String etag = versaoDados.etag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return respostaPaginada(etag, () -> consultaService.listarPrecos(produtoId, mercado, tipoPreco, cursor, limite));
+    }
+
+    @GetMapping("/api/precos/tabela")
+    @ResponseBody
+    public ResponseEntity<PaginaDTO<RegistroPrecoDTO>> listarTabelaPrecos(@RequestParam(required = false) String q,
+                                                                         @RequestParam(required = false) Mercado mercado,
+                                                                         @RequestParam(required = false) TipoPreco tipoPreco,
+                                                                         @RequestParam(required = false) String cursor,
+                                                                         @RequestParam(required = false) Integer limite,
+                                                                         WebRequest request) {
+        String etag = versaoDados.etag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return respostaPaginada(etag, () -> consultaService.listarTabelaPrecos(q, mercado, tipoPreco, cursor, limite));
+    }
+
+    private <T> ResponseEntity<PaginaDTO<T>> respostaPaginada(String etag, Supplier<PaginaDTO<T>> consulta) {
+        try {
+            PaginaDTO<T> pagina = consulta.get();
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache()) // Sempre revalida, mas pode reaproveitar com 304
+                    .body(pagina);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build(); // Cursor inválido
+        }
+    }
+
     @GetMapping("/acesso-negado")
     public String acessoNegado() {
         return "acesso-negado";
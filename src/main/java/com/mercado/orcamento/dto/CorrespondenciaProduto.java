@@ -0,0 +1,12 @@
+package com.mercado.orcamento.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class CorrespondenciaProduto {
+    private Long produtoId;
+    private String nome;
+    private double pontuacao; // 0..1: fração das palavras do nome encontradas no texto, ponderada pela distância
+}
@@ -11,4 +11,8 @@ public class DadosExtraidos {
     private String pesoEncontrado;
     private String nomePossivel;
     private String codigoBarras;
+    private String formatoCodigoBarras; // Ex: EAN_13, QR_CODE
+    private String nivelCodigoBarras;   // Nível do leitor que encontrou o código (ver LeitorCodigoBarras)
+    private Long produtoId;             // Produto do catálogo reconhecido no texto (índice fuzzy)
+    private String produtoCatalogo;
 }
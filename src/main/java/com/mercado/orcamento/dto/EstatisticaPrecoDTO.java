@@ -0,0 +1,19 @@
+package com.mercado.orcamento.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class EstatisticaPrecoDTO {
+    private Long produtoId;
+    private BigDecimal minimo;
+    private BigDecimal media;
+    private BigDecimal maximo;
+    private BigDecimal ultimo;         // Preço vigente mais recente (qualquer mercado/tipo)
+    private LocalDateTime dataUltimo;
+    private long quantidade;           // Registros de preço no histórico (consolidado + bruto)
+}
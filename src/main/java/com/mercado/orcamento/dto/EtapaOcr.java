@@ -0,0 +1,20 @@
+package com.mercado.orcamento.dto;
+
+public enum EtapaOcr {
+    NA_FILA("Aguardando na fila"),
+    PRE_PROCESSAMENTO("Preparando imagem"),
+    CODIGO_BARRAS("Lendo código de barras"),
+    OCR("Lendo texto (OCR)"),
+    INTERPRETACAO("Interpretando texto"),
+    CONCLUIDO("Concluído");
+
+    private final String descricao;
+
+    EtapaOcr(String descricao) {
+        this.descricao = descricao;
+    }
+
+    public String getDescricao() {
+        return descricao;
+    }
+}
@@ -0,0 +1,12 @@
+package com.mercado.orcamento.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class FotoArmazenada {
+    private String nome;      // Nome do arquivo na galeria (pode diferir do enviado)
+    private String hash;      // SHA-256 do conteúdo
+    private boolean nova;     // false = conteúdo já existia na galeria, nada foi gravado
+}
@@ -0,0 +1,14 @@
+package com.mercado.orcamento.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class FotoGaleria {
+    private String nome;
+    private long tamanhoBytes;
+    private long modificadoEm;  // epoch ms
+    private int largura;        // 0 se o cabeçalho da imagem não pôde ser lido
+    private int altura;
+}
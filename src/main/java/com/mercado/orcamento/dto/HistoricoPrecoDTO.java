@@ -0,0 +1,16 @@
+package com.mercado.orcamento.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class HistoricoPrecoDTO {
+    private String mercado;      // Nome do enum (ex: "ATACADAO")
+    private String tipoPreco;    // Nome do enum (ex: "VAREJO")
+    private BigDecimal valor;
+    private LocalDateTime dataRegistro;
+}
@@ -0,0 +1,18 @@
+package com.mercado.orcamento.dto;
+
+import com.mercado.orcamento.model.Mercado;
+import com.mercado.orcamento.model.TipoPreco;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+public class ItemCestaDTO {
+    private Long produtoId;
+    private String nome;
+    private Mercado mercado;            // null quando o item não tem preço no plano
+    private TipoPreco tipoPreco;
+    private BigDecimal valor;
+}
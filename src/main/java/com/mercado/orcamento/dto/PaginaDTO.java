@@ -0,0 +1,18 @@
+package com.mercado.orcamento.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Página de uma consulta paginada por cursor (keyset). proximoCursor é null na última página;
+ * versao é a versão dos dados usada na consulta (a mesma do ETag).
+ */
+@Data
+@AllArgsConstructor
+public class PaginaDTO<T> {
+    private List<T> itens;
+    private String proximoCursor;
+    private long versao;
+}
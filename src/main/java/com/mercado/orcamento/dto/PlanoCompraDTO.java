@@ -0,0 +1,17 @@
+package com.mercado.orcamento.dto;
+
+import com.mercado.orcamento.model.Mercado;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class PlanoCompraDTO {
+    private List<Mercado> mercados;     // Onde comprar (um só no "melhor mercado")
+    private BigDecimal total;           // Soma dos itens com preço nesses mercados
+    private int itensSemPreco;          // Itens da lista sem preço em nenhum desses mercados
+    private List<ItemCestaDTO> itens;
+}
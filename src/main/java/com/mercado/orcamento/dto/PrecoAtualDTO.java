@@ -0,0 +1,19 @@
+package com.mercado.orcamento.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class PrecoAtualDTO {
+    private Long id;
+    private Long produtoId;
+    private String nomeProduto;
+    private String mercado;      // Nome do enum (ex: "ATACADAO")
+    private String tipoPreco;    // Nome do enum (ex: "VAREJO")
+    private BigDecimal valor;
+    private LocalDateTime dataRegistro;
+}
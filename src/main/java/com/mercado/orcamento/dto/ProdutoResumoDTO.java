@@ -0,0 +1,21 @@
+package com.mercado.orcamento.dto;
+
+import com.mercado.orcamento.model.Mercado;
+import com.mercado.orcamento.model.TipoPreco;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+public class ProdutoResumoDTO {
+    private Long id;
+    private String nome;
+    private String marca;
+    private String peso;
+    private String codigoBarras;
+    private boolean naListaDeCompras;
+    private Map<Mercado, Map<TipoPreco, BigDecimal>> precos; // Mesmo formato de Produto.getPrecos()
+}
@@ -0,0 +1,20 @@
+package com.mercado.orcamento.dto;
+
+import com.mercado.orcamento.model.TipoPreco;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+public class ResultadoCestaDTO {
+    private int totalItens;                         // Itens na lista de compras
+    private PlanoCompraDTO melhorMercado;           // Tudo num mercado só
+    private List<TotalMercadoDTO> mercados;         // Total da lista em cada mercado, do melhor para o pior
+    private PlanoCompraDTO divisao;                 // Melhor divisão em até maxMercados mercados
+    private BigDecimal economiaDivisao;             // melhorMercado - divisao, nos itens com preço nos dois planos
+    private Map<TipoPreco, BigDecimal> economiaPorTipo; // Na divisão: quanto cada tipo economiza frente ao varejo do mesmo mercado
+}
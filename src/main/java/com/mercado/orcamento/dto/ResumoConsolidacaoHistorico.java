@@ -0,0 +1,17 @@
+package com.mercado.orcamento.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class ResumoConsolidacaoHistorico {
+    private long registrosConsolidados;   // RegistroPreco somados aos agregados nesta execução
+    private long resumosGravados;         // ResumoPreco criados (os existentes são atualizados)
+    private long registrosRemovidos;      // Histórico bruto fora da janela de retenção
+    private long resumosDiariosRemovidos; // Agregados diários fora da retenção
+    private LocalDateTime consolidadoAte;
+    private long duracaoMs;
+}
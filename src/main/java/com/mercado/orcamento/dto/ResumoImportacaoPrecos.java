@@ -0,0 +1,20 @@
+package com.mercado.orcamento.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+public class ResumoImportacaoPrecos {
+    private long total;                 // Linhas de dados lidas (sem o cabeçalho do CSV)
+    private long importados;
+    private long rejeitados;
+    private Map<Long, String> rejeicoes; // linha -> motivo (só as primeiras, ver visionmarket.precos.importacao.max-rejeicoes)
+    private Long linhaInterrupcao;       // Linha em que a leitura falhou (null se o arquivo foi lido até o fim);
+                                         // as anteriores já foram processadas e continuam gravadas
+    private String motivoInterrupcao;
+    private long duracaoMs;
+    private long linhasPorSegundo;
+}
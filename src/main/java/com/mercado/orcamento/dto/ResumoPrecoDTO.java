@@ -0,0 +1,20 @@
+package com.mercado.orcamento.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+public class ResumoPrecoDTO {
+    private LocalDate inicio;    // Primeiro dia do período
+    private String mercado;      // Nome do enum (ex: "ATACADAO")
+    private String tipoPreco;    // Nome do enum (ex: "VAREJO")
+    private BigDecimal minimo;
+    private BigDecimal media;
+    private BigDecimal maximo;
+    private BigDecimal ultimo;   // Último valor registrado no período
+    private long quantidade;     // Registros somados
+}
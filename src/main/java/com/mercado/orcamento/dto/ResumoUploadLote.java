@@ -0,0 +1,22 @@
+package com.mercado.orcamento.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+public class ResumoUploadLote {
+    private int total;              // Fotos recebidas (soltas + dentro de ZIPs)
+    private int novas;
+    private int duplicadas;         // Conteúdo que já estava na galeria
+    private int ignoradas;          // Entradas que não são imagem
+    private int falhas;
+    private int ocrNaoAgendados;        // Fotos novas que não couberam na fila de OCR (lidas só no scan)
+    private int miniaturasNaoAgendadas; // Fotos novas que não couberam na fila de miniaturas (geradas no 1º acesso)
+    private List<String> arquivos;  // Nomes na galeria das fotos recebidas (novas e duplicadas)
+    private Map<String, String> erros; // arquivo -> motivo
+    private long duracaoMs;
+}
@@ -0,0 +1,15 @@
+package com.mercado.orcamento.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class StatusJobOcr {
+    private String id;
+    private String nomeArquivo;
+    private EtapaOcr etapa;
+    private boolean finalizado;
+    private String erro;
+    private DadosExtraidos resultado;
+}
@@ -0,0 +1,22 @@
+package com.mercado.orcamento.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+public class StatusLoteOcr {
+    private String id;
+    private int total;
+    private int processadas;
+    private int ignoradas; // Já lidas antes (resultado no cache de OCR)
+    private int falhas;
+    private int reenvios; // Fotos devolvidas ao fim da fila porque o OCR estava ocupado
+    private Map<String, String> erros; // arquivo -> motivo
+    private boolean naFila; // Esperando o lote anterior terminar
+    private boolean finalizado;
+    private long duracaoMs;
+    private double imagensPorSegundo;
+}
@@ -0,0 +1,15 @@
+package com.mercado.orcamento.dto;
+
+import com.mercado.orcamento.model.Mercado;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+public class TotalMercadoDTO {
+    private Mercado mercado;
+    private BigDecimal total;
+    private int itensSemPreco;
+}
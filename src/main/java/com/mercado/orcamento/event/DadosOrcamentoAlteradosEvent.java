@@ -0,0 +1,18 @@
+package com.mercado.orcamento.event;
+
+/**
+ * Publicado pelo OrcamentoService em toda escrita que muda o que a página inicial mostra
+ * (produtos, preços, lista de compras). Os read models invalidam seus snapshots após o commit.
+ */
+public class DadosOrcamentoAlteradosEvent {
+
+    private final String operacao;
+
+    public DadosOrcamentoAlteradosEvent(String operacao) {
+        this.operacao = operacao;
+    }
+
+    public String getOperacao() {
+        return operacao;
+    }
+}
@@ -0,0 +1,38 @@
+package com.mercado.orcamento.event;
+
+/**
+ * Publicado pelo OrcamentoService quando um produto é criado, renomeado ou excluído.
+ * Os ouvintes (índices em memória) recebem o evento após o commit da transação.
+ */
+public class ProdutoAlteradoEvent {
+
+    private final Long produtoId;
+    private final String nome;
+    private final boolean removido;
+
+    private ProdutoAlteradoEvent(Long produtoId, String nome, boolean removido) {
+        this.produtoId = produtoId;
+        this.nome = nome;
+        this.removido = removido;
+    }
+
+    public static ProdutoAlteradoEvent salvo(Long produtoId, String nome) {
+        return new ProdutoAlteradoEvent(produtoId, nome, false);
+    }
+
+    public static ProdutoAlteradoEvent removido(Long produtoId) {
+        return new ProdutoAlteradoEvent(produtoId, null, true);
+    }
+
+    public Long getProdutoId() {
+        return produtoId;
+    }
+
+    public String getNome() {
+        return nome;
+    }
+
+    public boolean isRemovido() {
+        return removido;
+    }
+}
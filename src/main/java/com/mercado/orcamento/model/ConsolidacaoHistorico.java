@@ -0,0 +1,32 @@
+package com.mercado.orcamento.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Marca d'água da consolidação do histórico (linha única, id {@link #ID}): todo RegistroPreco com
+ * dataRegistro anterior a {@code consolidadoAte} já está somado nos ResumoPreco, e nenhum posterior está.
+ */
+@Entity
+@Table(name = "consolidacao_historico")
+@Data
+@NoArgsConstructor
+public class ConsolidacaoHistorico {
+
+    public static final long ID = 1L;
+
+    @Id
+    private Long id;
+
+    private LocalDateTime consolidadoAte;
+
+    private LocalDateTime ultimaExecucao;
+
+    public ConsolidacaoHistorico(LocalDateTime consolidadoAte) {
+        this.id = ID;
+        this.consolidadoAte = consolidadoAte;
+    }
+}
@@ -0,0 +1,31 @@
+package com.mercado.orcamento.model;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/** Tamanho do período de um {@link ResumoPreco}. */
+public enum Granularidade {
+    DIA("Diário"),
+    SEMANA("Semanal"),
+    MES("Mensal");
+
+    private final String descricao;
+
+    Granularidade(String descricao) {
+        this.descricao = descricao;
+    }
+
+    public String getDescricao() {
+        return descricao;
+    }
+
+    /** Primeiro dia do período que contém a data (semanas começam na segunda-feira). */
+    public LocalDate inicio(LocalDate data) {
+        return switch (this) {
+            case DIA -> data;
+            case SEMANA -> data.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MES -> data.withDayOfMonth(1);
+        };
+    }
+}
@@ -0,0 +1,52 @@
+package com.mercado.orcamento.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Preço vigente de um produto em um mercado, por tipo de preço: o registro mais recente
+ * do histórico (RegistroPreco). Mantido pelo OrcamentoService na mesma transação que grava
+ * o histórico, para que as telas leiam só esta tabela pequena.
+ */
+@Entity
+@Table(name = "preco_atual",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"produto_id", "mercado", "tipo_preco"}))
+@Data
+@NoArgsConstructor
+public class PrecoAtual {
+
+    public static final int BLOCO_IDS = 50;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "preco_atual_seq")
+    @SequenceGenerator(name = "preco_atual_seq", sequenceName = "preco_atual_seq", allocationSize = BLOCO_IDS)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "produto_id")
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    @lombok.ToString.Exclude
+    @lombok.EqualsAndHashCode.Exclude
+    private Produto produto;
+
+    @Enumerated(EnumType.STRING)
+    private Mercado mercado;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "tipo_preco")
+    private TipoPreco tipoPreco;
+
+    private BigDecimal valor;
+
+    private LocalDateTime dataRegistro;
+
+    public PrecoAtual(Produto produto, Mercado mercado, TipoPreco tipoPreco) {
+        this.produto = produto;
+        this.mercado = mercado;
+        this.tipoPreco = tipoPreco;
+    }
+}
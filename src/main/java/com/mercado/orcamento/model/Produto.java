@@ -4,22 +4,33 @@ import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.text.Normalizer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Pattern;
 
 @Entity
+@Table(indexes = @Index(name = "idx_produto_nome_normalizado", columnList = "nome_normalizado"))
 @Data
 @NoArgsConstructor
 public class Produto {
 
+    // Sequence com blocos de 50 ids: com IDENTITY o Hibernate não consegue agrupar os inserts
+    // em lotes JDBC (ver AjusteSequencias para bancos que já tinham ids gerados por IDENTITY)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "produto_seq")
+    @SequenceGenerator(name = "produto_seq", sequenceName = "produto_seq", allocationSize = Produto.BLOCO_IDS)
     private Long id;
 
     @Column(unique = true)
     private String codigoBarras; // EAN
 
     private String nome;
+
+    // Nome sem acentos, em maiúsculas e com espaços simples: chave da busca por nome (ver normalizarNome)
+    @Column(name = "nome_normalizado")
+    private String nomeNormalizado;
+
     private String marca;
     private String peso;
     private String imagemUrl;
@@ -27,30 +38,62 @@ public class Produto {
     // Grupo de equivalência para produtos substitutos (Ex: "Arroz 5kg")
     private Long grupoEquivalenciaId; 
 
+    // Histórico bruto (só a janela de retenção, ver ConsolidacaoHistoricoService): carregado quando pedido
     @com.fasterxml.jackson.annotation.JsonIgnore
     @lombok.ToString.Exclude
+    @lombok.EqualsAndHashCode.Exclude
     @OneToMany(mappedBy = "produto", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<RegistroPreco> historicoPrecos = new ArrayList<>();
+
+    // Histórico consolidado por dia/semana/mês (ver ConsolidacaoHistoricoService)
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    @lombok.ToString.Exclude
+    @lombok.EqualsAndHashCode.Exclude
+    @OneToMany(mappedBy = "produto", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    private List<ResumoPreco> resumosPrecos = new ArrayList<>();
+
+    // Preço vigente por mercado/tipo, mantido a cada atualizarPreco
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    @lombok.ToString.Exclude
+    @lombok.EqualsAndHashCode.Exclude
+    @OneToMany(mappedBy = "produto", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
+    private List<PrecoAtual> precosAtuais = new ArrayList<>();
     
     private boolean naListaDeCompras;
 
+    public static final int BLOCO_IDS = 50;
+
+    private static final Pattern MARCAS_DIACRITICAS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+    private static final Pattern ESPACOS = Pattern.compile("\\s+");
+
     public Produto(String nome, String codigoBarras) {
         this.nome = nome;
         this.codigoBarras = codigoBarras;
     }
 
+    @PrePersist
+    @PreUpdate
+    void atualizarNomeNormalizado() {
+        this.nomeNormalizado = normalizarNome(nome);
+    }
+
+    /** Ex.: " Açúcar  União " -> "ACUCAR UNIAO". Null continua null. */
+    public static String normalizarNome(String nome) {
+        if (nome == null) return null;
+        String semAcento = MARCAS_DIACRITICAS.matcher(Normalizer.normalize(nome, Normalizer.Form.NFD)).replaceAll("");
+        return ESPACOS.matcher(semAcento.trim()).replaceAll(" ").toUpperCase();
+    }
+
     // Helper para compatibilidade com a View (Thymeleaf e JS)
     // Removido JsonIgnore para permitir que o JS acesse os preços
     public java.util.Map<Mercado, java.util.Map<TipoPreco, java.math.BigDecimal>> getPrecos() {
         java.util.Map<Mercado, java.util.Map<TipoPreco, java.math.BigDecimal>> mapa = new java.util.HashMap<>();
-        
-        for (RegistroPreco rp : historicoPrecos) {
-            if (rp.getMercado() == null || rp.getTipoPreco() == null || rp.getValor() == null) continue;
-            
-            // Se tiver múltiplos preços pro mesmo mercado/tipo, pega o mais recente (assumindo que a lista pode ter histórico antigo)
-            // Aqui simplificamos pegando o último (ou sobrescrevendo)
-            mapa.computeIfAbsent(rp.getMercado(), k -> new java.util.HashMap<>())
-                .put(rp.getTipoPreco(), rp.getValor());
+
+        // Um registro por mercado/tipo: já é o preço mais recente, não depende da ordem do histórico
+        for (PrecoAtual pa : precosAtuais) {
+            if (pa.getMercado() == null || pa.getTipoPreco() == null || pa.getValor() == null) continue;
+            mapa.computeIfAbsent(pa.getMercado(), k -> new java.util.HashMap<>())
+                .put(pa.getTipoPreco(), pa.getValor());
         }
         return mapa;
     }
@@ -8,12 +8,22 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
+@Table(indexes = {
+    // Consolidação por período e estatísticas do trecho ainda não consolidado de um produto
+    @Index(name = "idx_registro_preco_data", columnList = "data_registro"),
+    @Index(name = "idx_registro_preco_produto_data", columnList = "produto_id, data_registro")
+})
 @Data
 @NoArgsConstructor
 public class RegistroPreco {
 
+    // Blocos maiores que os de Produto: a importação em massa grava milhares de registros por vez
+    public static final int BLOCO_IDS = 500;
+
+    // Sequence (não IDENTITY) para que a importação em massa grave em lotes JDBC
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "registro_preco_seq")
+    @SequenceGenerator(name = "registro_preco_seq", sequenceName = "registro_preco_seq", allocationSize = BLOCO_IDS)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -31,6 +41,7 @@ public class RegistroPreco {
     @Enumerated(EnumType.STRING)
     private TipoPreco tipoPreco;
 
+    @Column(name = "data_registro")
     private LocalDateTime dataRegistro;
 
     public RegistroPreco(Produto produto, Mercado mercado, BigDecimal valor, TipoPreco tipoPreco) {
@@ -0,0 +1,94 @@
+package com.mercado.orcamento.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Agregado do histórico (RegistroPreco) de um produto/mercado/tipo em um dia, semana ou mês:
+ * mínimo, máximo, soma e quantidade (média = soma / quantidade) e o último valor do período.
+ * Gerado pela ConsolidacaoHistoricoService; as estatísticas e tendências leem esta tabela em vez
+ * de varrer o histórico bruto, que só é mantido pela janela de retenção.
+ */
+@Entity
+@Table(name = "resumo_preco",
+       // Período primeiro: a consolidação busca os agregados de um período para um bloco de produtos
+       uniqueConstraints = @UniqueConstraint(columnNames = {"granularidade", "inicio", "produto_id", "mercado", "tipo_preco"}),
+       // Série de um produto (estatísticas e tendências)
+       indexes = @Index(name = "idx_resumo_preco_produto", columnList = "produto_id, granularidade, inicio"))
+@Data
+@NoArgsConstructor
+public class ResumoPreco {
+
+    public static final int BLOCO_IDS = 50;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "resumo_preco_seq")
+    @SequenceGenerator(name = "resumo_preco_seq", sequenceName = "resumo_preco_seq", allocationSize = BLOCO_IDS)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "produto_id")
+    @lombok.ToString.Exclude
+    @lombok.EqualsAndHashCode.Exclude
+    private Produto produto;
+
+    @Enumerated(EnumType.STRING)
+    private Mercado mercado;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "tipo_preco")
+    private TipoPreco tipoPreco;
+
+    @Enumerated(EnumType.STRING)
+    private Granularidade granularidade;
+
+    private LocalDate inicio; // Primeiro dia do período (ver Granularidade.inicio)
+
+    private BigDecimal minimo;
+    private BigDecimal maximo;
+    private BigDecimal soma;
+    private long quantidade;
+
+    private BigDecimal ultimo;
+    private LocalDateTime dataUltimo;
+
+    public ResumoPreco(Produto produto, Mercado mercado, TipoPreco tipoPreco, Granularidade granularidade, LocalDate inicio) {
+        this.produto = produto;
+        this.mercado = mercado;
+        this.tipoPreco = tipoPreco;
+        this.granularidade = granularidade;
+        this.inicio = inicio;
+        this.soma = BigDecimal.ZERO;
+    }
+
+    /** Soma um registro do histórico ao período. */
+    public void acumular(BigDecimal valor, LocalDateTime data) {
+        minimo = minimo == null || valor.compareTo(minimo) < 0 ? valor : minimo;
+        maximo = maximo == null || valor.compareTo(maximo) > 0 ? valor : maximo;
+        soma = soma.add(valor);
+        quantidade++;
+        // Mesmo critério do preço vigente: o mais recente vence, empate fica com o último aplicado
+        if (dataUltimo == null || data == null || !data.isBefore(dataUltimo)) {
+            ultimo = valor;
+            dataUltimo = data;
+        }
+    }
+
+    /** Junta outro agregado do mesmo período (registros consolidados depois deste). */
+    public void mesclar(ResumoPreco outro) {
+        if (outro.quantidade == 0) return;
+        minimo = minimo == null || outro.minimo.compareTo(minimo) < 0 ? outro.minimo : minimo;
+        maximo = maximo == null || outro.maximo.compareTo(maximo) > 0 ? outro.maximo : maximo;
+        soma = soma.add(outro.soma);
+        quantidade += outro.quantidade;
+        if (dataUltimo == null || outro.dataUltimo == null || !outro.dataUltimo.isBefore(dataUltimo)) {
+            ultimo = outro.ultimo;
+            dataUltimo = outro.dataUltimo;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.mercado.orcamento.repository;
+
+import com.mercado.orcamento.model.ConsolidacaoHistorico;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+
+public interface ConsolidacaoHistoricoRepository extends JpaRepository<ConsolidacaoHistorico, Long> {
+
+    // Consulta em vez de findById: não devolve a cópia guardada no EntityManager da requisição
+    @Query("SELECT c.consolidadoAte FROM ConsolidacaoHistorico c WHERE c.id = " + ConsolidacaoHistorico.ID)
+    LocalDateTime findConsolidadoAte();
+}
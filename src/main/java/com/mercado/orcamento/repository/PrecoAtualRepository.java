@@ -0,0 +1,36 @@
+package com.mercado.orcamento.repository;
+
+import com.mercado.orcamento.model.Mercado;
+import com.mercado.orcamento.model.PrecoAtual;
+import com.mercado.orcamento.model.Produto;
+import com.mercado.orcamento.model.TipoPreco;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface PrecoAtualRepository extends JpaRepository<PrecoAtual, Long> {
+
+    Optional<PrecoAtual> findByProdutoAndMercadoAndTipoPreco(Produto produto, Mercado mercado, TipoPreco tipoPreco);
+
+    // Importação em massa: só as combinações que o bloco pode atualizar (um encarte costuma ser de um mercado só)
+    @Query("SELECT pa FROM PrecoAtual pa WHERE pa.produto.id IN :ids AND pa.mercado IN :mercados AND pa.tipoPreco IN :tipos")
+    List<PrecoAtual> findParaImportacao(@Param("ids") Collection<Long> ids, @Param("mercados") Collection<Mercado> mercados,
+                                        @Param("tipos") Collection<TipoPreco> tipos);
+
+    // Tabela plana de preços vigentes (uma linha por produto/mercado/tipo)
+    @Query("SELECT pa FROM PrecoAtual pa JOIN FETCH pa.produto p ORDER BY p.nome")
+    List<PrecoAtual> findAllCompleto();
+
+    // Preços vigentes dos itens da lista de compras, só os campos usados pelo otimizador da cesta
+    @Query("SELECT pa.produto.id, pa.mercado, pa.tipoPreco, pa.valor FROM PrecoAtual pa WHERE pa.produto.naListaDeCompras = true")
+    List<Object[]> findValoresDaLista();
+
+    // Último valor de cada produto: o preço vigente mais recente entre mercados e tipos
+    @Query("SELECT pa.produto.id, pa.valor, pa.dataRegistro FROM PrecoAtual pa WHERE pa.valor IS NOT NULL " +
+           "ORDER BY pa.dataRegistro, pa.id")
+    List<Object[]> findUltimosValores();
+}
@@ -2,16 +2,49 @@ package com.mercado.orcamento.repository;
 
 import com.mercado.orcamento.model.Produto;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.util.Collection;
 import java.util.Optional;
 import java.util.List;
 
 public interface ProdutoRepository extends JpaRepository<Produto, Long> {
     Optional<Produto> findByCodigoBarras(String codigoBarras);
-    // Busca por nome para OCR (aproximado pode ser feito com query customizada, mas vamos simples por enquanto)
-    Optional<Produto> findByNomeContainingIgnoreCase(String nome);
+    // Busca por nome sem acento (usa o índice idx_produto_nome_normalizado)
+    Optional<Produto> findFirstByNomeNormalizadoOrderByIdAsc(String nomeNormalizado);
+
+    List<Produto> findByNomeNormalizadoIsNullAndNomeIsNotNull();
+
+    List<Produto> findByNomeNormalizadoIn(Collection<String> nomesNormalizados);
+
+    // Lista de compras em UPDATEs por conjunto (sem carregar as entidades); devolvem quantos mudaram
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Produto p SET p.naListaDeCompras = false WHERE p.naListaDeCompras = true")
+    int limparListaDeCompras();
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Produto p SET p.naListaDeCompras = :naLista WHERE p.id IN :ids AND p.naListaDeCompras <> :naLista")
+    int atualizarListaDeCompras(@Param("ids") Collection<Long> ids, @Param("naLista") boolean naLista);
     
-    // Busca todos os produtos com seus preços para evitar N+1 queries e LazyInitializationException
-    @Query("SELECT DISTINCT p FROM Produto p LEFT JOIN FETCH p.historicoPrecos ORDER BY p.nome ASC")
+    // Busca todos os produtos com seus preços vigentes para evitar N+1 queries e LazyInitializationException
+    // (o histórico completo não é carregado aqui)
+    @Query("SELECT DISTINCT p FROM Produto p LEFT JOIN FETCH p.precosAtuais ORDER BY p.nome ASC")
     List<Produto> findAllWithPrecos();
+
+    // Código de barras -> id, para resolver linhas de importação sem carregar as entidades
+    @Query("SELECT p.codigoBarras, p.id FROM Produto p WHERE p.codigoBarras IN :codigos")
+    List<Object[]> findIdPorCodigoBarras(@Param("codigos") Collection<String> codigos);
+
+    // Nome normalizado -> id (o mais antigo, se houver repetidos), só igualdade exata: a importação não adivinha
+    @Query("SELECT p.nomeNormalizado, MIN(p.id) FROM Produto p WHERE p.nomeNormalizado IN :nomes GROUP BY p.nomeNormalizado")
+    List<Object[]> findIdPorNomeNormalizado(@Param("nomes") Collection<String> nomesNormalizados);
+
+    // Só id e nome, para montar índices em memória sem carregar as entidades
+    @Query("SELECT p.id, p.nome FROM Produto p")
+    List<Object[]> findIdENome();
+
+    // Itens da lista de compras (id e nome) para o otimizador da cesta
+    @Query("SELECT p.id, p.nome FROM Produto p WHERE p.naListaDeCompras = true ORDER BY p.nome, p.id")
+    List<Object[]> findIdENomeNaLista();
 }
@@ -2,23 +2,51 @@ package com.mercado.orcamento.repository;
 
 import com.mercado.orcamento.model.Produto;
 import com.mercado.orcamento.model.RegistroPreco;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
-import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface RegistroPrecoRepository extends JpaRepository<RegistroPreco, Long> {
     
     List<RegistroPreco> findByProduto(Produto produto);
 
-    @Query("SELECT MIN(r.valor) FROM RegistroPreco r WHERE r.produto = :produto")
-    BigDecimal findMenorPrecoByProduto(@Param("produto") Produto produto);
+    // Trecho ainda não consolidado do produto (o restante está nos ResumoPreco)
+    @Query("SELECT r.mercado, r.tipoPreco, r.valor, r.dataRegistro FROM RegistroPreco r " +
+           "WHERE r.produto.id = :produtoId AND r.dataRegistro >= :desde ORDER BY r.dataRegistro, r.id")
+    List<Object[]> findValoresDesde(@Param("produtoId") Long produtoId, @Param("desde") LocalDateTime desde);
 
-    @Query("SELECT AVG(r.valor) FROM RegistroPreco r WHERE r.produto = :produto")
-    BigDecimal findMediaPrecoByProduto(@Param("produto") Produto produto);
+    // Estatísticas de todo o catálogo: trecho não consolidado somado por produto (mesmo filtro da consolidação)
+    @Query("SELECT r.produto.id, MIN(r.valor), MAX(r.valor), SUM(r.valor), COUNT(r) FROM RegistroPreco r " +
+           "WHERE r.dataRegistro >= :desde AND r.valor IS NOT NULL AND r.mercado IS NOT NULL AND r.tipoPreco IS NOT NULL " +
+           "GROUP BY r.produto.id")
+    List<Object[]> findTotaisPorProdutoDesde(@Param("desde") LocalDateTime desde);
+
+    // Consolidação: registros de uma janela, só os campos agregados, em ordem cronológica
+    @Query("SELECT r.produto.id, r.mercado, r.tipoPreco, r.valor, r.dataRegistro FROM RegistroPreco r " +
+           "WHERE r.dataRegistro >= :de AND r.dataRegistro < :ate ORDER BY r.dataRegistro, r.id")
+    List<Object[]> findParaConsolidacao(@Param("de") LocalDateTime de, @Param("ate") LocalDateTime ate);
+
+    // Próxima data com registros a partir de "desde" (pula períodos sem coleta). ORDER BY + limite
+    // em vez de MIN: o MIN com WHERE percorre o índice até o fim em alguns bancos
+    @Query("SELECT r.dataRegistro FROM RegistroPreco r WHERE r.dataRegistro >= :desde ORDER BY r.dataRegistro")
+    List<LocalDateTime> findDatasDesde(@Param("desde") LocalDateTime desde, Limit limite);
+
+    // Retenção do histórico bruto (os períodos removidos já estão consolidados)
+    @Modifying
+    @Query("DELETE FROM RegistroPreco r WHERE r.dataRegistro < :limite")
+    int deleteAnteriores(@Param("limite") LocalDateTime limite);
 
     @Query("SELECT r FROM RegistroPreco r JOIN FETCH r.produto p ORDER BY p.nome")
     List<RegistroPreco> findAllCompleto();
+
+    List<RegistroPreco> findByProdutoIdOrderByDataRegistroDescIdDesc(Long produtoId);
+
+    // Reconstrução da tabela de preços vigentes: do mais antigo para o mais novo, o último vence
+    @Query("SELECT r FROM RegistroPreco r JOIN FETCH r.produto ORDER BY r.dataRegistro ASC, r.id ASC")
+    List<RegistroPreco> findAllEmOrdemCronologica();
 }
@@ -0,0 +1,39 @@
+package com.mercado.orcamento.repository;
+
+import com.mercado.orcamento.model.Granularidade;
+import com.mercado.orcamento.model.Mercado;
+import com.mercado.orcamento.model.ResumoPreco;
+import com.mercado.orcamento.model.TipoPreco;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+public interface ResumoPrecoRepository extends JpaRepository<ResumoPreco, Long> {
+
+    // Consolidação: agregados já gravados do período para os produtos da janela
+    @Query("SELECT rp FROM ResumoPreco rp WHERE rp.granularidade = :granularidade AND rp.inicio = :inicio AND rp.produto.id IN :ids")
+    List<ResumoPreco> findParaConsolidacao(@Param("granularidade") Granularidade granularidade, @Param("inicio") LocalDate inicio,
+                                           @Param("ids") Collection<Long> ids);
+
+    // Série de um produto (filtros opcionais), do período mais antigo para o mais recente
+    @Query("SELECT rp FROM ResumoPreco rp WHERE rp.produto.id = :produtoId AND rp.granularidade = :granularidade " +
+           "AND (:mercado IS NULL OR rp.mercado = :mercado) AND (:tipoPreco IS NULL OR rp.tipoPreco = :tipoPreco) " +
+           "ORDER BY rp.inicio, rp.mercado, rp.tipoPreco")
+    List<ResumoPreco> findSerie(@Param("produtoId") Long produtoId, @Param("granularidade") Granularidade granularidade,
+                                @Param("mercado") Mercado mercado, @Param("tipoPreco") TipoPreco tipoPreco);
+
+    // Estatísticas de todo o catálogo: agregados mensais somados por produto (uma consulta)
+    @Query("SELECT rp.produto.id, MIN(rp.minimo), MAX(rp.maximo), SUM(rp.soma), SUM(rp.quantidade) FROM ResumoPreco rp " +
+           "WHERE rp.granularidade = :granularidade GROUP BY rp.produto.id")
+    List<Object[]> findTotaisPorProduto(@Param("granularidade") Granularidade granularidade);
+
+    // Retenção dos agregados de uma granularidade (os diários não são guardados para sempre)
+    @Modifying
+    @Query("DELETE FROM ResumoPreco rp WHERE rp.granularidade = :granularidade AND rp.inicio < :limite")
+    int deleteAnteriores(@Param("granularidade") Granularidade granularidade, @Param("limite") LocalDate limite);
+}
@@ -0,0 +1,269 @@
+package com.mercado.orcamento.service;
+
+import com.mercado.orcamento.dto.FotoArmazenada;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gravação das fotos enviadas, endereçada pelo conteúdo.
+ * O SHA-256 é calculado enquanto os bytes do upload vão para o disco (uma leitura só);
+ * o índice hash -> nome na galeria diz se aquele conteúdo já existe, com qualquer nome.
+ *
+ * - Mesmo conteúdo, qualquer nome: nada é gravado, devolve a foto já existente.
+ * - Mesmo nome, conteúdo diferente: grava como {@code nome-<hash8>.ext}, sem sobrescrever.
+ *
+ * O índice é persistido em um arquivo de linhas "hash nome" (só acrescenta durante a execução,
+ * compactado na subida) e vale enquanto o arquivo indicado continuar na galeria.
+ *
+ * Uploads só se excluem quando têm o mesmo conteúdo ou o mesmo nome (travas por faixa de hash e
+ * de nome); o hash de uma foto antiga que já ocupa o nome é calculado fora das travas.
+ */
+@Service
+public class ArmazenamentoFotos {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArmazenamentoFotos.class);
+
+    private final String CAMINHO_FOTOS = "C:\\Users\\Borges\\Downloads\\MERCADO_FOTOS";
+
+    private static final int FAIXAS_TRAVA = 64;
+
+    private final Path arquivoIndice;
+    private final Map<String, String> nomePorHash = new ConcurrentHashMap<>();
+    private final Map<String, String> hashPorNome = new ConcurrentHashMap<>();
+    private final Object[] travas = new Object[FAIXAS_TRAVA];
+    private final Object travaArquivoIndice = new Object();
+
+    public ArmazenamentoFotos(@Value("${visionmarket.upload.indice-conteudo:data/fotos-conteudo.idx}") String arquivoIndice) {
+        this.arquivoIndice = Paths.get(arquivoIndice);
+        for (int i = 0; i < FAIXAS_TRAVA; i++) {
+            travas[i] = new Object();
+        }
+    }
+
+    @PostConstruct
+    public void carregarIndice() {
+        if (!Files.exists(arquivoIndice)) return;
+        List<String> linhas;
+        try {
+            linhas = Files.readAllLines(arquivoIndice, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.warn("Indice de conteudo das fotos ilegivel ({}): {}", arquivoIndice, e.getMessage());
+            return;
+        }
+
+        Map<String, String> lidos = new LinkedHashMap<>();
+        Map<String, String> hashesLidos = new HashMap<>();
+        for (String linha : linhas) {
+            int espaco = linha.indexOf(' ');
+            if (espaco > 0) {
+                // Linhas posteriores prevalecem (o arquivo só recebe acréscimos), nos dois sentidos:
+                // um nome regravado com outro conteúdo invalida a linha antiga daquele nome
+                String hash = linha.substring(0, espaco);
+                String nome = linha.substring(espaco + 1);
+                String nomeAnterior = lidos.put(hash, nome);
+                if (nomeAnterior != null) hashesLidos.remove(nomeAnterior, hash);
+                String hashAnterior = hashesLidos.put(nome, hash);
+                if (hashAnterior != null && !hashAnterior.equals(hash)) lidos.remove(hashAnterior, nome);
+            }
+        }
+        Path diretorio = Paths.get(CAMINHO_FOTOS);
+        lidos.forEach((hash, nome) -> {
+            if (Files.exists(diretorio.resolve(nome))) { // Fotos apagadas da galeria saem do índice
+                nomePorHash.put(hash, nome);
+                hashPorNome.put(nome, hash);
+            }
+        });
+        logger.info("Indice de conteudo das fotos carregado: {} entrada(s)", nomePorHash.size());
+
+        if (nomePorHash.size() < linhas.size()) {
+            compactarIndice(linhas.size());
+        }
+    }
+
+    // Reescreve o arquivo só com as entradas vigentes (temporário + move, para não perder o índice no meio)
+    private void compactarIndice(int linhasAntes) {
+        try {
+            Path temporario = Files.createTempFile(arquivoIndice.toAbsolutePath().getParent(), ".indice-", ".tmp");
+            try {
+                try (BufferedWriter escritor = Files.newBufferedWriter(temporario, StandardCharsets.UTF_8)) {
+                    for (Map.Entry<String, String> entrada : nomePorHash.entrySet()) {
+                        escritor.write(entrada.getKey() + " " + entrada.getValue());
+                        escritor.newLine();
+                    }
+                }
+                Files.move(temporario, arquivoIndice, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporario);
+            }
+            logger.info("Indice de conteudo das fotos compactado: {} -> {} linha(s)", linhasAntes, nomePorHash.size());
+        } catch (IOException e) {
+            // Só desperdício de espaço: o arquivo antigo continua válido
+            logger.warn("Falha ao compactar indice de conteudo ({}): {}", arquivoIndice, e.getMessage());
+        }
+    }
+
+    /**
+     * Grava o conteúdo na galeria com o nome sugerido, a menos que ele já exista lá.
+     *
+     * @param nomeSeguro nome já sem caminhos nem caracteres inválidos
+     */
+    public FotoArmazenada armazenar(InputStream conteudo, String nomeSeguro) throws IOException {
+        Path diretorio = Paths.get(CAMINHO_FOTOS);
+        Files.createDirectories(diretorio);
+
+        // 1. Copia para um temporário na mesma pasta, calculando o hash no caminho
+        MessageDigest digest = ConteudoHash.novoDigest();
+        Path temporario = Files.createTempFile(diretorio, ".upload-", ".tmp");
+        try {
+            try (InputStream entrada = new DigestInputStream(conteudo, digest)) {
+                Files.copy(entrada, temporario, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return colocar(diretorio, temporario, HexFormat.of().formatHex(digest.digest()), nomeSeguro);
+        } finally {
+            Files.deleteIfExists(temporario);
+        }
+    }
+
+    /**
+     * Só copia o conteúdo para um temporário na pasta da galeria, sem calcular o hash: quem lê um
+     * stream sequencial (entradas de um ZIP) despacha o resto do trabalho para outra thread com
+     * {@link #armazenar(Path, String)}.
+     */
+    public Path receber(InputStream conteudo) throws IOException {
+        Path diretorio = Paths.get(CAMINHO_FOTOS);
+        Files.createDirectories(diretorio);
+        Path temporario = Files.createTempFile(diretorio, ".upload-", ".tmp");
+        try {
+            Files.copy(conteudo, temporario, StandardCopyOption.REPLACE_EXISTING);
+            return temporario;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporario);
+            throw e;
+        }
+    }
+
+    /**
+     * Grava na galeria um temporário devolvido por {@link #receber(InputStream)}, que passa a ser
+     * desta classe: é movido para o destino ou apagado.
+     */
+    public FotoArmazenada armazenar(Path temporario, String nomeSeguro) throws IOException {
+        try {
+            return colocar(Paths.get(CAMINHO_FOTOS), temporario, ConteudoHash.sha256(temporario), nomeSeguro);
+        } finally {
+            Files.deleteIfExists(temporario);
+        }
+    }
+
+    // 2. Decide o destino. Trava o conteúdo (dois uploads iguais simultâneos não gravam duas cópias) e
+    // o nome (dois conteúdos com o mesmo nome não se sobrescrevem); uploads sem relação seguem em paralelo
+    private FotoArmazenada colocar(Path diretorio, Path temporario, String hash, String nomeSeguro) throws IOException {
+        Path destino = diretorio.resolve(nomeSeguro);
+        // Fora das travas: hash de uma foto anterior ao índice que já ocupa o nome (leitura do arquivo inteiro)
+        String hashOcupante = hashPorNome.get(nomeSeguro);
+        if (hashOcupante == null && Files.exists(destino)) {
+            hashOcupante = ConteudoHash.sha256(destino);
+        }
+
+        int faixaHash = faixa(hash);
+        int faixaNome = faixa(nomeSeguro);
+        // Sempre na mesma ordem, para duas threads não se travarem mutuamente (mesma faixa: reentrante)
+        synchronized (travas[Math.min(faixaHash, faixaNome)]) {
+            synchronized (travas[Math.max(faixaHash, faixaNome)]) {
+                String existente = nomeExistente(diretorio, hash);
+                if (existente != null) {
+                    logger.info("Conteudo ja existente na galeria como {}. Upload de {} descartado", existente, nomeSeguro);
+                    return new FotoArmazenada(existente, hash, false);
+                }
+
+                if (Files.exists(destino)) {
+                    // Gravada por outro upload depois da leitura acima: o hash dela já está no índice
+                    String hashAtual = hashPorNome.getOrDefault(nomeSeguro, hashOcupante);
+                    if (hashAtual == null) {
+                        hashAtual = ConteudoHash.sha256(destino); // Copiada para a galeria por fora neste intervalo
+                    }
+                    if (hash.equals(hashAtual)) {
+                        // Foto anterior ao índice: só registra
+                        registrar(hash, nomeSeguro);
+                        return new FotoArmazenada(nomeSeguro, hash, false);
+                    }
+                    destino = diretorio.resolve(nomeComHash(nomeSeguro, hash));
+                    logger.info("Nome {} ja usado por outra foto. Gravando como {}", nomeSeguro, destino.getFileName());
+                }
+
+                Files.move(temporario, destino, StandardCopyOption.ATOMIC_MOVE);
+                registrar(hash, destino.getFileName().toString());
+                return new FotoArmazenada(destino.getFileName().toString(), hash, true);
+            }
+        }
+    }
+
+    private static int faixa(String chave) {
+        return Math.floorMod(chave.hashCode(), FAIXAS_TRAVA);
+    }
+
+    /**
+     * Normaliza o nome para evitar caminhos vindos do navegador e
+     * caracteres invalidos em Windows durante o upload.
+     */
+    public static String nomeSeguro(String nomeOriginal) {
+        return (nomeOriginal == null || nomeOriginal.isBlank())
+                ? "imagem-upload.jpg"
+                : Paths.get(nomeOriginal).getFileName().toString().replaceAll("[\\\\/:*?\"<>|]", "_");
+    }
+
+    private String nomeExistente(Path diretorio, String hash) {
+        String nome = nomePorHash.get(hash);
+        if (nome == null) return null;
+        if (Files.exists(diretorio.resolve(nome))) return nome;
+        // Apagada da galeria depois de indexada
+        nomePorHash.remove(hash, nome);
+        hashPorNome.remove(nome, hash);
+        return null;
+    }
+
+    private void registrar(String hash, String nome) {
+        nomePorHash.put(hash, nome);
+        hashPorNome.put(nome, hash);
+        // Uploads de faixas diferentes registram ao mesmo tempo: uma linha inteira por vez
+        synchronized (travaArquivoIndice) {
+            try {
+                Files.createDirectories(arquivoIndice.toAbsolutePath().getParent());
+                try (BufferedWriter escritor = Files.newBufferedWriter(arquivoIndice, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    escritor.write(hash + " " + nome);
+                    escritor.newLine();
+                }
+            } catch (IOException e) {
+                // O índice em memória continua valendo até o próximo reinício
+                logger.warn("Falha ao gravar indice de conteudo ({}): {}", arquivoIndice, e.getMessage());
+            }
+        }
+    }
+
+    private static String nomeComHash(String nome, String hash) {
+        int ponto = nome.lastIndexOf('.');
+        String sufixo = "-" + hash.substring(0, 8);
+        return ponto > 0 ? nome.substring(0, ponto) + sufixo + nome.substring(ponto) : nome + sufixo;
+    }
+}
@@ -0,0 +1,276 @@
+package com.mercado.orcamento.service;
+
+import com.mercado.orcamento.dto.ResumoConsolidacaoHistorico;
+import com.mercado.orcamento.dto.ResumoPrecoDTO;
+import com.mercado.orcamento.model.ConsolidacaoHistorico;
+import com.mercado.orcamento.model.Granularidade;
+import com.mercado.orcamento.model.Mercado;
+import com.mercado.orcamento.model.Produto;
+import com.mercado.orcamento.model.ResumoPreco;
+import com.mercado.orcamento.model.TipoPreco;
+import com.mercado.orcamento.repository.ConsolidacaoHistoricoRepository;
+import com.mercado.orcamento.repository.ProdutoRepository;
+import com.mercado.orcamento.repository.RegistroPrecoRepository;
+import com.mercado.orcamento.repository.ResumoPrecoRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consolida o histórico bruto (RegistroPreco) em agregados diários, semanais e mensais
+ * ({@link ResumoPreco}) e apaga o bruto que sai da janela de retenção.
+ *
+ * A consolidação avança uma marca d'água ({@link ConsolidacaoHistorico}) uma semana de registros por
+ * transação: os agregados contêm exatamente os registros anteriores à marca. As consultas de
+ * estatística e tendência leem os agregados e somam só o trecho bruto posterior à marca, que fica
+ * limitado ao intervalo entre execuções; o custo não cresce com os anos de coleta.
+ */
+@Service
+public class ConsolidacaoHistoricoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConsolidacaoHistoricoService.class);
+
+    // Antes de qualquer coleta: ponto de partida da primeira consolidação
+    private static final LocalDateTime INICIO_HISTORICO = LocalDate.of(2000, 1, 1).atStartOfDay();
+    private static final int TAMANHO_BLOCO_IN = 1000;
+
+    private final RegistroPrecoRepository registroPrecoRepository;
+    private final ResumoPrecoRepository resumoPrecoRepository;
+    private final ConsolidacaoHistoricoRepository consolidacaoRepository;
+    private final ProdutoRepository produtoRepository;
+    private final TransactionTemplate transacao;
+    private final EntityManager entityManager;
+    private final long intervaloMinutos;
+    private final long atrasoMinutos;
+    private final int retencaoDias;
+    private final int retencaoDiariosDias;
+    private final ScheduledExecutorService agendador;
+
+    public ConsolidacaoHistoricoService(RegistroPrecoRepository registroPrecoRepository, ResumoPrecoRepository resumoPrecoRepository,
+                                        ConsolidacaoHistoricoRepository consolidacaoRepository, ProdutoRepository produtoRepository,
+                                        PlatformTransactionManager transactionManager, EntityManager entityManager,
+                                        @Value("${visionmarket.precos.historico.intervalo-minutos:60}") long intervaloMinutos,
+                                        @Value("${visionmarket.precos.historico.atraso-minutos:5}") long atrasoMinutos,
+                                        @Value("${visionmarket.precos.historico.retencao-dias:180}") int retencaoDias,
+                                        @Value("${visionmarket.precos.historico.retencao-diarios-dias:730}") int retencaoDiariosDias) {
+        this.registroPrecoRepository = registroPrecoRepository;
+        this.resumoPrecoRepository = resumoPrecoRepository;
+        this.consolidacaoRepository = consolidacaoRepository;
+        this.produtoRepository = produtoRepository;
+        this.transacao = new TransactionTemplate(transactionManager);
+        this.entityManager = entityManager;
+        this.intervaloMinutos = intervaloMinutos;
+        this.atrasoMinutos = Math.max(0, atrasoMinutos);
+        this.retencaoDias = retencaoDias;
+        this.retencaoDiariosDias = retencaoDiariosDias;
+        this.agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "consolidacao-historico");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void agendar() {
+        if (intervaloMinutos <= 0) {
+            logger.info("Consolidacao automatica do historico de precos desativada");
+            return;
+        }
+        agendador.scheduleWithFixedDelay(() -> {
+            try {
+                consolidar();
+            } catch (Exception e) {
+                logger.error("Erro na consolidacao do historico de precos: ", e);
+            }
+        }, 1, intervaloMinutos, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        agendador.shutdownNow();
+    }
+
+    /**
+     * Consolida os registros até agora menos o atraso configurado (transações de gravação ainda
+     * abertas não ficam para trás da marca) e aplica a retenção.
+     */
+    public synchronized ResumoConsolidacaoHistorico consolidar() {
+        long inicio = System.currentTimeMillis();
+        LocalDateTime limite = LocalDateTime.now().minusMinutes(atrasoMinutos);
+        long[] contagem = new long[2]; // registros consolidados, resumos gravados
+
+        LocalDateTime marca = marcaAtual();
+        LocalDateTime de = marca != null ? marca : INICIO_HISTORICO;
+        while (de.isBefore(limite)) {
+            // Janela até o fim da semana do próximo registro (pula os períodos sem coleta): cada
+            // agregado semanal é gravado uma vez por janela e o mensal no máximo duas
+            List<LocalDateTime> datas = registroPrecoRepository.findDatasDesde(de, Limit.of(1));
+            if (datas.isEmpty() || !datas.get(0).isBefore(limite)) break;
+            LocalDateTime proximo = datas.get(0);
+            LocalDateTime fimDaSemana = Granularidade.SEMANA.inicio(proximo.toLocalDate()).plusWeeks(1).atStartOfDay();
+            LocalDateTime ate = fimDaSemana.isBefore(limite) ? fimDaSemana : limite;
+            transacao.executeWithoutResult(status -> consolidarJanela(proximo, ate, contagem));
+            de = ate;
+        }
+
+        LocalDateTime consolidadoAte = marca != null && marca.isAfter(limite) ? marca : limite;
+        long[] removidos = transacao.execute(status -> {
+            marcar(consolidadoAte);
+            return aplicarRetencao(consolidadoAte);
+        });
+
+        long duracao = System.currentTimeMillis() - inicio;
+        logger.info("Consolidacao do historico: {} registro(s) em {} novo(s) resumo(s), {} registro(s) e {} resumo(s) diario(s) removidos em {}ms",
+                contagem[0], contagem[1], removidos[0], removidos[1], duracao);
+        return new ResumoConsolidacaoHistorico(contagem[0], contagem[1], removidos[0], removidos[1], consolidadoAte, duracao);
+    }
+
+    private void consolidarJanela(LocalDateTime de, LocalDateTime ate, long[] contagem) {
+        Map<Periodo, Map<String, ResumoPreco>> novos = new LinkedHashMap<>();
+        Map<Long, Produto> referencias = new HashMap<>();
+        for (Object[] linha : registroPrecoRepository.findParaConsolidacao(de, ate)) {
+            Long produtoId = (Long) linha[0];
+            Mercado mercado = (Mercado) linha[1];
+            TipoPreco tipo = (TipoPreco) linha[2];
+            BigDecimal valor = (BigDecimal) linha[3];
+            LocalDateTime data = (LocalDateTime) linha[4];
+            if (mercado == null || tipo == null || valor == null) continue;
+            Produto produto = referencias.computeIfAbsent(produtoId, produtoRepository::getReferenceById); // Sem SELECT
+            for (Granularidade g : Granularidade.values()) {
+                Periodo periodo = new Periodo(g, g.inicio(data.toLocalDate()));
+                novos.computeIfAbsent(periodo, k -> new LinkedHashMap<>())
+                        .computeIfAbsent(chave(produtoId, mercado, tipo), k -> new ResumoPreco(produto, mercado, tipo, g, periodo.inicio()))
+                        .acumular(valor, data);
+            }
+            contagem[0]++;
+        }
+
+        // Primeiro todas as consultas, depois os inserts: uma consulta com inserts pendentes forçaria um flush
+        for (Map.Entry<Periodo, Map<String, ResumoPreco>> entrada : novos.entrySet()) {
+            Periodo periodo = entrada.getKey();
+            Map<String, ResumoPreco> doPeriodo = entrada.getValue();
+            List<Long> ids = doPeriodo.values().stream().map(rp -> rp.getProduto().getId()).distinct().toList();
+            for (int i = 0; i < ids.size(); i += TAMANHO_BLOCO_IN) {
+                List<Long> bloco = ids.subList(i, Math.min(ids.size(), i + TAMANHO_BLOCO_IN));
+                for (ResumoPreco existente : resumoPrecoRepository.findParaConsolidacao(periodo.granularidade(), periodo.inicio(), bloco)) {
+                    ResumoPreco novo = doPeriodo.remove(chave(existente.getProduto().getId(), existente.getMercado(), existente.getTipoPreco()));
+                    if (novo != null) {
+                        existente.mesclar(novo); // Gravado pelo dirty checking
+                    }
+                }
+            }
+        }
+        for (Map<String, ResumoPreco> doPeriodo : novos.values()) {
+            resumoPrecoRepository.saveAll(doPeriodo.values());
+            contagem[1] += doPeriodo.size();
+        }
+
+        marcar(ate);
+        // Mesmo motivo da importação de preços: com open-in-view o EntityManager é o da requisição
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private long[] aplicarRetencao(LocalDateTime consolidadoAte) {
+        long registros = 0;
+        long diarios = 0;
+        if (retencaoDias > 0) {
+            LocalDateTime limite = LocalDate.now().minusDays(retencaoDias).atStartOfDay();
+            // Nunca apaga o que ainda não entrou nos agregados
+            registros = registroPrecoRepository.deleteAnteriores(limite.isBefore(consolidadoAte) ? limite : consolidadoAte);
+        }
+        if (retencaoDiariosDias > 0) {
+            diarios = resumoPrecoRepository.deleteAnteriores(Granularidade.DIA, LocalDate.now().minusDays(retencaoDiariosDias));
+        }
+        return new long[]{registros, diarios};
+    }
+
+    private void marcar(LocalDateTime consolidadoAte) {
+        ConsolidacaoHistorico estado = consolidacaoRepository.findById(ConsolidacaoHistorico.ID)
+                .orElseGet(() -> new ConsolidacaoHistorico(consolidadoAte));
+        estado.setConsolidadoAte(consolidadoAte);
+        estado.setUltimaExecucao(LocalDateTime.now());
+        consolidacaoRepository.save(estado);
+    }
+
+    private LocalDateTime marcaAtual() {
+        return consolidacaoRepository.findById(ConsolidacaoHistorico.ID).map(ConsolidacaoHistorico::getConsolidadoAte).orElse(null);
+    }
+
+    // --- Consultas ---
+
+    /**
+     * Série do produto por período (agregados + trecho ainda não consolidado), do mais antigo ao mais recente.
+     * Os diários só vão até a retenção dos agregados diários.
+     */
+    @Transactional(readOnly = true)
+    public List<ResumoPrecoDTO> listarSerie(Long produtoId, Granularidade granularidade, Mercado mercado, TipoPreco tipoPreco) {
+        // Cópias: os agregados lidos continuam gerenciados pelo EntityManager da requisição
+        Map<String, ResumoPreco> periodos = new HashMap<>();
+        for (ResumoPreco rp : resumoPrecoRepository.findSerie(produtoId, granularidade, mercado, tipoPreco)) {
+            copia(periodos, rp.getInicio(), rp.getMercado(), rp.getTipoPreco(), granularidade).mesclar(rp);
+        }
+        for (Object[] linha : registroPrecoRepository.findValoresDesde(produtoId, desdeNaoConsolidado())) {
+            Mercado m = (Mercado) linha[0];
+            TipoPreco t = (TipoPreco) linha[1];
+            LocalDateTime data = (LocalDateTime) linha[3];
+            if (m == null || t == null || linha[2] == null) continue;
+            if ((mercado != null && m != mercado) || (tipoPreco != null && t != tipoPreco)) continue;
+            copia(periodos, granularidade.inicio(data.toLocalDate()), m, t, granularidade).acumular((BigDecimal) linha[2], data);
+        }
+
+        return periodos.values().stream()
+                .sorted(Comparator.comparing(ResumoPreco::getInicio)
+                        .thenComparing(ResumoPreco::getMercado)
+                        .thenComparing(ResumoPreco::getTipoPreco))
+                .map(rp -> dto(rp, rp.getInicio(), rp.getMercado().name(), rp.getTipoPreco().name()))
+                .toList();
+    }
+
+    private LocalDateTime desdeNaoConsolidado() {
+        LocalDateTime marca = marcaAtual();
+        return marca != null ? marca : INICIO_HISTORICO;
+    }
+
+    private static ResumoPreco copia(Map<String, ResumoPreco> periodos, LocalDate inicio, Mercado mercado, TipoPreco tipo,
+                                     Granularidade granularidade) {
+        return periodos.computeIfAbsent(inicio + "|" + mercado + "|" + tipo,
+                k -> new ResumoPreco(null, mercado, tipo, granularidade, inicio));
+    }
+
+    private static ResumoPrecoDTO dto(ResumoPreco rp, LocalDate inicio, String mercado, String tipo) {
+        BigDecimal media = rp.getQuantidade() > 0
+                ? rp.getSoma().divide(BigDecimal.valueOf(rp.getQuantidade()), 2, RoundingMode.HALF_UP)
+                : null;
+        return new ResumoPrecoDTO(inicio, mercado, tipo, rp.getMinimo(), media, rp.getMaximo(), rp.getUltimo(), rp.getQuantidade());
+    }
+
+    private static String chave(Long produtoId, Mercado mercado, TipoPreco tipo) {
+        return produtoId + "|" + mercado + "|" + tipo;
+    }
+
+    private record Periodo(Granularidade granularidade, LocalDate inicio) {
+    }
+}
@@ -0,0 +1,250 @@
+package com.mercado.orcamento.service;
+
+import com.mercado.orcamento.dto.PaginaDTO;
+import com.mercado.orcamento.dto.PrecoAtualDTO;
+import com.mercado.orcamento.dto.ProdutoResumoDTO;
+import com.mercado.orcamento.dto.RegistroPrecoDTO;
+import com.mercado.orcamento.model.Mercado;
+import com.mercado.orcamento.model.PrecoAtual;
+import com.mercado.orcamento.model.Produto;
+import com.mercado.orcamento.model.TipoPreco;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Consultas paginadas (keyset) das APIs JSON de produtos e preços vigentes.
+ *
+ * Cada página é buscada com "WHERE (chave) > (cursor) ORDER BY chave LIMIT n+1": o custo não
+ * cresce com o número da página, como aconteceria com OFFSET. O cursor é opaco para o cliente
+ * (Base64 da última chave devolvida) e não vale entre ordenações diferentes.
+ */
+@Service
+@Transactional(readOnly = true)
+public class ConsultaOrcamentoService {
+
+    public static final int LIMITE_PADRAO = 50;
+    public static final int LIMITE_MAXIMO = 200;
+
+    private final EntityManager entityManager;
+    private final VersaoDados versaoDados;
+
+    public ConsultaOrcamentoService(EntityManager entityManager, VersaoDados versaoDados) {
+        this.entityManager = entityManager;
+        this.versaoDados = versaoDados;
+    }
+
+    /**
+     * Produtos em ordem de nome, com os preços vigentes no mesmo formato de {@link Produto#getPrecos()}.
+     *
+     * @param busca   trecho do nome (sem diferenciar caixa), opcional
+     * @param naLista filtra pelos itens da lista de compras, opcional
+     */
+    public PaginaDTO<ProdutoResumoDTO> listarProdutos(String busca, Boolean naLista, String cursor, Integer limite) {
+        long versao = versaoDados.atual();
+        int tamanho = tamanhoPagina(limite);
+        Chave depois = decodificar(cursor);
+
+        StringBuilder jpql = new StringBuilder("SELECT p FROM Produto p WHERE 1 = 1");
+        Map<String, Object> parametros = new HashMap<>();
+        filtrarProduto(jpql, parametros, "p", busca, naLista);
+        aposChave(jpql, parametros, "p", "p.id", depois);
+        jpql.append(" ORDER BY COALESCE(p.nome, ''), p.id");
+
+        List<Produto> produtos = executar(jpql, parametros, Produto.class, tamanho);
+        boolean haMais = produtos.size() > tamanho;
+        if (haMais) {
+            produtos = produtos.subList(0, tamanho);
+        }
+
+        // Preços só dos produtos da página (sem JOIN FETCH de coleção junto com o limite)
+        Map<Long, Map<Mercado, Map<TipoPreco, BigDecimal>>> precosPorProduto = new HashMap<>();
+        if (!produtos.isEmpty()) {
+            List<Object[]> linhas = entityManager.createQuery(
+                    "SELECT pa.produto.id, pa.mercado, pa.tipoPreco, pa.valor FROM PrecoAtual pa WHERE pa.produto.id IN :ids",
+                    Object[].class)
+                    .setParameter("ids", produtos.stream().map(Produto::getId).toList())
+                    .getResultList();
+            for (Object[] linha : linhas) {
+                if (linha[1] == null || linha[2] == null || linha[3] == null) continue;
+                precosPorProduto.computeIfAbsent((Long) linha[0], k -> new EnumMap<>(Mercado.class))
+                        .computeIfAbsent((Mercado) linha[1], k -> new EnumMap<>(TipoPreco.class))
+                        .put((TipoPreco) linha[2], (BigDecimal) linha[3]);
+            }
+        }
+
+        List<ProdutoResumoDTO> itens = new ArrayList<>(produtos.size());
+        for (Produto p : produtos) {
+            itens.add(new ProdutoResumoDTO(p.getId(), p.getNome(), p.getMarca(), p.getPeso(), p.getCodigoBarras(),
+                    p.isNaListaDeCompras(), precosPorProduto.getOrDefault(p.getId(), Map.of())));
+        }
+
+        Produto ultimo = haMais ? produtos.get(produtos.size() - 1) : null;
+        return new PaginaDTO<>(itens, ultimo == null ? null : codificar(ultimo.getNome(), ultimo.getId()), versao);
+    }
+
+    /** Preços vigentes em ordem de id, filtráveis por produto, mercado e tipo de preço. */
+    public PaginaDTO<PrecoAtualDTO> listarPrecos(Long produtoId, Mercado mercado, TipoPreco tipoPreco, String cursor, Integer limite) {
+        long versao = versaoDados.atual();
+        int tamanho = tamanhoPagina(limite);
+        Chave depois = decodificar(cursor);
+
+        StringBuilder jpql = new StringBuilder("SELECT pa FROM PrecoAtual pa JOIN FETCH pa.produto p WHERE 1 = 1");
+        Map<String, Object> parametros = new HashMap<>();
+        filtrarPreco(jpql, parametros, produtoId, mercado, tipoPreco);
+        if (depois != null) {
+            jpql.append(" AND pa.id > :depoisId");
+            parametros.put("depoisId", depois.id);
+        }
+        jpql.append(" ORDER BY pa.id");
+
+        List<PrecoAtual> precos = executar(jpql, parametros, PrecoAtual.class, tamanho);
+        boolean haMais = precos.size() > tamanho;
+        if (haMais) {
+            precos = precos.subList(0, tamanho);
+        }
+
+        List<PrecoAtualDTO> itens = new ArrayList<>(precos.size());
+        for (PrecoAtual pa : precos) {
+            itens.add(new PrecoAtualDTO(pa.getId(), pa.getProduto().getId(), pa.getProduto().getNome(),
+                    pa.getMercado() != null ? pa.getMercado().name() : null,
+                    pa.getTipoPreco() != null ? pa.getTipoPreco().name() : null,
+                    pa.getValor(), pa.getDataRegistro()));
+        }
+
+        PrecoAtual ultimo = haMais ? precos.get(precos.size() - 1) : null;
+        return new PaginaDTO<>(itens, ultimo == null ? null : codificar(null, ultimo.getId()), versao);
+    }
+
+    /**
+     * Tabela plana (mesmas linhas de OrcamentoService.listarPrecosPlanos) em ordem de nome do produto.
+     * O melhor preço é sempre o menor valor do produto entre todos os mercados, mesmo com filtro.
+     */
+    public PaginaDTO<RegistroPrecoDTO> listarTabelaPrecos(String busca, Mercado mercado, TipoPreco tipoPreco, String cursor, Integer limite) {
+        long versao = versaoDados.atual();
+        int tamanho = tamanhoPagina(limite);
+        Chave depois = decodificar(cursor);
+
+        StringBuilder jpql = new StringBuilder("SELECT pa FROM PrecoAtual pa JOIN FETCH pa.produto p WHERE 1 = 1");
+        Map<String, Object> parametros = new HashMap<>();
+        filtrarProduto(jpql, parametros, "p", busca, null);
+        filtrarPreco(jpql, parametros, null, mercado, tipoPreco);
+        aposChave(jpql, parametros, "p", "pa.id", depois);
+        jpql.append(" ORDER BY COALESCE(p.nome, ''), pa.id");
+
+        List<PrecoAtual> precos = executar(jpql, parametros, PrecoAtual.class, tamanho);
+        boolean haMais = precos.size() > tamanho;
+        if (haMais) {
+            precos = precos.subList(0, tamanho);
+        }
+
+        Map<Long, BigDecimal> menores = new HashMap<>();
+        if (!precos.isEmpty()) {
+            List<Object[]> linhas = entityManager.createQuery(
+                    "SELECT pa.produto.id, MIN(pa.valor) FROM PrecoAtual pa WHERE pa.produto.id IN :ids GROUP BY pa.produto.id",
+                    Object[].class)
+                    .setParameter("ids", precos.stream().map(pa -> pa.getProduto().getId()).distinct().toList())
+                    .getResultList();
+            for (Object[] linha : linhas) {
+                menores.put((Long) linha[0], (BigDecimal) linha[1]);
+            }
+        }
+
+        List<RegistroPrecoDTO> itens = new ArrayList<>(precos.size());
+        for (PrecoAtual pa : precos) {
+            BigDecimal menor = menores.get(pa.getProduto().getId());
+            boolean ehMelhor = menor != null && pa.getValor() != null && pa.getValor().compareTo(menor) == 0;
+            itens.add(new RegistroPrecoDTO(
+                pa.getMercado().getNomeExibicao(),
+                pa.getProduto().getNome(),
+                pa.getValor(),
+                pa.getTipoPreco().getDescricao(),
+                ehMelhor
+            ));
+        }
+
+        PrecoAtual ultimo = haMais ? precos.get(precos.size() - 1) : null;
+        return new PaginaDTO<>(itens, ultimo == null ? null : codificar(ultimo.getProduto().getNome(), ultimo.getId()), versao);
+    }
+
+    // --- Montagem das consultas ---
+
+    private void filtrarProduto(StringBuilder jpql, Map<String, Object> parametros, String alias, String busca, Boolean naLista) {
+        if (busca != null && !busca.isBlank()) {
+            jpql.append(" AND UPPER(").append(alias).append(".nome) LIKE :busca");
+            parametros.put("busca", "%" + busca.trim().toUpperCase() + "%");
+        }
+        if (naLista != null) {
+            jpql.append(" AND ").append(alias).append(".naListaDeCompras = :naLista");
+            parametros.put("naLista", naLista);
+        }
+    }
+
+    private void filtrarPreco(StringBuilder jpql, Map<String, Object> parametros, Long produtoId, Mercado mercado, TipoPreco tipoPreco) {
+        if (produtoId != null) {
+            jpql.append(" AND p.id = :produtoId");
+            parametros.put("produtoId", produtoId);
+        }
+        if (mercado != null) {
+            jpql.append(" AND pa.mercado = :mercado");
+            parametros.put("mercado", mercado);
+        }
+        if (tipoPreco != null) {
+            jpql.append(" AND pa.tipoPreco = :tipoPreco");
+            parametros.put("tipoPreco", tipoPreco);
+        }
+    }
+
+    /** Keyset (nome do produto, id): tudo que vem depois da última linha da página anterior. */
+    private void aposChave(StringBuilder jpql, Map<String, Object> parametros, String aliasProduto, String colunaId, Chave depois) {
+        if (depois == null) return;
+        String nome = "COALESCE(" + aliasProduto + ".nome, '')";
+        jpql.append(" AND (").append(nome).append(" > :depoisNome OR (")
+            .append(nome).append(" = :depoisNome AND ").append(colunaId).append(" > :depoisId))");
+        parametros.put("depoisNome", depois.nome);
+        parametros.put("depoisId", depois.id);
+    }
+
+    private <T> List<T> executar(StringBuilder jpql, Map<String, Object> parametros, Class<T> tipo, int tamanho) {
+        TypedQuery<T> query = entityManager.createQuery(jpql.toString(), tipo);
+        parametros.forEach(query::setParameter);
+        // Uma linha a mais só para saber se existe próxima página
+        return new ArrayList<>(query.setMaxResults(tamanho + 1).getResultList());
+    }
+
+    private static int tamanhoPagina(Integer limite) {
+        if (limite == null || limite <= 0) return LIMITE_PADRAO;
+        return Math.min(limite, LIMITE_MAXIMO);
+    }
+
+    // --- Cursor ---
+
+    private static String codificar(String nome, Long id) {
+        String chave = (nome == null ? "" : nome) + '\u0000' + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(chave.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Chave decodificar(String cursor) {
+        if (cursor == null || cursor.isBlank()) return null;
+        try {
+            String chave = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separador = chave.lastIndexOf('\u0000');
+            return new Chave(chave.substring(0, separador), Long.parseLong(chave.substring(separador + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cursor invalido: " + cursor);
+        }
+    }
+
+    private record Chave(String nome, long id) {
+    }
+}
@@ -0,0 +1,45 @@
+package com.mercado.orcamento.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Hash SHA-256 do conteúdo de arquivos, usado como endereço das imagens e dos resultados de OCR.
+ */
+public final class ConteudoHash {
+
+    private static final int TAMANHO_BUFFER = 64 * 1024;
+
+    private ConteudoHash() {
+    }
+
+    public static MessageDigest novoDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponivel na JVM", e);
+        }
+    }
+
+    public static String sha256(Path arquivo) throws IOException {
+        MessageDigest digest = novoDigest();
+        byte[] buffer = new byte[TAMANHO_BUFFER];
+        try (InputStream in = Files.newInputStream(arquivo)) {
+            int lidos;
+            while ((lidos = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, lidos);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public static String sha256(String texto) {
+        return HexFormat.of().formatHex(novoDigest().digest(texto.getBytes(StandardCharsets.UTF_8)));
+    }
+}
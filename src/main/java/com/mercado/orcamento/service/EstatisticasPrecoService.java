@@ -0,0 +1,172 @@
+package com.mercado.orcamento.service;
+
+import com.mercado.orcamento.dto.EstatisticaPrecoDTO;
+import com.mercado.orcamento.model.Granularidade;
+import com.mercado.orcamento.repository.ConsolidacaoHistoricoRepository;
+import com.mercado.orcamento.repository.PrecoAtualRepository;
+import com.mercado.orcamento.repository.RegistroPrecoRepository;
+import com.mercado.orcamento.repository.ResumoPrecoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Mínimo, média, máximo, último valor e quantidade de registros de preço de todos os produtos.
+ *
+ * Montado de uma vez, por versão dos dados ({@link VersaoDados}), com três consultas agrupadas
+ * (agregados mensais, trecho ainda não consolidado e preços vigentes); até a próxima escrita de
+ * preço as estatísticas de um produto, de uma lista ou do catálogo inteiro saem da memória.
+ */
+@Service
+public class EstatisticasPrecoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EstatisticasPrecoService.class);
+
+    // Mesmo ponto de partida da ConsolidacaoHistoricoService (nada consolidado ainda)
+    private static final LocalDateTime INICIO_HISTORICO = LocalDate.of(2000, 1, 1).atStartOfDay();
+    private static final int MAX_TENTATIVAS = 3;
+
+    private final ResumoPrecoRepository resumoPrecoRepository;
+    private final RegistroPrecoRepository registroPrecoRepository;
+    private final PrecoAtualRepository precoAtualRepository;
+    private final ConsolidacaoHistoricoRepository consolidacaoRepository;
+    private final VersaoDados versaoDados;
+
+    private volatile Snapshot snapshot;
+
+    public EstatisticasPrecoService(ResumoPrecoRepository resumoPrecoRepository, RegistroPrecoRepository registroPrecoRepository,
+                                    PrecoAtualRepository precoAtualRepository, ConsolidacaoHistoricoRepository consolidacaoRepository,
+                                    VersaoDados versaoDados) {
+        this.resumoPrecoRepository = resumoPrecoRepository;
+        this.registroPrecoRepository = registroPrecoRepository;
+        this.precoAtualRepository = precoAtualRepository;
+        this.consolidacaoRepository = consolidacaoRepository;
+        this.versaoDados = versaoDados;
+    }
+
+    /** Estatísticas de um produto (vazias se ele não tem preço registrado). */
+    public EstatisticaPrecoDTO estatistica(Long produtoId) {
+        EstatisticaPrecoDTO e = obter().porProduto.get(produtoId);
+        return e != null ? e : new EstatisticaPrecoDTO(produtoId, null, null, null, null, null, 0);
+    }
+
+    /** Todos os produtos com preço, em ordem de id. */
+    public List<EstatisticaPrecoDTO> listar() {
+        return obter().lista;
+    }
+
+    /** Só os produtos pedidos que têm preço, em ordem de id. */
+    public List<EstatisticaPrecoDTO> listar(Collection<Long> produtoIds) {
+        Map<Long, EstatisticaPrecoDTO> porProduto = obter().porProduto;
+        return produtoIds.stream()
+                .distinct()
+                .sorted()
+                .map(porProduto::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private Snapshot obter() {
+        Snapshot atual = snapshot;
+        if (atual != null && atual.versao == versaoDados.atual()) {
+            return atual;
+        }
+        synchronized (this) {
+            long versao = versaoDados.atual(); // Lida antes das consultas: escrita concorrente força nova montagem
+            if (snapshot != null && snapshot.versao == versao) {
+                return snapshot;
+            }
+            snapshot = montar(versao);
+            return snapshot;
+        }
+    }
+
+    private Snapshot montar(long versao) {
+        long inicio = System.currentTimeMillis();
+        Map<Long, Acumulado> acumulados = new HashMap<>();
+        for (int tentativa = 1; ; tentativa++) {
+            // Agregados e trecho bruto precisam ver a mesma marca d'água: uma consolidação que termine
+            // entre as duas consultas contaria a mesma semana duas vezes
+            LocalDateTime marca = consolidadoAte();
+            acumulados.clear();
+            for (Object[] linha : resumoPrecoRepository.findTotaisPorProduto(Granularidade.MES)) {
+                acumulado(acumulados, linha).somar(linha);
+            }
+            for (Object[] linha : registroPrecoRepository.findTotaisPorProdutoDesde(marca != null ? marca : INICIO_HISTORICO)) {
+                acumulado(acumulados, linha).somar(linha);
+            }
+            if (Objects.equals(marca, consolidadoAte()) || tentativa == MAX_TENTATIVAS) break;
+            logger.debug("Consolidacao do historico avancou durante as estatisticas; refazendo");
+        }
+
+        // Preço vigente mais recente entre mercados e tipos (a consulta vem em ordem cronológica)
+        for (Object[] linha : precoAtualRepository.findUltimosValores()) {
+            Acumulado a = acumulados.get((Long) linha[0]);
+            if (a == null) continue;
+            a.ultimo = (BigDecimal) linha[1];
+            a.dataUltimo = (LocalDateTime) linha[2];
+        }
+
+        Map<Long, EstatisticaPrecoDTO> porProduto = new HashMap<>(acumulados.size() * 2);
+        List<EstatisticaPrecoDTO> lista = new ArrayList<>(acumulados.size());
+        acumulados.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(e -> {
+                    EstatisticaPrecoDTO dto = e.getValue().dto(e.getKey());
+                    porProduto.put(e.getKey(), dto);
+                    lista.add(dto);
+                });
+        logger.debug("Estatisticas de precos montadas: {} produto(s) em {}ms", lista.size(), System.currentTimeMillis() - inicio);
+        return new Snapshot(versao, porProduto, List.copyOf(lista));
+    }
+
+    private LocalDateTime consolidadoAte() {
+        return consolidacaoRepository.findConsolidadoAte();
+    }
+
+    private static Acumulado acumulado(Map<Long, Acumulado> acumulados, Object[] linha) {
+        return acumulados.computeIfAbsent((Long) linha[0], id -> new Acumulado());
+    }
+
+    // Linha agrupada: produto, mínimo, máximo, soma, quantidade
+    private static final class Acumulado {
+        BigDecimal minimo;
+        BigDecimal maximo;
+        BigDecimal soma = BigDecimal.ZERO;
+        long quantidade;
+        BigDecimal ultimo;
+        LocalDateTime dataUltimo;
+
+        void somar(Object[] linha) {
+            long qtd = ((Number) linha[4]).longValue();
+            if (qtd == 0) return;
+            BigDecimal min = (BigDecimal) linha[1];
+            BigDecimal max = (BigDecimal) linha[2];
+            minimo = minimo == null || min.compareTo(minimo) < 0 ? min : minimo;
+            maximo = maximo == null || max.compareTo(maximo) > 0 ? max : maximo;
+            soma = soma.add((BigDecimal) linha[3]);
+            quantidade += qtd;
+        }
+
+        EstatisticaPrecoDTO dto(Long produtoId) {
+            BigDecimal media = quantidade > 0
+                    ? soma.divide(BigDecimal.valueOf(quantidade), 2, RoundingMode.HALF_UP)
+                    : null;
+            return new EstatisticaPrecoDTO(produtoId, minimo, media, maximo, ultimo, dataUltimo, quantidade);
+        }
+    }
+
+    private record Snapshot(long versao, Map<Long, EstatisticaPrecoDTO> porProduto, List<EstatisticaPrecoDTO> lista) {
+    }
+}
@@ -0,0 +1,170 @@
+package com.mercado.orcamento.service;
+
+import com.google.zxing.LuminanceSource;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Imagem decodificada uma única vez em um raster de 8 bits em escala de cinza.
+ * O leitor de código de barras (ZXing) e o Tesseract leem o mesmo array de pixels,
+ * sem novas cópias ou conversões por etapa.
+ */
+public class ImagemCinza {
+
+    private final BufferedImage imagem;
+    private final byte[] pixels;
+    private final int largura;
+    private final int altura;
+
+    private ImagemCinza(BufferedImage imagemCinza) {
+        this.imagem = imagemCinza;
+        this.pixels = ((DataBufferByte) imagemCinza.getRaster().getDataBuffer()).getData();
+        this.largura = imagemCinza.getWidth();
+        this.altura = imagemCinza.getHeight();
+    }
+
+    public static ImagemCinza decodificar(File arquivo) throws IOException {
+        BufferedImage original = ImageIO.read(arquivo);
+        if (original == null) throw new IOException("Não foi possível ler a imagem.");
+        return deImagem(original);
+    }
+
+    public static ImagemCinza deImagem(BufferedImage original) {
+        if (original.getType() == BufferedImage.TYPE_BYTE_GRAY
+                && original.getRaster().getParent() == null
+                && original.getRaster().getDataBuffer().getSize() == original.getWidth() * original.getHeight()) {
+            return new ImagemCinza(original);
+        }
+
+        // Cria imagem em escala de cinza (a original colorida é descartada logo em seguida)
+        BufferedImage cinza = new BufferedImage(original.getWidth(), original.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = cinza.createGraphics();
+        g.drawImage(original, 0, 0, null);
+        g.dispose();
+        return new ImagemCinza(cinza);
+    }
+
+    /** Pixels em ordem de linha, um byte por pixel, sem padding (stride == largura). */
+    public byte[] getPixels() {
+        return pixels;
+    }
+
+    public int getLargura() {
+        return largura;
+    }
+
+    public int getAltura() {
+        return altura;
+    }
+
+    public BufferedImage getImagem() {
+        return imagem;
+    }
+
+    /**
+     * Versão reduzida (média de blocos f x f) com o maior lado até {@code ladoMaximo}.
+     * Devolve a própria instância se a imagem já for pequena o bastante.
+     */
+    public ImagemCinza reduzir(int ladoMaximo) {
+        return reduzirPorFator(fatorReducao(ladoMaximo));
+    }
+
+    /** Versão reduzida pela média de blocos {@code fator x fator}; 1 devolve a própria instância. */
+    public ImagemCinza reduzirPorFator(int fator) {
+        if (fator <= 1) {
+            return this;
+        }
+
+        int novaLargura = largura / fator;
+        int novaAltura = altura / fator;
+        BufferedImage reduzida = new BufferedImage(novaLargura, novaAltura, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] destino = ((DataBufferByte) reduzida.getRaster().getDataBuffer()).getData();
+        int area = fator * fator;
+
+        for (int y = 0; y < novaAltura; y++) {
+            for (int x = 0; x < novaLargura; x++) {
+                int soma = 0;
+                int inicio = (y * fator) * largura + x * fator;
+                for (int dy = 0; dy < fator; dy++) {
+                    int linha = inicio + dy * largura;
+                    for (int dx = 0; dx < fator; dx++) {
+                        soma += pixels[linha + dx] & 0xFF;
+                    }
+                }
+                destino[y * novaLargura + x] = (byte) (soma / area);
+            }
+        }
+        return new ImagemCinza(reduzida);
+    }
+
+    /** Fator inteiro aplicado por {@link #reduzir(int)} para o lado máximo informado. */
+    public int fatorReducao(int ladoMaximo) {
+        int maiorLado = Math.max(largura, altura);
+        return maiorLado <= ladoMaximo ? 1 : (int) Math.ceil(maiorLado / (double) ladoMaximo);
+    }
+
+    public LuminanceSource comoLuminanceSource() {
+        return new Luminancia(pixels, largura, altura, 0, 0, largura, altura);
+    }
+
+    /**
+     * LuminanceSource do ZXing apontando direto para o raster cinza.
+     * Ao contrário do BufferedImageLuminanceSource, não copia a imagem no construtor.
+     */
+    private static final class Luminancia extends LuminanceSource {
+
+        private final byte[] pixels;
+        private final int larguraTotal;
+        private final int alturaTotal;
+        private final int esquerda;
+        private final int topo;
+
+        Luminancia(byte[] pixels, int larguraTotal, int alturaTotal, int esquerda, int topo, int largura, int altura) {
+            super(largura, altura);
+            this.pixels = pixels;
+            this.larguraTotal = larguraTotal;
+            this.alturaTotal = alturaTotal;
+            this.esquerda = esquerda;
+            this.topo = topo;
+        }
+
+        @Override
+        public byte[] getRow(int y, byte[] linha) {
+            int largura = getWidth();
+            if (linha == null || linha.length < largura) {
+                linha = new byte[largura];
+            }
+            System.arraycopy(pixels, (y + topo) * larguraTotal + esquerda, linha, 0, largura);
+            return linha;
+        }
+
+        @Override
+        public byte[] getMatrix() {
+            int largura = getWidth();
+            int altura = getHeight();
+            if (largura == larguraTotal && altura == alturaTotal) {
+                return pixels;
+            }
+            byte[] matriz = new byte[largura * altura];
+            for (int y = 0; y < altura; y++) {
+                System.arraycopy(pixels, (y + topo) * larguraTotal + esquerda, matriz, y * largura, largura);
+            }
+            return matriz;
+        }
+
+        @Override
+        public boolean isCropSupported() {
+            return true;
+        }
+
+        @Override
+        public LuminanceSource crop(int left, int top, int width, int height) {
+            return new Luminancia(pixels, larguraTotal, alturaTotal, esquerda + left, topo + top, width, height);
+        }
+    }
+}
@@ -0,0 +1,487 @@
+package com.mercado.orcamento.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.mercado.orcamento.dto.ResumoImportacaoPrecos;
+import com.mercado.orcamento.event.DadosOrcamentoAlteradosEvent;
+import com.mercado.orcamento.model.Mercado;
+import com.mercado.orcamento.model.PrecoAtual;
+import com.mercado.orcamento.model.Produto;
+import com.mercado.orcamento.model.RegistroPreco;
+import com.mercado.orcamento.model.TipoPreco;
+import com.mercado.orcamento.repository.PrecoAtualRepository;
+import com.mercado.orcamento.repository.ProdutoRepository;
+import com.mercado.orcamento.repository.RegistroPrecoRepository;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Importação em massa de preços (encarte do mercado) a partir de CSV ou JSON, lida em streaming.
+ *
+ * Colunas/campos: ean (ou codigoBarras), nome (ou produto), mercado, tipoPreco (padrão VAREJO) e valor.
+ * O produto é procurado pelo EAN e, se não houver, pelo nome normalizado exato (sem a busca por
+ * semelhança da lista rápida: um preço nunca vai para um produto "parecido"); produtos desconhecidos
+ * são rejeitados, não criados.
+ *
+ * As linhas são gravadas em blocos, cada bloco na sua transação: os RegistroPreco e os PrecoAtual
+ * novos saem em lotes JDBC. Os índices e snapshots são avisados uma única vez, no final.
+ *
+ * A importação não é atômica: se a leitura falhar no meio (JSON malformado, conexão interrompida),
+ * os blocos já gravados ficam, as linhas anteriores à falha ainda são gravadas e o resumo volta com
+ * {@code linhaInterrupcao}. Reenviar o arquivo inteiro duplicaria o histórico; reenvie só a partir
+ * dessa linha.
+ */
+@Service
+public class ImportacaoPrecosService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportacaoPrecosService.class);
+
+    private static final Long NAO_ENCONTRADO = -1L;
+    // Um separador só, seguido de 1 ou 2 dígitos: é a vírgula ou o ponto decimal
+    private static final Pattern VALOR_DECIMAL = Pattern.compile("\\d+(?:[.,]\\d{1,2})?");
+    // Milhar com ponto só junto da vírgula decimal ("1.234,56"): "1.234" sozinho pode ser 1,234
+    private static final Pattern VALOR_MILHAR_PT_BR = Pattern.compile("\\d{1,3}(?:\\.\\d{3})+,\\d{1,2}");
+
+    private static final Map<String, String> COLUNAS = Map.of(
+        "EAN", "ean", "CODIGOBARRAS", "ean", "CODIGO", "ean",
+        "NOME", "nome", "PRODUTO", "nome",
+        "MERCADO", "mercado",
+        "TIPOPRECO", "tipoPreco", "TIPO", "tipoPreco",
+        "VALOR", "valor", "PRECO", "valor"
+    );
+
+    private final ProdutoRepository produtoRepository;
+    private final RegistroPrecoRepository registroPrecoRepository;
+    private final PrecoAtualRepository precoAtualRepository;
+    private final ApplicationEventPublisher eventos;
+    private final TransactionTemplate transacao;
+    private final EntityManager entityManager;
+    private final ObjectReader leitorJson;
+    private final int tamanhoBloco;
+    private final int maxRejeicoes;
+
+    public ImportacaoPrecosService(ProdutoRepository produtoRepository, RegistroPrecoRepository registroPrecoRepository,
+                                   PrecoAtualRepository precoAtualRepository,
+                                   ApplicationEventPublisher eventos, PlatformTransactionManager transactionManager,
+                                   EntityManager entityManager, ObjectMapper objectMapper,
+                                   @Value("${visionmarket.precos.importacao.tamanho-bloco:1000}") int tamanhoBloco,
+                                   @Value("${visionmarket.precos.importacao.max-rejeicoes:1000}") int maxRejeicoes) {
+        this.produtoRepository = produtoRepository;
+        this.registroPrecoRepository = registroPrecoRepository;
+        this.precoAtualRepository = precoAtualRepository;
+        this.eventos = eventos;
+        this.transacao = new TransactionTemplate(transactionManager);
+        this.entityManager = entityManager;
+        // Valores decimais do JSON como BigDecimal (sem passar por double)
+        this.leitorJson = objectMapper.readerFor(Map.class).with(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+        this.tamanhoBloco = Math.max(1, tamanhoBloco);
+        this.maxRejeicoes = Math.max(0, maxRejeicoes);
+    }
+
+    /**
+     * Lê e grava as linhas à medida que chegam.
+     *
+     * @param tipo content type ou nome do arquivo; sem indicação, JSON se o conteúdo começar com '['
+     * @throws IllegalArgumentException se o cabeçalho do CSV ou a estrutura do JSON forem inválidos
+     *         (nada é gravado)
+     */
+    public ResumoImportacaoPrecos importar(InputStream entrada, String tipo) throws IOException {
+        long inicio = System.nanoTime();
+        Importacao importacao = new Importacao();
+
+        try {
+            BufferedReader leitor = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8), 64 * 1024);
+            try {
+                if (ehJson(leitor, tipo)) {
+                    lerJson(leitor, importacao::receber);
+                } else {
+                    lerCsv(leitor, importacao::receber);
+                }
+            } catch (LeituraInterrompida e) {
+                importacao.linhaInterrupcao = e.linha;
+                importacao.motivoInterrupcao = e.getMessage();
+                logger.warn("Importacao de precos interrompida na linha {}: {}", e.linha, e.getMessage());
+            }
+            // Linhas lidas antes da falha também são gravadas: o reenvio começa em linhaInterrupcao
+            importacao.gravarBloco();
+        } finally {
+            // Mesmo com falha, os blocos já gravados precisam invalidar snapshots, ETags e caches
+            if (importacao.importados > 0) {
+                eventos.publishEvent(new DadosOrcamentoAlteradosEvent("importarPrecos"));
+            }
+        }
+
+        long duracaoMs = Math.max(1, (System.nanoTime() - inicio) / 1_000_000);
+        long porSegundo = importacao.total * 1000L / duracaoMs;
+        logger.info("Importacao de precos: {} linha(s), {} importada(s), {} rejeitada(s) em {}ms ({} linhas/s)",
+                importacao.total, importacao.importados, importacao.rejeitados, duracaoMs, porSegundo);
+        return new ResumoImportacaoPrecos(importacao.total, importacao.importados, importacao.rejeitados,
+                importacao.rejeicoes, importacao.linhaInterrupcao, importacao.motivoInterrupcao, duracaoMs, porSegundo);
+    }
+
+    // --- Leitura ---
+
+    private boolean ehJson(BufferedReader leitor, String tipo) throws IOException {
+        if (tipo != null) {
+            String t = tipo.toLowerCase();
+            if (t.contains("json")) return true;
+            if (t.contains("csv")) return false;
+        }
+        // Espia o primeiro caractere útil (ignora BOM e espaços)
+        leitor.mark(1024);
+        int c;
+        do {
+            c = leitor.read();
+        } while (c == '\uFEFF' || (c != -1 && Character.isWhitespace(c)));
+        leitor.reset();
+        return c == '[';
+    }
+
+    private void lerJson(BufferedReader leitor, Consumer<LinhaPreco> destino) throws IOException {
+        long numero = 0; // No JSON a "linha" é a posição do objeto na lista
+        try (JsonParser parser = leitorJson.getFactory().createParser(leitor)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("O JSON deve ser uma lista de objetos");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                Map<?, ?> objeto = leitorJson.readValue(parser);
+                numero++; // Só depois de lido: numero + 1 é o objeto em que uma falha aconteceu
+                Map<String, String> campos = new HashMap<>();
+                objeto.forEach((chave, valor) -> {
+                    String campo = campo(String.valueOf(chave));
+                    if (campo != null && valor != null) {
+                        campos.put(campo, valor instanceof BigDecimal decimal ? decimal.toPlainString() : valor.toString());
+                    }
+                });
+                destino.accept(new LinhaPreco(numero, campos.get("ean"), campos.get("nome"),
+                        campos.get("mercado"), campos.get("tipoPreco"), campos.get("valor")));
+            }
+        } catch (JsonProcessingException e) {
+            throw new LeituraInterrompida(numero + 1, "JSON invalido: " + e.getOriginalMessage());
+        } catch (IOException e) {
+            throw new LeituraInterrompida(numero + 1, "Erro de leitura: " + e.getMessage());
+        }
+    }
+
+    private void lerCsv(BufferedReader leitor, Consumer<LinhaPreco> destino) throws IOException {
+        String cabecalho = leitor.readLine();
+        if (cabecalho == null) return;
+        if (cabecalho.startsWith("\uFEFF")) cabecalho = cabecalho.substring(1);
+
+        // Planilhas em português costumam exportar com ';' (a vírgula é o separador decimal)
+        char separador = cabecalho.indexOf(';') >= 0 ? ';' : ',';
+        List<String> nomes = dividirCsv(cabecalho, separador);
+        Map<String, Integer> posicoes = new HashMap<>();
+        for (int i = 0; i < nomes.size(); i++) {
+            String campo = campo(nomes.get(i));
+            if (campo != null) posicoes.putIfAbsent(campo, i);
+        }
+        if (!posicoes.containsKey("valor") || !posicoes.containsKey("mercado")
+                || (!posicoes.containsKey("ean") && !posicoes.containsKey("nome"))) {
+            throw new IllegalArgumentException("Cabecalho do CSV precisa das colunas ean ou nome, mercado e valor");
+        }
+
+        long numero = 1; // Linha 1 é o cabeçalho; as rejeições usam o número da linha no arquivo
+        String texto;
+        while (true) {
+            try {
+                texto = leitor.readLine();
+            } catch (IOException e) {
+                throw new LeituraInterrompida(numero + 1, "Erro de leitura: " + e.getMessage());
+            }
+            if (texto == null) break;
+            numero++;
+            if (texto.isBlank()) continue;
+            List<String> valores = dividirCsv(texto, separador);
+            destino.accept(new LinhaPreco(numero, coluna(valores, posicoes, "ean"), coluna(valores, posicoes, "nome"),
+                    coluna(valores, posicoes, "mercado"), coluna(valores, posicoes, "tipoPreco"), coluna(valores, posicoes, "valor")));
+        }
+    }
+
+    private static String coluna(List<String> valores, Map<String, Integer> posicoes, String campo) {
+        Integer i = posicoes.get(campo);
+        return i != null && i < valores.size() ? valores.get(i) : null;
+    }
+
+    /** Divide uma linha de CSV respeitando aspas ("" dentro de aspas vira "). */
+    private static List<String> dividirCsv(String linha, char separador) {
+        List<String> valores = new ArrayList<>();
+        StringBuilder atual = new StringBuilder();
+        boolean entreAspas = false;
+        for (int i = 0; i < linha.length(); i++) {
+            char c = linha.charAt(i);
+            if (entreAspas) {
+                if (c == '"' && i + 1 < linha.length() && linha.charAt(i + 1) == '"') {
+                    atual.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreAspas = false;
+                } else {
+                    atual.append(c);
+                }
+            } else if (c == '"') {
+                entreAspas = true;
+            } else if (c == separador) {
+                valores.add(atual.toString().trim());
+                atual.setLength(0);
+            } else {
+                atual.append(c);
+            }
+        }
+        valores.add(atual.toString().trim());
+        return valores;
+    }
+
+    private static String campo(String nomeColuna) {
+        String chave = Produto.normalizarNome(nomeColuna);
+        return chave == null ? null : COLUNAS.get(chave.replace(" ", "").replace("_", ""));
+    }
+
+    // --- Conversão dos campos ---
+
+    private static Mercado mercado(String texto) {
+        String chave = Produto.normalizarNome(texto);
+        if (chave == null || chave.isEmpty()) return null;
+        for (Mercado m : Mercado.values()) {
+            // Aceita o nome do enum ("ATACADAO") ou o de exibição ("Mercado Atacadão")
+            if (m.name().equals(chave) || Produto.normalizarNome(m.getNomeExibicao()).equals(chave)) return m;
+        }
+        return null;
+    }
+
+    private static TipoPreco tipoPreco(String texto) {
+        String chave = Produto.normalizarNome(texto);
+        if (chave == null || chave.isEmpty()) return TipoPreco.VAREJO;
+        for (TipoPreco t : TipoPreco.values()) {
+            if (t.name().equals(chave)) return t;
+        }
+        return null;
+    }
+
+    /**
+     * Aceita "10", "10.50", "10,50" e "1.234,56", com até 2 casas decimais; devolve sempre com 2 casas.
+     * Formas que mudam de valor conforme a convenção ("10.500", "1,234", "1,234.56") são rejeitadas
+     * em vez de adivinhadas.
+     */
+    static BigDecimal valor(String texto) {
+        if (texto == null) return null;
+        String limpo = texto.replace("R$", "").trim();
+        String numero;
+        if (VALOR_DECIMAL.matcher(limpo).matches()) {
+            numero = limpo.replace(',', '.');
+        } else if (VALOR_MILHAR_PT_BR.matcher(limpo).matches()) {
+            numero = limpo.replace(".", "").replace(',', '.');
+        } else {
+            return null;
+        }
+        BigDecimal valor = new BigDecimal(numero).setScale(2);
+        return valor.signum() > 0 ? valor : null;
+    }
+
+    // --- Gravação ---
+
+    private record LinhaPreco(long numero, String ean, String nome, String mercado, String tipoPreco, String valor) {
+    }
+
+    private record LinhaValida(long numero, String ean, String nome, Mercado mercado, TipoPreco tipoPreco, BigDecimal valor) {
+    }
+
+    /** Falha de leitura depois do cabeçalho: encerra a importação, mas mantém o que já foi lido. */
+    private static final class LeituraInterrompida extends RuntimeException {
+        private final long linha;
+
+        LeituraInterrompida(long linha, String motivo) {
+            super(motivo);
+            this.linha = linha;
+        }
+    }
+
+    /** Estado de uma importação: bloco pendente, caches de produto e contadores. */
+    private final class Importacao {
+
+        private final List<LinhaValida> bloco = new ArrayList<>(tamanhoBloco);
+        private final Map<String, Long> idPorEan = new HashMap<>();
+        private final Map<String, Long> idPorNome = new HashMap<>();
+        private final Map<Long, String> rejeicoes = new LinkedHashMap<>();
+        private long total;
+        private long importados;
+        private long rejeitados;
+        private Long linhaInterrupcao;
+        private String motivoInterrupcao;
+
+        void receber(LinhaPreco linha) {
+            total++;
+            String ean = linha.ean() == null || linha.ean().isBlank() ? null : linha.ean().trim();
+            String nome = linha.nome() == null || linha.nome().isBlank() ? null : linha.nome().trim();
+            if (ean == null && nome == null) {
+                rejeitar(linha.numero(), "Informe o EAN ou o nome do produto");
+                return;
+            }
+            Mercado mercado = mercado(linha.mercado());
+            if (mercado == null) {
+                rejeitar(linha.numero(), "Mercado invalido: " + linha.mercado());
+                return;
+            }
+            TipoPreco tipo = tipoPreco(linha.tipoPreco());
+            if (tipo == null) {
+                rejeitar(linha.numero(), "Tipo de preco invalido: " + linha.tipoPreco());
+                return;
+            }
+            BigDecimal valor = valor(linha.valor());
+            if (valor == null) {
+                rejeitar(linha.numero(), "Valor invalido (use 10,50, 10.50 ou 1.234,56; no maximo 2 casas decimais): " + linha.valor());
+                return;
+            }
+            bloco.add(new LinhaValida(linha.numero(), ean, nome, mercado, tipo, valor));
+            if (bloco.size() >= tamanhoBloco) {
+                gravarBloco();
+            }
+        }
+
+        void gravarBloco() {
+            if (bloco.isEmpty()) return;
+
+            // 1. EANs ainda não vistos: uma consulta para o bloco inteiro
+            Set<String> eansNovos = new HashSet<>();
+            for (LinhaValida linha : bloco) {
+                if (linha.ean() != null && !idPorEan.containsKey(linha.ean())) eansNovos.add(linha.ean());
+            }
+            if (!eansNovos.isEmpty()) {
+                for (Object[] achado : produtoRepository.findIdPorCodigoBarras(eansNovos)) {
+                    idPorEan.put((String) achado[0], (Long) achado[1]);
+                }
+                eansNovos.forEach(ean -> idPorEan.putIfAbsent(ean, NAO_ENCONTRADO));
+            }
+
+            // 2. Nomes das linhas sem produto pelo EAN: outra consulta, por igualdade do nome normalizado
+            Set<String> nomesNovos = new HashSet<>();
+            for (LinhaValida linha : bloco) {
+                if (linha.nome() != null && (linha.ean() == null || NAO_ENCONTRADO.equals(idPorEan.get(linha.ean())))) {
+                    String nome = Produto.normalizarNome(linha.nome());
+                    if (!idPorNome.containsKey(nome)) nomesNovos.add(nome);
+                }
+            }
+            if (!nomesNovos.isEmpty()) {
+                for (Object[] achado : produtoRepository.findIdPorNomeNormalizado(nomesNovos)) {
+                    idPorNome.put((String) achado[0], (Long) achado[1]);
+                }
+                nomesNovos.forEach(nome -> idPorNome.putIfAbsent(nome, NAO_ENCONTRADO));
+            }
+
+            // 3. Resolve o produto de cada linha (EAN primeiro, depois o nome)
+            List<LinhaValida> resolvidas = new ArrayList<>(bloco.size());
+            List<Long> ids = new ArrayList<>(bloco.size());
+            for (LinhaValida linha : bloco) {
+                Long id = linha.ean() != null ? idPorEan.get(linha.ean()) : NAO_ENCONTRADO;
+                if (NAO_ENCONTRADO.equals(id) && linha.nome() != null) {
+                    id = idPorNome.get(Produto.normalizarNome(linha.nome()));
+                }
+                if (NAO_ENCONTRADO.equals(id)) {
+                    rejeitar(linha.numero(), "Produto nao encontrado: " + (linha.ean() != null ? linha.ean() : linha.nome()));
+                } else {
+                    resolvidas.add(linha);
+                    ids.add(id);
+                }
+            }
+            bloco.clear();
+            if (resolvidas.isEmpty()) return;
+
+            // 4. Histórico + preço vigente do bloco numa transação (inserts em lote)
+            try {
+                try {
+                    transacao.executeWithoutResult(status -> gravar(resolvidas, ids));
+                } catch (DataIntegrityViolationException e) {
+                    // Preço vigente inserido em paralelo (atualizarPreco ou outra importação) depois da
+                    // leitura: o bloco foi desfeito; na segunda vez a linha já existe e é atualizada
+                    logger.debug("Preco vigente criado em paralelo durante a importacao; regravando o bloco");
+                    transacao.executeWithoutResult(status -> gravar(resolvidas, ids));
+                }
+                importados += resolvidas.size();
+            } catch (RuntimeException e) {
+                logger.error("Erro ao gravar bloco de {} preco(s) importado(s): ", resolvidas.size(), e);
+                for (LinhaValida linha : resolvidas) {
+                    rejeitar(linha.numero(), "Erro ao gravar: " + e.getClass().getSimpleName());
+                }
+            }
+        }
+
+        private void gravar(List<LinhaValida> linhas, List<Long> ids) {
+            Set<Mercado> mercados = EnumSet.noneOf(Mercado.class);
+            Set<TipoPreco> tipos = EnumSet.noneOf(TipoPreco.class);
+            for (LinhaValida linha : linhas) {
+                mercados.add(linha.mercado());
+                tipos.add(linha.tipoPreco());
+            }
+            Map<String, PrecoAtual> vigentes = new HashMap<>();
+            for (PrecoAtual pa : precoAtualRepository.findParaImportacao(new HashSet<>(ids), mercados, tipos)) {
+                vigentes.put(chave(pa.getProduto().getId(), pa.getMercado(), pa.getTipoPreco()), pa);
+            }
+
+            Map<Long, Produto> referencias = new HashMap<>();
+            List<RegistroPreco> registros = new ArrayList<>(linhas.size());
+            List<PrecoAtual> novosVigentes = new ArrayList<>();
+            for (int i = 0; i < linhas.size(); i++) {
+                LinhaValida linha = linhas.get(i);
+                Long id = ids.get(i);
+                Produto produto = referencias.computeIfAbsent(id, produtoRepository::getReferenceById); // Sem SELECT
+
+                RegistroPreco registro = new RegistroPreco(produto, linha.mercado(), linha.valor(), linha.tipoPreco());
+                registros.add(registro);
+
+                PrecoAtual atual = vigentes.computeIfAbsent(chave(id, linha.mercado(), linha.tipoPreco()), k -> {
+                    PrecoAtual novo = new PrecoAtual(produto, linha.mercado(), linha.tipoPreco());
+                    novosVigentes.add(novo);
+                    return novo;
+                });
+                OrcamentoService.aplicarRegistro(atual, registro);
+            }
+            registroPrecoRepository.saveAll(registros);
+            precoAtualRepository.saveAll(novosVigentes); // Os existentes são gravados pelo dirty checking
+
+            // Com open-in-view a requisição inteira usa o mesmo EntityManager: sem o clear, cada flush
+            // voltaria a verificar todas as entidades dos blocos anteriores. O flush passa pelo repositório
+            // para a violação da restrição única chegar traduzida (DataIntegrityViolationException)
+            precoAtualRepository.flush();
+            entityManager.clear();
+        }
+
+        private String chave(Long produtoId, Mercado mercado, TipoPreco tipo) {
+            return produtoId + "|" + mercado + "|" + tipo;
+        }
+
+        private void rejeitar(long numero, String motivo) {
+            rejeitados++;
+            if (rejeicoes.size() < maxRejeicoes) {
+                rejeicoes.put(numero, motivo);
+            }
+        }
+    }
+}
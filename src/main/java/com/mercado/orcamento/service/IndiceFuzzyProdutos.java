@@ -0,0 +1,299 @@
+package com.mercado.orcamento.service;
+
+import com.mercado.orcamento.dto.CorrespondenciaProduto;
+import com.mercado.orcamento.event.ProdutoAlteradoEvent;
+import com.mercado.orcamento.repository.ProdutoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice fuzzy (BK-tree) das palavras dos nomes de produtos do catálogo.
+ * Permite ligar o texto do OCR a um {@code Produto} existente mesmo com erros de leitura,
+ * sem comparar cada palavra com o catálogo inteiro.
+ *
+ * Carregado uma vez na subida da aplicação e atualizado de forma incremental pelos
+ * {@link ProdutoAlteradoEvent} publicados pelo OrcamentoService. A BK-tree não remove nós:
+ * palavras que ficaram sem produto (e não são genéricas) são ignoradas nas buscas e, quando
+ * passam a ser uma parte grande da árvore, ela é reconstruída só com as palavras vivas.
+ */
+@Component
+public class IndiceFuzzyProdutos {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndiceFuzzyProdutos.class);
+
+    // Palavras genéricas de mercado: ajudam a escolher a linha da descrição mesmo
+    // quando o produto ainda não está cadastrado
+    private static final List<String> PALAVRAS_GENERICAS = Arrays.asList(
+        "ARROZ", "FEIJAO", "MACARRAO", "OLEO", "AZEITE", "LEITE", "CAFE", "ACUCAR",
+        "SAL", "FARINHA", "BISCOITO", "BOLACHA", "SABAO", "DETERGENTE", "AMACIANTE",
+        "DESINFETANTE", "SHAMPOO", "CONDICIONADOR", "SABONETE", "PASTA DENTAL",
+        "REFRIGERANTE", "SUCO", "AGUA", "CERVEJA", "VODKA", "WHISKY", "VINHO",
+        "CARNE", "FRANGO", "PEIXE", "OVO", "QUEIJO", "PRESUNTO", "IOURTE", "MANTEIGA"
+    );
+
+    private static final int TAMANHO_MINIMO_PALAVRA = 3;
+    private static final double PONTUACAO_MINIMA = 0.5;
+    // Reconstrói a árvore quando as palavras mortas passam deste mínimo e de 1/4 dos nós
+    private static final int MINIMO_MORTOS_RECONSTRUCAO = 256;
+
+    private final ProdutoRepository produtoRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private No raiz;
+    private final Map<String, No> nosPorPalavra = new HashMap<>();
+    private final Map<Long, String> nomesPorProduto = new HashMap<>();
+    private final Map<Long, List<String>> palavrasPorProduto = new HashMap<>();
+    private int nosMortos;
+
+    public IndiceFuzzyProdutos(ProdutoRepository produtoRepository) {
+        this.produtoRepository = produtoRepository;
+        lock.writeLock().lock();
+        try {
+            indexarGenericas();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void carregarCatalogo() {
+        long inicio = System.currentTimeMillis();
+        List<Object[]> produtos = produtoRepository.findIdENome();
+        int palavras;
+        lock.writeLock().lock();
+        try {
+            for (Object[] linha : produtos) {
+                indexar((Long) linha[0], (String) linha[1]);
+            }
+            palavras = nosPorPalavra.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Indice fuzzy de produtos carregado: {} produto(s), {} palavra(s) em {}ms",
+                produtos.size(), palavras, System.currentTimeMillis() - inicio);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void aoAlterarProduto(ProdutoAlteradoEvent evento) {
+        lock.writeLock().lock();
+        try {
+            desindexar(evento.getProdutoId());
+            if (!evento.isRemovido()) {
+                indexar(evento.getProdutoId(), evento.getNome());
+            }
+            if (nosMortos >= MINIMO_MORTOS_RECONSTRUCAO && nosMortos * 4 >= nosPorPalavra.size()) {
+                reconstruir();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Até {@code k} produtos do catálogo cujo nome aparece no texto, do mais provável ao menos.
+     */
+    public List<CorrespondenciaProduto> buscar(String texto, int k) {
+        List<String> consulta = palavras(texto);
+        if (consulta.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<Long, Map<String, Double>> melhorPorPalavra = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (String palavra : consulta) {
+                List<Object[]> achados = new ArrayList<>();
+                pesquisar(raiz, palavra, limiteDistancia(palavra), achados);
+                for (Object[] achado : achados) {
+                    No no = (No) achado[0];
+                    int distancia = (Integer) achado[1];
+                    double peso = 1.0 - (double) distancia / Math.max(palavra.length(), no.palavra.length());
+                    for (Long id : no.produtos) {
+                        melhorPorPalavra.computeIfAbsent(id, x -> new HashMap<>())
+                                .merge(no.palavra, peso, Math::max);
+                    }
+                }
+            }
+
+            List<CorrespondenciaProduto> resultado = new ArrayList<>();
+            for (Map.Entry<Long, Map<String, Double>> entrada : melhorPorPalavra.entrySet()) {
+                List<String> palavrasDoNome = palavrasPorProduto.get(entrada.getKey());
+                if (palavrasDoNome == null || palavrasDoNome.isEmpty()) continue;
+                double soma = entrada.getValue().values().stream().mapToDouble(Double::doubleValue).sum();
+                double pontuacao = Math.min(1.0, soma / palavrasDoNome.size());
+                if (pontuacao >= PONTUACAO_MINIMA) {
+                    resultado.add(new CorrespondenciaProduto(entrada.getKey(), nomesPorProduto.get(entrada.getKey()), pontuacao));
+                }
+            }
+            resultado.sort((a, b) -> Double.compare(b.getPontuacao(), a.getPontuacao()));
+            return resultado.size() > k ? new ArrayList<>(resultado.subList(0, k)) : resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Menor distância de edição entre a palavra e qualquer palavra conhecida (catálogo ou genérica),
+     * limitada a {@code limite}; devolve {@code Integer.MAX_VALUE} se nenhuma estiver dentro do limite.
+     */
+    public int menorDistancia(String palavra, int limite) {
+        lock.readLock().lock();
+        try {
+            List<Object[]> achados = new ArrayList<>();
+            pesquisar(raiz, palavra, limite, achados);
+            int menor = Integer.MAX_VALUE;
+            for (Object[] achado : achados) {
+                menor = Math.min(menor, (Integer) achado[1]);
+            }
+            return menor;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // --- BK-tree ---
+
+    private void indexarGenericas() {
+        for (String generica : PALAVRAS_GENERICAS) {
+            for (String palavra : palavras(generica)) {
+                no(palavra).generica = true;
+            }
+        }
+    }
+
+    private void indexar(Long id, String nome) {
+        if (id == null || nome == null) return;
+        List<String> palavrasDoNome = palavras(nome);
+        nomesPorProduto.put(id, nome);
+        palavrasPorProduto.put(id, palavrasDoNome);
+        for (String palavra : palavrasDoNome) {
+            No existente = nosPorPalavra.get(palavra);
+            if (existente != null && !existente.vivo()) nosMortos--; // Palavra morta voltou a ter produto
+            no(palavra).produtos.add(id);
+        }
+    }
+
+    private void desindexar(Long id) {
+        List<String> anteriores = palavrasPorProduto.remove(id);
+        nomesPorProduto.remove(id);
+        if (anteriores == null) return;
+        // O nó continua na árvore (BK-tree não remove nós); só deixa de apontar para o produto
+        for (String palavra : anteriores) {
+            No no = nosPorPalavra.get(palavra);
+            if (no != null && no.produtos.remove(id) && !no.vivo()) nosMortos++;
+        }
+    }
+
+    // Árvore nova só com as genéricas e as palavras dos produtos ainda no índice
+    private void reconstruir() {
+        long inicio = System.currentTimeMillis();
+        int antes = nosPorPalavra.size();
+        raiz = null;
+        nosPorPalavra.clear();
+        nosMortos = 0;
+        indexarGenericas();
+        for (Map.Entry<Long, List<String>> produto : palavrasPorProduto.entrySet()) {
+            for (String palavra : produto.getValue()) {
+                no(palavra).produtos.add(produto.getKey());
+            }
+        }
+        logger.info("Indice fuzzy de produtos reconstruido: {} -> {} palavra(s) em {}ms",
+                antes, nosPorPalavra.size(), System.currentTimeMillis() - inicio);
+    }
+
+    private No no(String palavra) {
+        No existente = nosPorPalavra.get(palavra);
+        if (existente != null) return existente;
+
+        No novo = new No(palavra);
+        nosPorPalavra.put(palavra, novo);
+        if (raiz == null) {
+            raiz = novo;
+            return novo;
+        }
+        No atual = raiz;
+        while (true) {
+            int distancia = Levenshtein.distancia(palavra, atual.palavra);
+            No filho = atual.filhos.get(distancia);
+            if (filho == null) {
+                atual.filhos.put(distancia, novo);
+                return novo;
+            }
+            atual = filho;
+        }
+    }
+
+    private void pesquisar(No no, String palavra, int limite, List<Object[]> achados) {
+        if (no == null) return;
+        int distancia = Levenshtein.distancia(palavra, no.palavra);
+        if (distancia <= limite && no.vivo()) { // Nó morto ainda guia a descida, mas não é resultado
+            achados.add(new Object[]{no, distancia});
+        }
+        // Desigualdade triangular: só os filhos com aresta em [d - limite, d + limite] podem estar no raio
+        for (Map.Entry<Integer, No> filho : no.filhos.entrySet()) {
+            int aresta = filho.getKey();
+            if (aresta >= distancia - limite && aresta <= distancia + limite) {
+                pesquisar(filho.getValue(), palavra, limite, achados);
+            }
+        }
+    }
+
+    private static int limiteDistancia(String palavra) {
+        return palavra.length() <= 4 ? 1 : 2;
+    }
+
+    /** Palavras normalizadas (maiúsculas, sem acento, só A-Z/0-9) com pelo menos uma letra. */
+    static List<String> palavras(String texto) {
+        List<String> palavras = new ArrayList<>();
+        if (texto == null) return palavras;
+        String semAcento = Normalizer.normalize(texto.toUpperCase(), Normalizer.Form.NFD);
+        StringBuilder atual = new StringBuilder();
+        boolean temLetra = false;
+        for (int i = 0; i <= semAcento.length(); i++) {
+            char c = i < semAcento.length() ? semAcento.charAt(i) : ' ';
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            if ((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+                atual.append(c);
+                temLetra |= c >= 'A';
+            } else {
+                if (atual.length() >= TAMANHO_MINIMO_PALAVRA && temLetra) {
+                    palavras.add(atual.toString());
+                }
+                atual.setLength(0);
+                temLetra = false;
+            }
+        }
+        return palavras;
+    }
+
+    private static final class No {
+        private final String palavra;
+        private final Map<Integer, No> filhos = new HashMap<>(4);
+        private final Set<Long> produtos = new HashSet<>(2);
+        private boolean generica;
+
+        private No(String palavra) {
+            this.palavra = palavra;
+        }
+
+        private boolean vivo() {
+            return generica || !produtos.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.mercado.orcamento.service;
+
+import com.mercado.orcamento.dto.FotoGaleria;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Índice em memória das fotos da galeria (nome, tamanho, data e dimensões).
+ * A pasta é varrida uma única vez na subida; depois o índice acompanha os eventos do
+ * sistema de arquivos (WatchService), sem novos Files.walk a cada página.
+ *
+ * As leituras devolvem uma lista imutável pronta (snapshot), trocada de uma vez só
+ * quando algo muda, então qualquer número de requisições pode ler ao mesmo tempo.
+ */
+@Component
+public class IndiceGaleria {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndiceGaleria.class);
+
+    private final String CAMINHO_FOTOS = "C:\\Users\\Borges\\Downloads\\MERCADO_FOTOS";
+
+    private final Map<String, FotoGaleria> fotos = new ConcurrentHashMap<>();
+    private volatile List<String> snapshotNomes = Collections.emptyList();
+
+    private WatchService watchService;
+    private Thread observador;
+
+    @PostConstruct
+    public void iniciar() {
+        Path raiz = Paths.get(CAMINHO_FOTOS);
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+        } catch (IOException e) {
+            logger.warn("WatchService indisponivel; a galeria so sera atualizada pelos uploads: {}", e.getMessage());
+        }
+
+        // A varredura inicial roda fora da subida: a página mostra o que já foi indexado
+        observador = new Thread(() -> {
+            varrer(raiz);
+            observar();
+        }, "galeria-observador");
+        observador.setDaemon(true);
+        observador.start();
+    }
+
+    /** Nomes das fotos, da mais recente para a mais antiga. Leitura O(1), sem tocar no disco. */
+    public List<String> listarNomes() {
+        return snapshotNomes;
+    }
+
+    public Optional<FotoGaleria> buscar(String nome) {
+        return Optional.ofNullable(fotos.get(nome));
+    }
+
+    /**
+     * Registra (ou atualiza) uma foto na hora, sem esperar o evento do WatchService.
+     * Usado pelo upload para a foto aparecer já no redirect.
+     */
+    public void registrar(Path arquivo) {
+        if (indexar(arquivo)) {
+            publicarSnapshot();
+        }
+    }
+
+    private void varrer(Path raiz) {
+        long inicio = System.currentTimeMillis();
+        if (!Files.isDirectory(raiz)) {
+            logger.warn("Pasta de fotos nao encontrada: {}", raiz);
+            return;
+        }
+        try (Stream<Path> caminhos = Files.walk(raiz)) {
+            caminhos.forEach(c -> {
+                if (Files.isDirectory(c)) registrarDiretorio(c);
+                else indexar(c);
+            });
+        } catch (IOException | RuntimeException e) {
+            logger.error("Erro ao indexar imagens do diretório {}: ", raiz, e);
+        }
+        publicarSnapshot();
+        logger.info("Galeria indexada: {} foto(s) em {}ms", fotos.size(), System.currentTimeMillis() - inicio);
+    }
+
+    private void observar() {
+        if (watchService == null) return;
+        try {
+            while (true) {
+                WatchKey chave = watchService.take();
+                Path diretorio = (Path) chave.watchable();
+                boolean mudou = false;
+
+                for (WatchEvent<?> evento : chave.pollEvents()) {
+                    if (evento.kind() == OVERFLOW) {
+                        // Eventos perdidos: refaz o índice do zero
+                        logger.warn("Eventos da galeria perdidos (OVERFLOW). Reindexando {}", CAMINHO_FOTOS);
+                        fotos.clear();
+                        varrer(Paths.get(CAMINHO_FOTOS));
+                        continue;
+                    }
+                    Path caminho = diretorio.resolve((Path) evento.context());
+                    if (evento.kind() == ENTRY_DELETE) {
+                        mudou |= fotos.remove(caminho.getFileName().toString()) != null;
+                    } else if (Files.isDirectory(caminho)) {
+                        // Subpasta nova: passa a ser observada e o conteúdo já existente é indexado
+                        varrerSubpasta(caminho);
+                        mudou = true;
+                    } else {
+                        mudou |= indexar(caminho);
+                    }
+                }
+
+                if (mudou) {
+                    publicarSnapshot();
+                }
+                chave.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Encerramento da aplicação
+        }
+    }
+
+    private void varrerSubpasta(Path pasta) {
+        try (Stream<Path> caminhos = Files.walk(pasta)) {
+            caminhos.forEach(c -> {
+                if (Files.isDirectory(c)) registrarDiretorio(c);
+                else indexar(c);
+            });
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Erro ao indexar subpasta {}: {}", pasta, e.getMessage());
+        }
+    }
+
+    private void registrarDiretorio(Path diretorio) {
+        if (watchService == null) return;
+        try {
+            diretorio.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+        } catch (IOException e) {
+            logger.warn("Nao foi possivel observar {}: {}", diretorio, e.getMessage());
+        }
+    }
+
+    /** @return true se o índice mudou */
+    private boolean indexar(Path arquivo) {
+        String nome = arquivo.getFileName().toString();
+        if (!ehImagem(nome)) return false;
+
+        BasicFileAttributes atributos;
+        try {
+            atributos = Files.readAttributes(arquivo, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return fotos.remove(nome) != null; // Apagado entre o evento e a leitura
+        }
+        if (!atributos.isRegularFile()) return false;
+
+        long modificadoEm = atributos.lastModifiedTime().toMillis();
+        FotoGaleria atual = fotos.get(nome);
+        if (atual != null && atual.getTamanhoBytes() == atributos.size() && atual.getModificadoEm() == modificadoEm) {
+            return false; // ENTRY_MODIFY repetido durante a cópia do arquivo
+        }
+
+        int[] dimensoes = lerDimensoes(arquivo);
+        fotos.put(nome, new FotoGaleria(nome, atributos.size(), modificadoEm, dimensoes[0], dimensoes[1]));
+        return true;
+    }
+
+    /** Lê só o cabeçalho da imagem (largura x altura), sem decodificar os pixels. */
+    private int[] lerDimensoes(Path arquivo) {
+        try (ImageInputStream entrada = ImageIO.createImageInputStream(arquivo.toFile())) {
+            if (entrada != null) {
+                Iterator<ImageReader> leitores = ImageIO.getImageReaders(entrada);
+                if (leitores.hasNext()) {
+                    ImageReader leitor = leitores.next();
+                    try {
+                        leitor.setInput(entrada, true, true);
+                        return new int[]{leitor.getWidth(0), leitor.getHeight(0)};
+                    } finally {
+                        leitor.dispose();
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Arquivo ainda sendo copiado ou corrompido: fica sem dimensões
+        }
+        return new int[]{0, 0};
+    }
+
+    private synchronized void publicarSnapshot() {
+        List<FotoGaleria> ordenadas = new ArrayList<>(fotos.values());
+        ordenadas.sort(Comparator.comparingLong(FotoGaleria::getModificadoEm).reversed()
+                .thenComparing(FotoGaleria::getNome));
+        List<String> nomes = new ArrayList<>(ordenadas.size());
+        for (FotoGaleria foto : ordenadas) {
+            nomes.add(foto.getNome());
+        }
+        snapshotNomes = Collections.unmodifiableList(nomes);
+    }
+
+    private static boolean ehImagem(String nome) {
+        String minusculo = nome.toLowerCase();
+        return minusculo.endsWith(".jpg") || minusculo.endsWith(".jpeg") || minusculo.endsWith(".png");
+    }
+
+    @PreDestroy
+    public void encerrar() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+        if (observador != null) {
+            observador.interrupt();
+        }
+    }
+}
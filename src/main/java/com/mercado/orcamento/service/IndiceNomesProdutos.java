@@ -0,0 +1,163 @@
+package com.mercado.orcamento.service;
+
+import com.mercado.orcamento.event.ProdutoAlteradoEvent;
+import com.mercado.orcamento.model.Produto;
+import com.mercado.orcamento.repository.ProdutoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice em memória dos nomes normalizados ({@link Produto#normalizarNome}) do catálogo,
+ * usado pela busca de produto por nome do OrcamentoService sem varrer a tabela.
+ *
+ * Resolve, nesta ordem:
+ * <ol>
+ *   <li>nome igual ao buscado (mapa por nome);</li>
+ *   <li>nome contido na busca, em limites de palavra: "ARROZ TIO JOAO 5KG" encontra "ARROZ TIO JOAO";</li>
+ *   <li>busca contida no nome, a partir do início de uma palavra: "CAFE PIL" encontra "CAFE PILAO".</li>
+ * </ol>
+ * Mantido pelos {@link ProdutoAlteradoEvent}, como o IndiceFuzzyProdutos.
+ */
+@Component
+public class IndiceNomesProdutos {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndiceNomesProdutos.class);
+
+    private final ProdutoRepository produtoRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Nome normalizado -> ids (menor id primeiro, como o antigo findAll().findFirst())
+    private final Map<String, TreeSet<Long>> idsPorNome = new HashMap<>();
+    // Palavra -> produtos que a contêm; ordenado para buscar por prefixo
+    private final NavigableMap<String, Set<Long>> idsPorPalavra = new TreeMap<>();
+    private final Map<Long, String> nomePorId = new HashMap<>();
+
+    public IndiceNomesProdutos(ProdutoRepository produtoRepository) {
+        this.produtoRepository = produtoRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void carregarCatalogo() {
+        long inicio = System.currentTimeMillis();
+        List<Object[]> produtos = produtoRepository.findIdENome();
+        lock.writeLock().lock();
+        try {
+            for (Object[] linha : produtos) {
+                indexar((Long) linha[0], (String) linha[1]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Indice de nomes de produtos carregado: {} produto(s), {} palavra(s) em {}ms",
+                produtos.size(), idsPorPalavra.size(), System.currentTimeMillis() - inicio);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void aoAlterarProduto(ProdutoAlteradoEvent evento) {
+        lock.writeLock().lock();
+        try {
+            desindexar(evento.getProdutoId());
+            if (!evento.isRemovido()) {
+                indexar(evento.getProdutoId(), evento.getNome());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Id do produto cujo nome corresponde à busca (ver ordem na documentação da classe). */
+    public Optional<Long> buscar(String nomeBusca) {
+        String busca = Produto.normalizarNome(nomeBusca);
+        if (busca == null || busca.isEmpty()) return Optional.empty();
+        String[] palavras = busca.split(" ");
+
+        lock.readLock().lock();
+        try {
+            // 1. Igual
+            TreeSet<Long> iguais = idsPorNome.get(busca);
+            if (iguais != null) return Optional.of(iguais.first());
+
+            // 2. Nome do produto contido na busca: trechos de palavras consecutivas, do maior para o menor
+            for (int tamanho = palavras.length - 1; tamanho >= 1; tamanho--) {
+                Long melhor = null;
+                for (int i = 0; i + tamanho <= palavras.length; i++) {
+                    TreeSet<Long> ids = idsPorNome.get(String.join(" ", List.of(palavras).subList(i, i + tamanho)));
+                    if (ids != null && (melhor == null || ids.first() < melhor)) melhor = ids.first();
+                }
+                if (melhor != null) return Optional.of(melhor);
+            }
+
+            // 3. Busca contida no nome: candidatos com todas as palavras (a última pode ser prefixo)
+            Set<Long> candidatos = null;
+            for (int i = 0; i < palavras.length; i++) {
+                Set<Long> daPalavra = i == palavras.length - 1 ? comPrefixo(palavras[i]) : idsPorPalavra.get(palavras[i]);
+                if (daPalavra == null || daPalavra.isEmpty()) return Optional.empty();
+                if (candidatos == null) {
+                    candidatos = new HashSet<>(daPalavra);
+                } else {
+                    candidatos.retainAll(daPalavra);
+                }
+                if (candidatos.isEmpty()) return Optional.empty();
+            }
+            Long melhor = null;
+            for (Long id : candidatos) {
+                String nome = nomePorId.get(id);
+                if ((nome.startsWith(busca) || nome.contains(" " + busca)) && (melhor == null || id < melhor)) {
+                    melhor = id;
+                }
+            }
+            return Optional.ofNullable(melhor);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Set<Long> comPrefixo(String prefixo) {
+        Set<Long> ids = new HashSet<>();
+        for (Set<Long> daPalavra : idsPorPalavra.subMap(prefixo, true, prefixo + Character.MAX_VALUE, false).values()) {
+            ids.addAll(daPalavra);
+        }
+        return ids;
+    }
+
+    private void indexar(Long id, String nome) {
+        String normalizado = Produto.normalizarNome(nome);
+        if (id == null || normalizado == null || normalizado.isEmpty()) return;
+        nomePorId.put(id, normalizado);
+        idsPorNome.computeIfAbsent(normalizado, k -> new TreeSet<>()).add(id);
+        for (String palavra : normalizado.split(" ")) {
+            idsPorPalavra.computeIfAbsent(palavra, k -> new HashSet<>(2)).add(id);
+        }
+    }
+
+    private void desindexar(Long id) {
+        String anterior = nomePorId.remove(id);
+        if (anterior == null) return;
+        TreeSet<Long> iguais = idsPorNome.get(anterior);
+        if (iguais != null && iguais.remove(id) && iguais.isEmpty()) {
+            idsPorNome.remove(anterior);
+        }
+        for (String palavra : anterior.split(" ")) {
+            Set<Long> ids = idsPorPalavra.get(palavra);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                idsPorPalavra.remove(palavra);
+            }
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.mercado.orcamento.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Varre o texto do OCR uma única vez, caractere a caractere, e devolve os candidatos a
+ * preço, peso e descrição do produto. Substitui os Pattern.compile / matches / replaceAll
+ * que eram feitos por linha em cada método (relevante no OCR em lote, com milhares de páginas).
+ *
+ * Regras (mesmas das expressões regulares anteriores, conferidas pelo InterpretadorTextoOcrTest):
+ * <ul>
+ *   <li>{@code \r} é descartado antes de tudo.</li>
+ *   <li>Preço: primeiro {@code \d+[.,]\d{2}} do texto, com vírgula trocada por ponto.</li>
+ *   <li>Peso: primeiro {@code \d+([.,]\d+)?\s*(kg|g|ml|l)} (sem diferenciar caixa, só ASCII), em maiúsculas.</li>
+ *   <li>Descrição: linha aparada e em maiúsculas ({@link String#toUpperCase()}), com 3+ caracteres, sem
+ *       preço, sem "R$", que não seja só dígitos e sem as palavras COD/EAN/SKU/QTD/UN/UND (limite de
+ *       palavra do {@code \b} do Java 17). Cada caractere fora de A-Z, 0-9 e {@code \s} vira espaço;
+ *       sequências de dois ou mais separadores viram um espaço e um {@code \s} isolado (ex.: tab)
+ *       é mantido, como no {@code replaceAll("\\s{2,}", " ")} anterior.</li>
+ * </ul>
+ *
+ * Única diferença conhecida: numa linha com U+0085, U+2028 ou U+2029 (terminadores de linha para o
+ * {@code .} das expressões antigas) os testes de preço e de palavra de código da versão anterior
+ * nunca casavam; aqui valem normalmente.
+ */
+public final class InterpretadorTextoOcr {
+
+    private static final String[] PALAVRAS_CODIGO = {"COD", "EAN", "SKU", "QTD", "UN", "UND"};
+
+    private InterpretadorTextoOcr() {
+    }
+
+    public static Candidatos interpretar(String texto) {
+        Candidatos candidatos = new Candidatos();
+        if (texto == null || texto.isEmpty()) {
+            return candidatos;
+        }
+        if (texto.indexOf('\r') >= 0) {
+            texto = texto.replace("\r", "");
+        }
+
+        int tamanho = texto.length();
+        int inicioLinha = 0;
+        boolean linhaTemPreco = false;
+
+        for (int i = 0; i <= tamanho; i++) {
+            char c = i < tamanho ? texto.charAt(i) : '\n';
+
+            if (c == '\n') {
+                String descricao = normalizarLinha(texto, inicioLinha, i, linhaTemPreco);
+                if (descricao != null) {
+                    candidatos.linhasDescricao.add(descricao);
+                }
+                inicioLinha = i + 1;
+                linhaTemPreco = false;
+                continue;
+            }
+
+            // Números só são avaliados no início de cada sequência de dígitos
+            if (!ehDigito(c) || (i > 0 && ehDigito(texto.charAt(i - 1)))) {
+                continue;
+            }
+
+            int fimDigitos = fimDosDigitos(texto, i);
+
+            if (ehSeparadorDecimal(texto, fimDigitos) && fimDigitos + 2 < tamanho
+                    && ehDigito(texto.charAt(fimDigitos + 1)) && ehDigito(texto.charAt(fimDigitos + 2))) {
+                linhaTemPreco = true;
+                if (candidatos.preco == null) {
+                    candidatos.preco = new StringBuilder(fimDigitos - i + 3)
+                            .append(texto, i, fimDigitos)
+                            .append('.')
+                            .append(texto, fimDigitos + 1, fimDigitos + 3)
+                            .toString();
+                }
+            }
+
+            if (candidatos.peso == null) {
+                candidatos.peso = lerPeso(texto, i, fimDigitos);
+            }
+        }
+        return candidatos;
+    }
+
+    private static String lerPeso(String texto, int inicio, int fimDigitos) {
+        // Tenta primeiro com a parte decimal (guloso) e depois só com a parte inteira
+        if (ehSeparadorDecimal(texto, fimDigitos) && fimDigitos + 1 < texto.length() && ehDigito(texto.charAt(fimDigitos + 1))) {
+            int fimDecimal = fimDosDigitos(texto, fimDigitos + 1);
+            String peso = lerUnidade(texto, inicio, fimDecimal);
+            if (peso != null) return peso;
+        }
+        return lerUnidade(texto, inicio, fimDigitos);
+    }
+
+    private static String lerUnidade(String texto, int inicio, int fimNumero) {
+        int j = fimNumero;
+        while (j < texto.length() && ehEspacoRegex(texto.charAt(j))) {
+            j++;
+        }
+        int tamanhoUnidade;
+        if (letraEm(texto, j, 'K') && letraEm(texto, j + 1, 'G')) {
+            tamanhoUnidade = 2;
+        } else if (letraEm(texto, j, 'G')) {
+            tamanhoUnidade = 1;
+        } else if (letraEm(texto, j, 'M') && letraEm(texto, j + 1, 'L')) {
+            tamanhoUnidade = 2;
+        } else if (letraEm(texto, j, 'L')) {
+            tamanhoUnidade = 1;
+        } else {
+            return null;
+        }
+
+        StringBuilder peso = new StringBuilder(j + tamanhoUnidade - inicio);
+        for (int k = inicio; k < j + tamanhoUnidade; k++) {
+            char c = texto.charAt(k);
+            // Quebra de linha entre número e unidade vira espaço (o texto era linearizado antes)
+            peso.append(c == '\n' ? ' ' : Character.toUpperCase(c));
+        }
+        return peso.toString();
+    }
+
+    /**
+     * Normaliza a linha [inicio, fim) para descrição de produto, ou null se ela não servir.
+     */
+    private static String normalizarLinha(String texto, int inicio, int fim, boolean temPreco) {
+        // trim()
+        while (inicio < fim && texto.charAt(inicio) <= ' ') inicio++;
+        while (fim > inicio && texto.charAt(fim - 1) <= ' ') fim--;
+
+        if (fim == inicio || temPreco) {
+            return null;
+        }
+        // Maiúsculas da linha inteira antes de medir, como antes (pode mudar o tamanho: "ß" -> "SS", "ﬁ" -> "FI")
+        String linha = texto.substring(inicio, fim).toUpperCase();
+        if (linha.length() < 3 || linha.contains("R$")) {
+            return null;
+        }
+
+        StringBuilder normalizada = new StringBuilder(linha.length());
+        boolean soDigitos = true;
+        int separadores = 0;      // Separadores desde a última letra/dígito copiada
+        char separadorUnico = ' '; // O próprio caractere, se for um \s isolado
+        int inicioPalavra = -1;
+        boolean baseLetraOuDigito = false;
+
+        for (int i = 0; i <= linha.length(); ) {
+            int c = i < linha.length() ? linha.codePointAt(i) : ' ';
+            int proximo = i + Character.charCount(c);
+
+            // Limite de palavra do \b: letra, dígito ou '_', e marca combinante que segue uma letra/dígito
+            boolean marca = Character.getType(c) == Character.NON_SPACING_MARK;
+            boolean caractereDePalavra = i < linha.length()
+                    && (Character.isLetterOrDigit(c) || c == '_' || (marca && baseLetraOuDigito));
+            if (!marca) {
+                // O Pattern procura a base char a char: uma letra fora do BMP (par substituto) não conta
+                baseLetraOuDigito = Character.isLetterOrDigit(c) && Character.isBmpCodePoint(c);
+            }
+            if (caractereDePalavra) {
+                if (inicioPalavra < 0) inicioPalavra = i;
+            } else if (inicioPalavra >= 0) {
+                if (ehPalavraDeCodigo(linha, inicioPalavra, i)) {
+                    return null;
+                }
+                inicioPalavra = -1;
+            }
+
+            if (i == linha.length()) break;
+            if (!ehDigito(c)) soDigitos = false;
+
+            if ((c >= 'A' && c <= 'Z') || ehDigito(c)) {
+                if (separadores > 0 && normalizada.length() > 0) {
+                    normalizada.append(separadores == 1 ? separadorUnico : ' ');
+                }
+                separadores = 0;
+                normalizada.append((char) c);
+            } else {
+                separadores++;
+                separadorUnico = ehEspacoRegex(c) ? (char) c : ' ';
+            }
+            i = proximo;
+        }
+
+        if (soDigitos || normalizada.length() < 3) {
+            return null;
+        }
+        return normalizada.toString();
+    }
+
+    private static boolean ehPalavraDeCodigo(String linha, int inicio, int fim) {
+        int tamanho = fim - inicio;
+        for (String palavra : PALAVRAS_CODIGO) {
+            if (palavra.length() == tamanho && linha.startsWith(palavra, inicio)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int fimDosDigitos(String texto, int i) {
+        while (i < texto.length() && ehDigito(texto.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean ehSeparadorDecimal(String texto, int i) {
+        return i < texto.length() && (texto.charAt(i) == ',' || texto.charAt(i) == '.');
+    }
+
+    // Caixa só ASCII, como o CASE_INSENSITIVE sem UNICODE_CASE
+    private static boolean letraEm(String texto, int i, char maiuscula) {
+        if (i >= texto.length()) return false;
+        char c = texto.charAt(i);
+        return c == maiuscula || c == (char) (maiuscula + ('a' - 'A'));
+    }
+
+    private static boolean ehDigito(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // Classe \s das expressões regulares (sem UNICODE_CHARACTER_CLASS), mais estreita que Character.isWhitespace
+    private static boolean ehEspacoRegex(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    public static final class Candidatos {
+        private String preco;
+        private String peso;
+        private final List<String> linhasDescricao = new ArrayList<>();
+
+        public String getPreco() {
+            return preco;
+        }
+
+        public String getPeso() {
+            return peso;
+        }
+
+        /**
+         * Linhas que podem ser o nome do produto, já normalizadas, na ordem do texto. As palavras são
+         * separadas por um espaço ou por um único caractere {@code \s} original (ex.: tab).
+         */
+        public List<String> getLinhasDescricao() {
+            return linhasDescricao;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.mercado.orcamento.service;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Result;
+import com.google.zxing.common.HybridBinarizer;
+import com.mercado.orcamento.dto.DadosExtraidos;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Leitura de código de barras em níveis, do mais barato ao mais caro.
+ * Quase todas as etiquetas são EAN-13/EAN-8/UPC, então os formatos de varejo são tentados
+ * primeiro em uma versão reduzida da foto; TRY_HARDER com todos os formatos fica por último.
+ * O nível que encontrou o código vai no resultado (nivelCodigoBarras) para ajustes futuros.
+ */
+@Component
+public class LeitorCodigoBarras {
+
+    private static final Logger logger = LoggerFactory.getLogger(LeitorCodigoBarras.class);
+
+    public static final String NIVEL_VAREJO_REDUZIDA = "VAREJO_REDUZIDA";
+    public static final String NIVEL_VAREJO_REGIOES = "VAREJO_REGIOES";
+    public static final String NIVEL_VAREJO_ORIGINAL = "VAREJO_ORIGINAL";
+    public static final String NIVEL_TODOS_FORMATOS = "TODOS_FORMATOS";
+
+    private static final int REGIOES_CANDIDATAS = 3;
+
+    private final int ladoMaximoRapido;
+    private final Map<DecodeHintType, Object> hintsVarejo;
+    private final Map<DecodeHintType, Object> hintsCompleto;
+
+    public LeitorCodigoBarras(@Value("${visionmarket.barcode.lado-maximo-rapido:1024}") int ladoMaximoRapido) {
+        this.ladoMaximoRapido = ladoMaximoRapido;
+
+        hintsVarejo = new EnumMap<>(DecodeHintType.class);
+        hintsVarejo.put(DecodeHintType.POSSIBLE_FORMATS,
+                EnumSet.of(BarcodeFormat.EAN_13, BarcodeFormat.EAN_8, BarcodeFormat.UPC_A, BarcodeFormat.UPC_E));
+
+        hintsCompleto = new EnumMap<>(DecodeHintType.class);
+        hintsCompleto.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+        hintsCompleto.put(DecodeHintType.POSSIBLE_FORMATS, EnumSet.allOf(BarcodeFormat.class));
+    }
+
+    /**
+     * Procura um código na imagem e preenche codigoBarras, formatoCodigoBarras e nivelCodigoBarras.
+     *
+     * @return true se algum código foi encontrado
+     */
+    public boolean ler(ImagemCinza imagem, DadosExtraidos dados) {
+        // 1. Formatos de varejo na imagem reduzida (a maioria das fotos resolve aqui)
+        ImagemCinza reduzida = imagem.reduzir(ladoMaximoRapido);
+        Result result = decodificar(reduzida.comoLuminanceSource(), hintsVarejo);
+        if (result != null) return registrar(result, NIVEL_VAREJO_REDUZIDA, dados);
+
+        // 2. Formatos de varejo em resolução original, só nas faixas com cara de código de barras
+        LuminanceSource original = imagem.comoLuminanceSource();
+        int fator = imagem.fatorReducao(ladoMaximoRapido);
+        for (int[] faixa : faixasCandidatas(reduzida)) {
+            int topo = Math.min(faixa[0] * fator, imagem.getAltura() - 1);
+            int altura = Math.min(faixa[1] * fator, imagem.getAltura() - topo);
+            result = decodificar(original.crop(0, topo, imagem.getLargura(), altura), hintsVarejo);
+            if (result != null) return registrar(result, NIVEL_VAREJO_REGIOES, dados);
+        }
+
+        // 3. Formatos de varejo na imagem inteira em resolução original
+        if (fator > 1) {
+            result = decodificar(original, hintsVarejo);
+            if (result != null) return registrar(result, NIVEL_VAREJO_ORIGINAL, dados);
+        }
+
+        // 4. Último recurso: todos os formatos (QR, DataMatrix...) com TRY_HARDER
+        result = decodificar(original, hintsCompleto);
+        if (result != null) return registrar(result, NIVEL_TODOS_FORMATOS, dados);
+
+        return false;
+    }
+
+    private Result decodificar(LuminanceSource source, Map<DecodeHintType, Object> hints) {
+        try {
+            return new MultiFormatReader().decode(new BinaryBitmap(new HybridBinarizer(source)), hints);
+        } catch (NotFoundException e) {
+            return null; // Nenhum código encontrado neste nível
+        }
+    }
+
+    private boolean registrar(Result result, String nivel, DadosExtraidos dados) {
+        dados.setCodigoBarras(result.getText());
+        dados.setFormatoCodigoBarras(result.getBarcodeFormat().name());
+        dados.setNivelCodigoBarras(nivel);
+        logger.debug("Codigo de barras {} ({}) encontrado no nivel {}", result.getText(), result.getBarcodeFormat(), nivel);
+        return true;
+    }
+
+    /**
+     * Faixas horizontais (topo, altura, topo sem margem) da imagem reduzida com mais energia de gradiente
+     * horizontal do que vertical: o padrão de barras verticais de um EAN/UPC.
+     */
+    private List<int[]> faixasCandidatas(ImagemCinza imagem) {
+        byte[] px = imagem.getPixels();
+        int largura = imagem.getLargura();
+        int altura = imagem.getAltura();
+        int alturaFaixa = Math.max(8, altura / 10);
+        int passo = Math.max(1, alturaFaixa / 2);
+
+        // Pontuação por linha: soma |dx| - soma |dy|
+        long[] pontuacaoLinha = new long[altura];
+        for (int y = 0; y < altura - 1; y++) {
+            int linha = y * largura;
+            long soma = 0;
+            for (int x = 0; x < largura - 1; x++) {
+                int p = px[linha + x] & 0xFF;
+                soma += Math.abs(p - (px[linha + x + 1] & 0xFF));
+                soma -= Math.abs(p - (px[linha + largura + x] & 0xFF));
+            }
+            pontuacaoLinha[y] = soma;
+        }
+
+        List<long[]> faixas = new ArrayList<>();
+        for (int topo = 0; topo + alturaFaixa <= altura; topo += passo) {
+            long soma = 0;
+            for (int y = topo; y < topo + alturaFaixa; y++) {
+                soma += pontuacaoLinha[y];
+            }
+            if (soma > 0) {
+                faixas.add(new long[]{soma, topo});
+            }
+        }
+        faixas.sort((a, b) -> Long.compare(b[0], a[0]));
+
+        List<int[]> melhores = new ArrayList<>();
+        for (long[] faixa : faixas) {
+            int topo = (int) faixa[1];
+            // Evita faixas sobrepostas à mesma região já escolhida
+            boolean sobreposta = melhores.stream().anyMatch(m -> Math.abs(m[2] - topo) < alturaFaixa);
+            if (sobreposta) continue;
+            // Margem de meia faixa acima e abaixo para não cortar as barras
+            int inicio = Math.max(0, topo - passo);
+            int fim = Math.min(altura, topo + alturaFaixa + passo);
+            melhores.add(new int[]{inicio, fim - inicio, topo});
+            if (melhores.size() == REGIOES_CANDIDATAS) break;
+        }
+        return melhores;
+    }
+}
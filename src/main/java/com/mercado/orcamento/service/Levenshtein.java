@@ -0,0 +1,39 @@
+package com.mercado.orcamento.service;
+
+/**
+ * Distância de edição (Levenshtein) com duas linhas reaproveitadas por thread,
+ * sem alocar a matriz int[][] a cada comparação.
+ */
+final class Levenshtein {
+
+    private static final ThreadLocal<int[][]> LINHAS = ThreadLocal.withInitial(() -> new int[2][32]);
+
+    private Levenshtein() {
+    }
+
+    static int distancia(String s1, String s2) {
+        int n = s2.length();
+        int[][] linhas = LINHAS.get();
+        if (linhas[0].length < n + 1) {
+            linhas = new int[][]{new int[n + 1], new int[n + 1]};
+            LINHAS.set(linhas);
+        }
+        int[] anterior = linhas[0];
+        int[] atual = linhas[1];
+
+        for (int j = 0; j <= n; j++) anterior[j] = j;
+
+        for (int i = 1; i <= s1.length(); i++) {
+            atual[0] = i;
+            char c1 = s1.charAt(i - 1);
+            for (int j = 1; j <= n; j++) {
+                int custo = (c1 == s2.charAt(j - 1)) ? 0 : 1;
+                atual[j] = Math.min(Math.min(anterior[j] + 1, atual[j - 1] + 1), anterior[j - 1] + custo);
+            }
+            int[] troca = anterior;
+            anterior = atual;
+            atual = troca;
+        }
+        return anterior[n];
+    }
+}
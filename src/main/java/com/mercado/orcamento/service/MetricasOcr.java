@@ -0,0 +1,117 @@
+package com.mercado.orcamento.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Métricas do pipeline de OCR (Micrometer), expostas em /actuator/prometheus:
+ * <ul>
+ *   <li>{@code visionmarket_ocr_etapa_seconds{etapa=...}}: histograma de cada etapa do scan</li>
+ *   <li>{@code visionmarket_ocr_fila_espera_seconds{fila=...}}: tempo parado nas filas antes de rodar</li>
+ *   <li>{@code visionmarket_ocr_fila_tamanho{fila=...}}: scans aguardando em cada fila</li>
+ *   <li>{@code visionmarket_ocr_cache_total{resultado=memoria|disco|ausente}} e a taxa de acerto</li>
+ * </ul>
+ * Os timers são criados uma vez e reaproveitados; registrar uma medida custa só alguns
+ * incrementos atômicos, então as métricas ficam ligadas em produção.
+ */
+@Component
+public class MetricasOcr {
+
+    public static final String ETAPA_HASH = "hash";
+    public static final String ETAPA_DECODIFICACAO = "decodificacao";
+    public static final String ETAPA_CODIGO_BARRAS = "codigo_barras";
+    public static final String ETAPA_PRE_PROCESSAMENTO = "pre_processamento";
+    public static final String ETAPA_TESSERACT = "tesseract";
+    public static final String ETAPA_INTERPRETACAO = "interpretacao";
+    public static final String ETAPA_ASSOCIACAO_PRODUTO = "associacao_produto";
+    public static final String ETAPA_TOTAL = "total";
+
+    public static final String FILA_EXECUTOR = "executor";
+    public static final String FILA_JOBS = "jobs";
+    public static final String FILA_LOTE = "lote";
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> etapas = new ConcurrentHashMap<>();
+    private final Map<String, Timer> filas = new ConcurrentHashMap<>();
+    private final Counter acertosMemoria;
+    private final Counter acertosDisco;
+    private final Counter ausentes;
+
+    public MetricasOcr(MeterRegistry registry) {
+        this.registry = registry;
+        this.acertosMemoria = contadorCache(registry, "memoria");
+        this.acertosDisco = contadorCache(registry, "disco");
+        this.ausentes = contadorCache(registry, "ausente");
+        Gauge.builder("visionmarket.ocr.cache.taxa.acerto", this, MetricasOcr::taxaAcertoCache)
+                .description("Fracao das consultas ao cache de OCR atendidas sem rodar o Tesseract")
+                .register(registry);
+    }
+
+    /** Marca o início de uma medida; passe o valor para {@link #registrarEtapa}. */
+    public long iniciar() {
+        return System.nanoTime();
+    }
+
+    public void registrarEtapa(String etapa, long inicio) {
+        etapas.computeIfAbsent(etapa, e -> Timer.builder("visionmarket.ocr.etapa")
+                        .description("Duracao de cada etapa do scan OCR")
+                        .tag("etapa", e)
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(Duration.ofMillis(1))
+                        .maximumExpectedValue(Duration.ofSeconds(60))
+                        .register(registry))
+                .record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+    }
+
+    public void registrarEsperaFila(String fila, long enfileirado) {
+        filas.computeIfAbsent(fila, f -> Timer.builder("visionmarket.ocr.fila.espera")
+                        .description("Tempo que o scan ficou na fila antes de comecar")
+                        .tag("fila", f)
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(Duration.ofMillis(1))
+                        .maximumExpectedValue(Duration.ofSeconds(60))
+                        .register(registry))
+                .record(System.nanoTime() - enfileirado, TimeUnit.NANOSECONDS);
+    }
+
+    public void monitorarFila(String fila, Collection<?> pendentes) {
+        Gauge.builder("visionmarket.ocr.fila.tamanho", pendentes, Collection::size)
+                .description("Scans aguardando na fila")
+                .tag("fila", fila)
+                .register(registry);
+    }
+
+    public void acertoCacheMemoria() {
+        acertosMemoria.increment();
+    }
+
+    public void acertoCacheDisco() {
+        acertosDisco.increment();
+    }
+
+    public void ausenteCache() {
+        ausentes.increment();
+    }
+
+    private double taxaAcertoCache() {
+        double acertos = acertosMemoria.count() + acertosDisco.count();
+        double total = acertos + ausentes.count();
+        return total == 0 ? 0 : acertos / total;
+    }
+
+    private static Counter contadorCache(MeterRegistry registry, String resultado) {
+        return Counter.builder("visionmarket.ocr.cache")
+                .description("Consultas ao cache de resultados do OCR")
+                .tag("resultado", resultado)
+                .register(registry);
+    }
+}
@@ -0,0 +1,234 @@
+package com.mercado.orcamento.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Versões reduzidas das fotos da galeria ("mini" para os cards, "media" para visualização),
+ * gravadas em disco e reaproveitadas enquanto a foto original não mudar (data de modificação).
+ * Fotos que já cabem no tamanho não são copiadas: o resultado fica memorizado pela mesma data.
+ *
+ * A geração roda num pool próprio com fila limitada, compartilhado pelos uploads e pelas
+ * requisições da galeria; pedidos simultâneos da mesma foto e tamanho esperam a mesma geração.
+ */
+@Component
+public class MiniaturaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MiniaturaService.class);
+
+    public static final String TAMANHO_MINI = "mini";
+    public static final String TAMANHO_MEDIA = "media";
+
+    private final Path diretorio;
+    private final int ladoMini;
+    private final int ladoMedia;
+    private final int capacidadeFila;
+    private final ThreadPoolExecutor executor;
+
+    // Miniatura que não precisa existir (a original já cabe) -> data de modificação da original
+    private final Map<Path, Long> originaisQueCabem = new ConcurrentHashMap<>();
+    // Gerações em andamento por arquivo de miniatura (= foto + tamanho)
+    private final Map<Path, CompletableFuture<Path>> emAndamento = new ConcurrentHashMap<>();
+
+    public MiniaturaService(@Value("${visionmarket.miniaturas.dir:data/miniaturas}") String diretorio,
+                            @Value("${visionmarket.miniaturas.lado-mini:320}") int ladoMini,
+                            @Value("${visionmarket.miniaturas.lado-media:1280}") int ladoMedia,
+                            @Value("${visionmarket.miniaturas.workers:2}") int workers,
+                            @Value("${visionmarket.miniaturas.queue-capacity:64}") int capacidadeFila) {
+        this.diretorio = Paths.get(diretorio);
+        this.ladoMini = Math.max(16, ladoMini);
+        this.ladoMedia = Math.max(this.ladoMini, ladoMedia);
+        this.capacidadeFila = Math.max(1, capacidadeFila);
+        int tamanho = Math.max(1, workers);
+        AtomicInteger contador = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(tamanho, tamanho, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.capacidadeFila),
+                r -> {
+                    Thread t = new Thread(r, "miniatura-" + contador.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Maior lado (px) de um tamanho nomeado, ou null se o nome não existir.
+     */
+    public Integer ladoDoTamanho(String tamanho) {
+        if (TAMANHO_MINI.equalsIgnoreCase(tamanho)) return ladoMini;
+        if (TAMANHO_MEDIA.equalsIgnoreCase(tamanho)) return ladoMedia;
+        return null;
+    }
+
+    /**
+     * Caminho a servir sem gerar nada: a miniatura em dia, a própria original quando ela já cabe
+     * no tamanho, ou null quando a miniatura ainda precisa ser gerada ({@link #agendar}).
+     */
+    public Path pronta(Path original, int lado) throws IOException {
+        Path miniatura = caminhoMiniatura(original, lado);
+        FileTime modificadaEm = Files.getLastModifiedTime(original);
+        if (Files.exists(miniatura) && Files.getLastModifiedTime(miniatura).compareTo(modificadaEm) >= 0) {
+            return miniatura;
+        }
+        Long cabe = originaisQueCabem.get(miniatura);
+        if (cabe != null && cabe == modificadaEm.toMillis()) {
+            return original;
+        }
+        return null;
+    }
+
+    /**
+     * Agenda, em segundo plano, a miniatura usada nos cards da galeria (fotos recém-enviadas).
+     * Só usa metade da fila: a outra metade fica para as requisições da galeria.
+     *
+     * @throws RejectedExecutionException se a fila já estiver pela metade
+     */
+    public CompletableFuture<Path> agendarAntecipada(Path original) {
+        if (executor.getQueue().size() * 2 >= capacidadeFila) {
+            throw new RejectedExecutionException("Fila de miniaturas ocupada");
+        }
+        return agendar(original, ladoMini);
+    }
+
+    /**
+     * Gera a foto reduzida para caber em {@code lado} px no pool de miniaturas. Um pedido igual
+     * a outro ainda em andamento recebe o mesmo futuro. O resultado é o mesmo de {@link #pronta}:
+     * a miniatura ou, quando a foto já cabe, a original.
+     *
+     * @throws RejectedExecutionException se a fila de miniaturas estiver cheia
+     */
+    public CompletableFuture<Path> agendar(Path original, int lado) {
+        Path miniatura = caminhoMiniatura(original, lado);
+        CompletableFuture<Path> existente = emAndamento.get(miniatura);
+        if (existente != null) {
+            return existente;
+        }
+        CompletableFuture<Path> futuro = new CompletableFuture<>();
+        existente = emAndamento.putIfAbsent(miniatura, futuro);
+        if (existente != null) {
+            return existente;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    futuro.complete(gerar(original, miniatura, lado));
+                } catch (IOException | RuntimeException e) {
+                    futuro.completeExceptionally(e);
+                } finally {
+                    emAndamento.remove(miniatura, futuro);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            emAndamento.remove(miniatura, futuro);
+            futuro.completeExceptionally(e); // Quem já pegou este futuro também fica sabendo
+            throw e;
+        }
+        return futuro;
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        executor.shutdownNow();
+    }
+
+    private Path caminhoMiniatura(Path original, int lado) {
+        return diretorio.resolve(original.getFileName().toString() + "-" + lado + ".jpg");
+    }
+
+    private Path gerar(Path original, Path miniatura, int lado) throws IOException {
+        // Outro pedido pode ter gerado enquanto este esperava na fila
+        Path pronta = pronta(original, lado);
+        if (pronta != null) {
+            return pronta;
+        }
+        FileTime modificadaEm = Files.getLastModifiedTime(original);
+
+        // Só o cabeçalho: a foto que já cabe não precisa ser decodificada
+        int[] dimensoes = lerDimensoes(original);
+        if (dimensoes != null && Math.max(dimensoes[0], dimensoes[1]) <= lado) {
+            originaisQueCabem.put(miniatura, modificadaEm.toMillis());
+            return original;
+        }
+
+        long inicio = System.currentTimeMillis();
+        BufferedImage imagem = ImageIO.read(original.toFile());
+        if (imagem == null) {
+            throw new IOException("Formato de imagem nao suportado: " + original.getFileName());
+        }
+
+        if (Math.max(imagem.getWidth(), imagem.getHeight()) <= lado) {
+            originaisQueCabem.put(miniatura, modificadaEm.toMillis());
+            return original;
+        }
+        double escala = (double) lado / Math.max(imagem.getWidth(), imagem.getHeight());
+        int largura = Math.max(1, (int) Math.round(imagem.getWidth() * escala));
+        int altura = Math.max(1, (int) Math.round(imagem.getHeight() * escala));
+
+        // JPEG não tem canal alfa: desenha sempre em RGB
+        BufferedImage reduzida = new BufferedImage(largura, altura, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = reduzida.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(imagem, 0, 0, largura, altura, null);
+        g.dispose();
+
+        // Grava em arquivo temporário e move, para nunca servir uma miniatura pela metade
+        Files.createDirectories(diretorio);
+        Path temporario = Files.createTempFile(diretorio, "miniatura", ".tmp");
+        try {
+            ImageIO.write(reduzida, "jpg", temporario.toFile());
+            Files.move(temporario, miniatura, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporario);
+        }
+        originaisQueCabem.remove(miniatura);
+        logger.debug("Miniatura de {} gerada em {}ms", original.getFileName(), System.currentTimeMillis() - inicio);
+        return miniatura;
+    }
+
+    /** Largura e altura lidas do cabeçalho, sem decodificar os pixels; null se o leitor não souber. */
+    private static int[] lerDimensoes(Path arquivo) {
+        try (ImageInputStream entrada = ImageIO.createImageInputStream(arquivo.toFile())) {
+            if (entrada != null) {
+                Iterator<ImageReader> leitores = ImageIO.getImageReaders(entrada);
+                if (leitores.hasNext()) {
+                    ImageReader leitor = leitores.next();
+                    try {
+                        leitor.setInput(entrada, true, true);
+                        return new int[]{leitor.getWidth(0), leitor.getHeight(0)};
+                    } finally {
+                        leitor.dispose();
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Cabeçalho ilegível: a decodificação completa decide
+        }
+        return null;
+    }
+}
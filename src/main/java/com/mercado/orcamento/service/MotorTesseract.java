@@ -0,0 +1,91 @@
+package com.mercado.orcamento.service;
+
+import com.sun.jna.Pointer;
+import net.sourceforge.tess4j.ITessAPI.TessBaseAPI;
+import net.sourceforge.tess4j.TessAPI1;
+import net.sourceforge.tess4j.TesseractException;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Instância nativa do Tesseract inicializada uma única vez (datapath + idioma).
+ * O {@link net.sourceforge.tess4j.Tesseract} do tess4j recria o motor a cada doOCR;
+ * aqui o handle é mantido vivo e apenas a imagem é trocada entre as leituras.
+ *
+ * Não é thread-safe: cada worker do {@link OcrExecutor} usa o seu próprio motor.
+ */
+public class MotorTesseract implements AutoCloseable {
+
+    private final TessBaseAPI handle;
+
+    public MotorTesseract(String tessdataPath, String idioma) throws TesseractException {
+        this.handle = TessAPI1.TessBaseAPICreate();
+        if (TessAPI1.TessBaseAPIInit3(handle, tessdataPath, idioma) != 0) {
+            TessAPI1.TessBaseAPIDelete(handle);
+            throw new TesseractException("Falha ao inicializar Tesseract (idioma: " + idioma + ", tessdata: " + tessdataPath + ")");
+        }
+    }
+
+    public String reconhecer(ImagemCinza imagem) {
+        return reconhecer(imagem, 0);
+    }
+
+    /**
+     * Lê cada recorte com a sua própria resolução e junta os trechos em ordem de leitura.
+     */
+    public String reconhecer(List<PreProcessadorOcr.Recorte> recortes) {
+        if (recortes.size() == 1) {
+            PreProcessadorOcr.Recorte recorte = recortes.get(0);
+            return reconhecer(recorte.getImagem(), recorte.getDpi());
+        }
+
+        StringBuilder texto = new StringBuilder();
+        for (PreProcessadorOcr.Recorte recorte : recortes) {
+            String trecho = reconhecer(recorte.getImagem(), recorte.getDpi());
+            if (!trecho.isBlank()) {
+                texto.append(trecho.strip()).append('\n');
+            }
+        }
+        return texto.toString();
+    }
+
+    /**
+     * Lê o texto da imagem inteira.
+     *
+     * @param dpi resolução informada ao Tesseract; 0 mantém o padrão do motor
+     */
+    public String reconhecer(ImagemCinza imagem, int dpi) {
+        // Passa o próprio array do raster cinza (1 byte por pixel), sem conversão intermediária
+        ByteBuffer buffer = ByteBuffer.wrap(imagem.getPixels());
+
+        try {
+            TessAPI1.TessBaseAPISetImage(handle, buffer, imagem.getLargura(), imagem.getAltura(), 1, imagem.getLargura());
+            if (dpi > 0) {
+                TessAPI1.TessBaseAPISetSourceResolution(handle, dpi);
+            }
+            return lerTexto();
+        } finally {
+            // Libera a imagem e os resultados, mas mantém o modelo de idioma carregado
+            TessAPI1.TessBaseAPIClear(handle);
+        }
+    }
+
+    private String lerTexto() {
+        Pointer texto = TessAPI1.TessBaseAPIGetUTF8Text(handle);
+        if (texto == null) {
+            return "";
+        }
+        try {
+            return texto.getString(0, "UTF-8");
+        } finally {
+            TessAPI1.TessDeleteText(texto);
+        }
+    }
+
+    @Override
+    public void close() {
+        TessAPI1.TessBaseAPIEnd(handle);
+        TessAPI1.TessBaseAPIDelete(handle);
+    }
+}
@@ -0,0 +1,173 @@
+package com.mercado.orcamento.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mercado.orcamento.dto.DadosExtraidos;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Cache de resultados de OCR endereçado pelo hash do conteúdo da imagem.
+ * Nível 1: LRU em memória limitado. Nível 2: um JSON por imagem em disco, sobrevive a reinícios.
+ *
+ * Os arquivos ficam em uma subpasta com a assinatura da configuração do OCR (idioma, tessdata,
+ * versão do pipeline); quando a configuração muda, a pasta antiga é descartada.
+ */
+@Component
+public class OcrCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(OcrCache.class);
+
+    private final ObjectMapper objectMapper;
+    private final Path diretorioBase;
+    private final Map<String, DadosExtraidos> memoria;
+
+    private volatile Path diretorio;
+
+    private final MetricasOcr metricas;
+
+    public OcrCache(ObjectMapper objectMapper, MetricasOcr metricas,
+                    @Value("${visionmarket.ocr.cache.dir:data/ocr-cache}") String diretorioBase,
+                    @Value("${visionmarket.ocr.cache.max-entries:500}") int maxEntradas) {
+        this.objectMapper = objectMapper;
+        this.metricas = metricas;
+        this.diretorioBase = Paths.get(diretorioBase);
+        int limite = Math.max(1, maxEntradas);
+        this.memoria = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DadosExtraidos> maisAntiga) {
+                return size() > limite;
+            }
+        });
+    }
+
+    /**
+     * Define a assinatura da configuração atual do OCR. Resultados gravados com outra
+     * assinatura (outro idioma, outro tessdata, outra versão do pré-processamento) são apagados.
+     */
+    public void usarAssinatura(String assinatura) {
+        String pasta = ConteudoHash.sha256(assinatura).substring(0, 16);
+        Path novo = diretorioBase.resolve(pasta);
+        try {
+            Files.createDirectories(novo);
+            try (DirectoryStream<Path> pastas = Files.newDirectoryStream(diretorioBase, Files::isDirectory)) {
+                for (Path antiga : pastas) {
+                    if (!antiga.getFileName().toString().equals(pasta)) {
+                        logger.info("Configuracao do OCR mudou. Invalidando cache antigo: {}", antiga);
+                        apagarRecursivo(antiga);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Cache de OCR em disco indisponivel ({}): {}", novo, e.getMessage());
+        }
+        memoria.clear();
+        diretorio = novo;
+    }
+
+    public DadosExtraidos buscar(String hash, String nomeArquivo) {
+        DadosExtraidos dados = memoria.get(hash);
+        if (dados != null) {
+            metricas.acertoCacheMemoria();
+        } else {
+            dados = lerDoDisco(hash);
+            if (dados == null) {
+                metricas.ausenteCache();
+                return null;
+            }
+            metricas.acertoCacheDisco();
+            memoria.put(hash, dados);
+        }
+        // A mesma foto pode ter sido enviada com outro nome: devolve uma cópia com o nome pedido
+        DadosExtraidos copia = copiar(dados);
+        copia.setNomeArquivoImagem(nomeArquivo);
+        return copia;
+    }
+
+    public boolean contem(String hash) {
+        if (memoria.containsKey(hash)) {
+            return true;
+        }
+        Path pasta = diretorio;
+        return pasta != null && Files.exists(pasta.resolve(hash + ".json"));
+    }
+
+    public void guardar(String hash, DadosExtraidos dados) {
+        DadosExtraidos copia = copiar(dados);
+        memoria.put(hash, copia);
+
+        Path pasta = diretorio;
+        if (pasta == null) {
+            return;
+        }
+        try {
+            Path destino = pasta.resolve(hash + ".json");
+            Path temporario = Files.createTempFile(pasta, hash, ".tmp");
+            objectMapper.writeValue(temporario.toFile(), copia);
+            Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Falha ao gravar resultado OCR em disco ({}): {}", hash, e.getMessage());
+        }
+    }
+
+    private DadosExtraidos lerDoDisco(String hash) {
+        Path pasta = diretorio;
+        if (pasta == null) {
+            return null;
+        }
+        Path arquivo = pasta.resolve(hash + ".json");
+        if (!Files.exists(arquivo)) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(arquivo.toFile(), DadosExtraidos.class);
+        } catch (IOException e) {
+            logger.warn("Entrada corrompida no cache de OCR ({}), descartando: {}", hash, e.getMessage());
+            try {
+                Files.deleteIfExists(arquivo);
+            } catch (IOException ignorada) {
+                // Será sobrescrita no próximo scan
+            }
+            return null;
+        }
+    }
+
+    private DadosExtraidos copiar(DadosExtraidos origem) {
+        DadosExtraidos copia = new DadosExtraidos();
+        copia.setTextoBruto(origem.getTextoBruto());
+        copia.setNomeArquivoImagem(origem.getNomeArquivoImagem());
+        copia.setDescricaoProduto(origem.getDescricaoProduto());
+        copia.setPrecoEncontrado(origem.getPrecoEncontrado());
+        copia.setPesoEncontrado(origem.getPesoEncontrado());
+        copia.setNomePossivel(origem.getNomePossivel());
+        copia.setCodigoBarras(origem.getCodigoBarras());
+        copia.setFormatoCodigoBarras(origem.getFormatoCodigoBarras());
+        copia.setNivelCodigoBarras(origem.getNivelCodigoBarras());
+        return copia;
+    }
+
+    private void apagarRecursivo(Path pasta) throws IOException {
+        try (Stream<Path> caminhos = Files.walk(pasta)) {
+            caminhos.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException e) {
+                    logger.debug("Nao foi possivel apagar {}: {}", p, e.getMessage());
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.mercado.orcamento.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Pool fixo de motores Tesseract pré-inicializados atrás de um executor com fila limitada.
+ * Tira o OCR das threads do Tomcat: quando a fila enche, o trabalho é rejeitado na hora
+ * em vez de acumular requisições presas esperando o Tesseract.
+ *
+ * O OCR em lote tem uma faixa própria ({@link #executarLote}), com workers e motores separados:
+ * um lote grande não ocupa a fila nem os motores dos scans interativos. Os motores do lote são
+ * criados no primeiro uso e reaproveitados pelos lotes seguintes.
+ */
+@Component
+public class OcrExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(OcrExecutor.class);
+
+    private final String tessdataPathConfigurado;
+    private final String idiomaOcr;
+    private final int tamanhoPool;
+    private final int capacidadeFila;
+    private final long esperaMaximaMs;
+    private final int workersLote;
+    private final MetricasOcr metricas;
+
+    private final BlockingQueue<MotorTesseract> motores = new LinkedBlockingQueue<>();
+    private final BlockingQueue<MotorTesseract> motoresLote = new LinkedBlockingQueue<>();
+    private ThreadPoolExecutor executor;
+    private ThreadPoolExecutor executorLote;
+    private volatile boolean falhaMotorLote;
+    private String tessdataPath;
+    private int motoresCriados;
+
+    public OcrExecutor(@Value("${visionmarket.ocr.tessdata-path:}") String tessdataPathConfigurado,
+                       @Value("${visionmarket.ocr.language:eng}") String idiomaOcr,
+                       @Value("${visionmarket.ocr.pool-size:2}") int tamanhoPool,
+                       @Value("${visionmarket.ocr.queue-capacity:16}") int capacidadeFila,
+                       @Value("${visionmarket.ocr.max-wait-ms:30000}") long esperaMaximaMs,
+                       @Value("${visionmarket.ocr.lote.workers:0}") int workersLote,
+                       MetricasOcr metricas) {
+        this.tessdataPathConfigurado = tessdataPathConfigurado;
+        this.idiomaOcr = idiomaOcr;
+        this.tamanhoPool = Math.max(1, tamanhoPool);
+        this.capacidadeFila = Math.max(1, capacidadeFila);
+        this.esperaMaximaMs = esperaMaximaMs;
+        // 0 (padrão): um worker de lote por núcleo
+        this.workersLote = workersLote > 0 ? workersLote : Runtime.getRuntime().availableProcessors();
+        this.metricas = metricas;
+    }
+
+    @PostConstruct
+    public void inicializar() {
+        // Resolve a pasta tessdata uma única vez (antes era refeito a cada scan)
+        tessdataPath = resolverTessdataPath();
+        if (tessdataPath == null) {
+            logger.warn("OCR indisponivel: configure visionmarket.ocr.tessdata-path com uma pasta valida.");
+        } else {
+            for (int i = 0; i < tamanhoPool; i++) {
+                try {
+                    motores.add(new MotorTesseract(tessdataPath, idiomaOcr));
+                } catch (Throwable t) {
+                    logger.error("Falha ao criar motor Tesseract {}/{}: {}", i + 1, tamanhoPool, t.getMessage());
+                    break;
+                }
+            }
+            motoresCriados = motores.size();
+            logger.info("Pool OCR iniciado com {} motor(es) Tesseract (idioma: {}, tessdata: {})", motores.size(), idiomaOcr, tessdataPath);
+        }
+
+        // Um worker por motor; sem Tesseract ainda mantemos os workers para a leitura de código de barras
+        int workers = motoresCriados > 0 ? motoresCriados : tamanhoPool;
+        AtomicInteger contador = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadeFila),
+                r -> {
+                    Thread t = new Thread(r, "ocr-worker-" + contador.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        metricas.monitorarFila(MetricasOcr.FILA_EXECUTOR, executor.getQueue());
+
+        // Quem usa a faixa do lote espera cada resultado antes de mandar o próximo: a fila só
+        // guarda o que sobra de uma tarefa cancelada por tempo que ainda não devolveu o worker
+        AtomicInteger contadorLote = new AtomicInteger();
+        executorLote = new ThreadPoolExecutor(workersLote, workersLote, 30L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(workersLote),
+                r -> {
+                    Thread t = new Thread(r, "ocr-lote-motor-" + contadorLote.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        executorLote.allowCoreThreadTimeOut(true);
+        metricas.monitorarFila(MetricasOcr.FILA_LOTE, executorLote.getQueue());
+    }
+
+    /**
+     * Executa a tarefa em um worker OCR e espera o resultado por até {@code max-wait-ms}.
+     * O motor recebido é {@code null} quando o Tesseract não está disponível no ambiente.
+     *
+     * @throws RejectedExecutionException se a fila estiver cheia
+     * @throws TimeoutException se o resultado não ficar pronto dentro do prazo (a tarefa é cancelada)
+     */
+    public <T> T executar(Function<MotorTesseract, T> tarefa) throws TimeoutException, InterruptedException {
+        return executar(executor, MetricasOcr.FILA_EXECUTOR, tarefa, motores::poll, motores::offer);
+    }
+
+    /**
+     * Mesmo contrato de {@link #executar}, na faixa do OCR em lote.
+     *
+     * @throws RejectedExecutionException se todos os workers do lote estiverem ocupados
+     * @throws TimeoutException se o resultado não ficar pronto dentro do prazo (a tarefa é cancelada)
+     */
+    public <T> T executarLote(Function<MotorTesseract, T> tarefa) throws TimeoutException, InterruptedException {
+        return executar(executorLote, MetricasOcr.FILA_LOTE, tarefa, this::obterMotorLote, motoresLote::offer);
+    }
+
+    private <T> T executar(ThreadPoolExecutor executor, String fila, Function<MotorTesseract, T> tarefa,
+                           Supplier<MotorTesseract> obterMotor, Consumer<MotorTesseract> devolverMotor)
+            throws TimeoutException, InterruptedException {
+        long enfileirado = System.nanoTime();
+        Future<T> futuro = executor.submit(() -> {
+            metricas.registrarEsperaFila(fila, enfileirado);
+            // Descarta trabalho que passou do prazo parado na fila: quem pediu já desistiu
+            if (TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - enfileirado) > esperaMaximaMs) {
+                throw new CancellationException("Tempo de espera na fila OCR esgotado");
+            }
+            MotorTesseract motor = obterMotor.get();
+            try {
+                return tarefa.apply(motor);
+            } finally {
+                if (motor != null) {
+                    devolverMotor.accept(motor);
+                }
+            }
+        });
+
+        try {
+            return futuro.get(esperaMaximaMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            futuro.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof RuntimeException re) throw re;
+            if (causa instanceof Error err) throw err;
+            throw new IllegalStateException(causa);
+        }
+    }
+
+    // Cada worker do lote segura no máximo um motor: nunca há mais motores que workers
+    private MotorTesseract obterMotorLote() {
+        MotorTesseract motor = motoresLote.poll();
+        if (motor != null || tessdataPath == null || falhaMotorLote) {
+            return motor;
+        }
+        try {
+            return new MotorTesseract(tessdataPath, idiomaOcr);
+        } catch (Throwable t) {
+            falhaMotorLote = true;
+            logger.error("Falha ao criar motor Tesseract do OCR em lote: {}", t.getMessage());
+            return null;
+        }
+    }
+
+    public boolean isOcrDisponivel() {
+        return motoresCriados > 0;
+    }
+
+    /** Quantidade de workers OCR (= motores Tesseract quando o OCR está disponível). */
+    public int getParalelismo() {
+        return executor.getMaximumPoolSize();
+    }
+
+    /** Quantidade de workers da faixa do OCR em lote ({@code visionmarket.ocr.lote.workers}). */
+    public int getParalelismoLote() {
+        return workersLote;
+    }
+
+    public String getIdiomaOcr() {
+        return idiomaOcr;
+    }
+
+    public String getTessdataPath() {
+        return tessdataPath;
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        executor.shutdownNow();
+        executorLote.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+            executorLote.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<MotorTesseract> paraFechar = new ArrayList<>();
+        motores.drainTo(paraFechar);
+        motoresLote.drainTo(paraFechar);
+        paraFechar.forEach(MotorTesseract::close);
+    }
+
+    private String resolverTessdataPath() {
+        List<String> candidatos = new ArrayList<>();
+
+        if (tessdataPathConfigurado != null && !tessdataPathConfigurado.isBlank()) {
+            candidatos.add(tessdataPathConfigurado);
+        }
+
+        candidatos.add("D:\\PROJETO_AUTOMACAO_TRAE\\MERCADO_ORCAMENTOS\\tessdata");
+        candidatos.add("C:\\Program Files\\Tesseract-OCR\\tessdata");
+        candidatos.add("C:\\Program Files (x86)\\Tesseract-OCR\\tessdata");
+
+        for (String candidato : candidatos) {
+            if (candidato != null && !candidato.isBlank() && new File(candidato).exists()) {
+                return candidato;
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,207 @@
+package com.mercado.orcamento.service;
+
+import com.mercado.orcamento.dto.DadosExtraidos;
+import com.mercado.orcamento.dto.EtapaOcr;
+import com.mercado.orcamento.dto.StatusJobOcr;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Jobs assíncronos de OCR: o scan é enfileirado, o id volta na hora e o andamento
+ * pode ser acompanhado por polling ou Server-Sent Events.
+ * Pedidos repetidos para a mesma imagem (mesmo conteúdo) reaproveitam o job em andamento.
+ */
+@Service
+public class OcrJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OcrJobService.class);
+
+    // Jobs finalizados ficam disponíveis para consulta por este tempo
+    private static final long RETENCAO_JOBS_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final long TIMEOUT_SSE_MS = TimeUnit.MINUTES.toMillis(2);
+
+    private final OcrService ocrService;
+    private final ThreadPoolExecutor executor;
+    private final MetricasOcr metricas;
+
+    private final Map<String, JobOcr> jobs = new ConcurrentHashMap<>();
+    // chave de deduplicação (hash do conteúdo) -> job ainda em andamento
+    private final Map<String, JobOcr> jobsEmAndamento = new ConcurrentHashMap<>();
+
+    public OcrJobService(OcrService ocrService, MetricasOcr metricas,
+                         @Value("${visionmarket.ocr.jobs.workers:2}") int workers,
+                         @Value("${visionmarket.ocr.jobs.queue-capacity:64}") int capacidadeFila) {
+        this.ocrService = ocrService;
+        this.metricas = metricas;
+        int tamanho = Math.max(1, workers);
+        AtomicInteger contador = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(tamanho, tamanho, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, capacidadeFila)),
+                r -> {
+                    Thread t = new Thread(r, "ocr-job-" + contador.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        metricas.monitorarFila(MetricasOcr.FILA_JOBS, executor.getQueue());
+    }
+
+    /**
+     * Enfileira o scan da imagem e devolve o estado inicial do job.
+     *
+     * @throws RejectedExecutionException se a fila de jobs estiver cheia
+     */
+    public StatusJobOcr submeter(String nomeArquivo) {
+        return submeter(nomeArquivo, null);
+    }
+
+    /**
+     * Como {@link #submeter(String)}, reaproveitando o hash do conteúdo quando já é conhecido
+     * (ex.: calculado durante o upload).
+     */
+    public StatusJobOcr submeter(String nomeArquivo, String hashConhecido) {
+        removerJobsExpirados();
+
+        String hash = hashConhecido != null ? hashConhecido : ocrService.calcularHash(nomeArquivo);
+        String chave = hash != null ? hash : "arquivo:" + nomeArquivo;
+
+        JobOcr novo = new JobOcr(UUID.randomUUID().toString(), nomeArquivo);
+        JobOcr existente = jobsEmAndamento.putIfAbsent(chave, novo);
+        if (existente != null) {
+            logger.debug("Scan duplicado de {} reaproveitando job {}", nomeArquivo, existente.id);
+            return existente.status();
+        }
+
+        jobs.put(novo.id, novo);
+        try {
+            long enfileirado = System.nanoTime();
+            executor.execute(() -> {
+                metricas.registrarEsperaFila(MetricasOcr.FILA_JOBS, enfileirado);
+                executar(novo, chave, hash);
+            });
+        } catch (RejectedExecutionException e) {
+            jobs.remove(novo.id);
+            jobsEmAndamento.remove(chave, novo);
+            throw e;
+        }
+        return novo.status();
+    }
+
+    public Optional<StatusJobOcr> consultar(String id) {
+        JobOcr job = jobs.get(id);
+        return job == null ? Optional.empty() : Optional.of(job.status());
+    }
+
+    /**
+     * Abre um stream SSE com os eventos "etapa" e o evento final "concluido" do job.
+     * Se o job já terminou, o evento final é enviado imediatamente.
+     */
+    public Optional<SseEmitter> acompanhar(String id) {
+        JobOcr job = jobs.get(id);
+        if (job == null) {
+            return Optional.empty();
+        }
+
+        SseEmitter emitter = new SseEmitter(TIMEOUT_SSE_MS);
+        emitter.onCompletion(() -> job.ouvintes.remove(emitter));
+        emitter.onTimeout(() -> job.ouvintes.remove(emitter));
+        emitter.onError(e -> job.ouvintes.remove(emitter));
+
+        job.ouvintes.add(emitter);
+        // Envia o estado atual; se o job terminou entre o add e aqui, o envio final também cobre
+        enviar(emitter, job.status());
+        if (job.finalizado) {
+            job.ouvintes.remove(emitter);
+            emitter.complete();
+        }
+        return Optional.of(emitter);
+    }
+
+    private void executar(JobOcr job, String chave, String hash) {
+        try {
+            DadosExtraidos dados = ocrService.extrairDadosDaImagem(job.nomeArquivo, hash, etapa -> {
+                job.etapa = etapa;
+                notificar(job);
+            });
+            job.resultado = dados;
+        } catch (Exception e) {
+            logger.error("Falha no job OCR {} ({}): ", job.id, job.nomeArquivo, e);
+            job.erro = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        } finally {
+            job.etapa = EtapaOcr.CONCLUIDO;
+            job.finalizado = true;
+            job.finalizadoEm = System.currentTimeMillis();
+            jobsEmAndamento.remove(chave, job);
+            notificar(job);
+            for (SseEmitter emitter : job.ouvintes) {
+                emitter.complete();
+            }
+            job.ouvintes.clear();
+        }
+    }
+
+    private void notificar(JobOcr job) {
+        StatusJobOcr status = job.status();
+        for (SseEmitter emitter : job.ouvintes) {
+            enviar(emitter, status);
+        }
+    }
+
+    private void enviar(SseEmitter emitter, StatusJobOcr status) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name(status.isFinalizado() ? "concluido" : "etapa")
+                    .data(status));
+        } catch (IOException | IllegalStateException e) {
+            // Cliente fechou a conexão: o onError/onCompletion remove o ouvinte
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void removerJobsExpirados() {
+        long limite = System.currentTimeMillis() - RETENCAO_JOBS_MS;
+        jobs.values().removeIf(job -> job.finalizado && job.finalizadoEm < limite);
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        executor.shutdownNow();
+    }
+
+    private static final class JobOcr {
+        private final String id;
+        private final String nomeArquivo;
+        private final List<SseEmitter> ouvintes = new CopyOnWriteArrayList<>();
+        private volatile EtapaOcr etapa = EtapaOcr.NA_FILA;
+        private volatile boolean finalizado;
+        private volatile long finalizadoEm;
+        private volatile String erro;
+        private volatile DadosExtraidos resultado;
+
+        private JobOcr(String id, String nomeArquivo) {
+            this.id = id;
+            this.nomeArquivo = nomeArquivo;
+        }
+
+        private StatusJobOcr status() {
+            return new StatusJobOcr(id, nomeArquivo, etapa, finalizado, erro, resultado);
+        }
+    }
+}
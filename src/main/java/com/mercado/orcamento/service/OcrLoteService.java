@@ -0,0 +1,234 @@
+package com.mercado.orcamento.service;
+
+import com.mercado.orcamento.dto.DadosExtraidos;
+import com.mercado.orcamento.dto.StatusLoteOcr;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * OCR em lote da galeria (pasta inteira ou uma seleção de arquivos).
+ * Um lote roda por vez (os demais esperam numa fila curta) na faixa de lote do {@link OcrExecutor},
+ * com {@code visionmarket.ocr.lote.workers} workers e motores próprios: os scans interativos
+ * continuam com o pool e a fila deles. Falha em uma foto não interrompe as demais; OCR ocupado
+ * (workers cheios ou tempo esgotado) não é falha, a foto volta para o fim da fila depois de uma espera.
+ * Lotes finalizados ficam disponíveis para consulta por alguns minutos e depois são descartados.
+ *
+ * Retomável: fotos cujo conteúdo já tem leitura no cache de OCR (memória ou disco) são puladas,
+ * então rodar o mesmo lote de novo depois de uma interrupção continua de onde parou.
+ */
+@Service
+public class OcrLoteService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OcrLoteService.class);
+
+    // Lotes finalizados ficam disponíveis para consulta por este tempo
+    private static final long RETENCAO_LOTES_MS = TimeUnit.MINUTES.toMillis(10);
+    // OCR ocupado: espera dobrando a cada nova tentativa da mesma foto, até desistir dela
+    private static final long ESPERA_INICIAL_MS = 500;
+    private static final long ESPERA_MAXIMA_MS = TimeUnit.SECONDS.toMillis(15);
+    private static final int TENTATIVAS_MAXIMAS = 8;
+
+    private final OcrService ocrService;
+    private final OcrExecutor ocrExecutor;
+    private final Map<String, Lote> lotes = new ConcurrentHashMap<>();
+
+    // Coordenador de thread única (um lote ativo por vez) e workers compartilhados entre os lotes
+    private final ThreadPoolExecutor coordenador;
+    private final ThreadPoolExecutor workers;
+
+    public OcrLoteService(OcrService ocrService, OcrExecutor ocrExecutor,
+                          @Value("${visionmarket.ocr.lote.fila:4}") int capacidadeFila) {
+        this.ocrService = ocrService;
+        this.ocrExecutor = ocrExecutor;
+        this.coordenador = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, capacidadeFila)),
+                r -> {
+                    Thread t = new Thread(r, "ocr-lote");
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        AtomicInteger contador = new AtomicInteger();
+        // Só o lote ativo submete aqui, um worker por worker da faixa de lote do OcrExecutor
+        this.workers = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 30L, TimeUnit.SECONDS,
+                new SynchronousQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "ocr-lote-worker-" + contador.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /**
+     * Enfileira o lote e devolve o estado inicial; ele começa assim que o lote anterior terminar.
+     *
+     * @throws RejectedExecutionException se já houver lotes demais esperando
+     */
+    public StatusLoteOcr iniciar(List<String> arquivos) {
+        removerLotesExpirados();
+
+        Lote lote = new Lote(UUID.randomUUID().toString(), new ArrayList<>(arquivos));
+        lotes.put(lote.id, lote);
+        try {
+            coordenador.execute(() -> executar(lote));
+        } catch (RejectedExecutionException e) {
+            lotes.remove(lote.id);
+            throw e;
+        }
+        return lote.status();
+    }
+
+    public Optional<StatusLoteOcr> consultar(String id) {
+        Lote lote = lotes.get(id);
+        return lote == null ? Optional.empty() : Optional.of(lote.status());
+    }
+
+    private void executar(Lote lote) {
+        int paralelismo = Math.min(ocrExecutor.getParalelismoLote(), Math.max(1, lote.arquivos.size()));
+        lote.inicio = System.currentTimeMillis();
+        logger.info("Lote OCR {} iniciado: {} imagem(ns), {} worker(s)", lote.id, lote.arquivos.size(), paralelismo);
+
+        ConcurrentLinkedQueue<String> pendentes = new ConcurrentLinkedQueue<>(lote.arquivos);
+        List<Future<?>> tarefas = new ArrayList<>(paralelismo);
+        try {
+            for (int i = 0; i < paralelismo; i++) {
+                tarefas.add(workers.submit(() -> {
+                    String arquivo;
+                    while (!Thread.currentThread().isInterrupted() && (arquivo = pendentes.poll()) != null) {
+                        processar(lote, arquivo, pendentes);
+                    }
+                }));
+            }
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get();
+            }
+        } catch (InterruptedException e) {
+            tarefas.forEach(t -> t.cancel(true));
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | RejectedExecutionException e) {
+            logger.warn("Lote OCR {} interrompido: {}", lote.id, e.getMessage());
+        } finally {
+            finalizar(lote);
+        }
+    }
+
+    private void processar(Lote lote, String arquivo, Queue<String> pendentes) {
+        try {
+            String hash = ocrService.calcularHash(arquivo);
+            if (hash == null) {
+                lote.falhar(arquivo, "Arquivo não encontrado ou ilegível");
+                return;
+            }
+            if (ocrService.jaProcessada(hash)) {
+                lote.ignoradas.incrementAndGet();
+                return;
+            }
+
+            DadosExtraidos dados = ocrService.extrairDadosDaImagemEmLote(arquivo, hash);
+            if (ocrService.jaProcessada(hash)) {
+                lote.processadas.incrementAndGet();
+            } else {
+                // Sem leitura completa (OCR indisponível, imagem inválida...)
+                lote.falhar(arquivo, dados.getTextoBruto());
+            }
+        } catch (RejectedExecutionException | TimeoutException e) {
+            reenfileirar(lote, arquivo, pendentes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Encerra o worker (lote cancelado ou aplicação parando)
+        } catch (Exception e) {
+            logger.warn("Lote OCR {}: falha em {}: {}", lote.id, arquivo, e.getMessage());
+            lote.falhar(arquivo, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        }
+    }
+
+    // Este worker espera e devolve a foto ao fim da fila; os outros seguem com as próximas
+    private void reenfileirar(Lote lote, String arquivo, Queue<String> pendentes) {
+        int tentativa = lote.tentativas.merge(arquivo, 1, Integer::sum);
+        if (tentativa >= TENTATIVAS_MAXIMAS) {
+            lote.falhar(arquivo, "OCR ocupado: " + tentativa + " tentativas sem leitura, rode o lote de novo mais tarde.");
+            return;
+        }
+        lote.reenvios.incrementAndGet();
+        long espera = Math.min(ESPERA_MAXIMA_MS, ESPERA_INICIAL_MS << (tentativa - 1));
+        logger.debug("Lote OCR {}: OCR ocupado em {}, nova tentativa em {}ms", lote.id, arquivo, espera);
+        try {
+            Thread.sleep(espera);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pendentes.add(arquivo);
+    }
+
+    private void removerLotesExpirados() {
+        long limite = System.currentTimeMillis() - RETENCAO_LOTES_MS;
+        lotes.values().removeIf(lote -> lote.finalizado && lote.fim < limite);
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        coordenador.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private void finalizar(Lote lote) {
+        lote.fim = System.currentTimeMillis();
+        lote.finalizado = true;
+        StatusLoteOcr status = lote.status();
+        logger.info("Lote OCR {} concluido em {}ms: {} lida(s), {} ja processada(s), {} falha(s), {} reenvio(s) - {} img/s",
+                lote.id, status.getDuracaoMs(), status.getProcessadas(), status.getIgnoradas(),
+                status.getFalhas(), status.getReenvios(), String.format("%.2f", status.getImagensPorSegundo()));
+    }
+
+    private static final class Lote {
+        private final String id;
+        private final List<String> arquivos;
+        private volatile long inicio; // 0 enquanto espera o lote anterior
+        private final AtomicInteger processadas = new AtomicInteger();
+        private final AtomicInteger ignoradas = new AtomicInteger();
+        private final AtomicInteger reenvios = new AtomicInteger();
+        private final Map<String, Integer> tentativas = new ConcurrentHashMap<>();
+        private final Map<String, String> erros = new ConcurrentHashMap<>();
+        private volatile long fim;
+        private volatile boolean finalizado;
+
+        private Lote(String id, List<String> arquivos) {
+            this.id = id;
+            this.arquivos = arquivos;
+        }
+
+        private void falhar(String arquivo, String motivo) {
+            erros.put(arquivo, motivo != null ? motivo : "Erro desconhecido");
+        }
+
+        private StatusLoteOcr status() {
+            long duracao = inicio == 0 ? 0 : (finalizado ? fim : System.currentTimeMillis()) - inicio;
+            int lidas = processadas.get();
+            // Vazão considera só imagens realmente lidas (as puladas não custam OCR)
+            double porSegundo = duracao > 0 ? lidas * 1000.0 / duracao : 0;
+            return new StatusLoteOcr(id, arquivos.size(), lidas, ignoradas.get(), erros.size(), reenvios.get(),
+                    new LinkedHashMap<>(erros), inicio == 0, finalizado, duracao, porSegundo);
+        }
+    }
+}
@@ -1,25 +1,21 @@
 package com.mercado.orcamento.service;
 
+import com.mercado.orcamento.dto.CorrespondenciaProduto;
 import com.mercado.orcamento.dto.DadosExtraidos;
-import com.google.zxing.*;
-import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
-import com.google.zxing.common.HybridBinarizer;
-import net.sourceforge.tess4j.ITesseract;
-import net.sourceforge.tess4j.Tesseract;
-import net.sourceforge.tess4j.TesseractException;
+import com.mercado.orcamento.dto.EtapaOcr;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import javax.imageio.ImageIO;
-import java.awt.*;
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
 import java.util.List;
-import java.util.regex.Matcher;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 
 @Service
@@ -28,69 +24,186 @@ public class OcrService {
     private static final Logger logger = LoggerFactory.getLogger(OcrService.class);
 
     private final String CAMINHO_FOTOS = "C:\\Users\\Borges\\Downloads\\MERCADO_FOTOS";
-    private final String tessdataPathConfigurado;
-    private final String idiomaOcr;
+    // Incrementar quando o pré-processamento ou a extração mudarem (invalida o cache de OCR)
+    private static final int VERSAO_PIPELINE = 5;
+    private static final Pattern ESPACOS = Pattern.compile("\\s+");
+
+    private final OcrExecutor ocrExecutor;
+    private final OcrCache ocrCache;
+    private final LeitorCodigoBarras leitorCodigoBarras;
+    private final PreProcessadorOcr preProcessador;
+    private final IndiceFuzzyProdutos indiceProdutos;
+    private final MetricasOcr metricas;
     
-    // "Cérebro" de conhecimento prévio (Simulando uma base de dados ou IA treinada)
-    private static final List<String> DICIONARIO_PRODUTOS = Arrays.asList(
-        "ARROZ", "FEIJAO", "MACARRAO", "OLEO", "AZEITE", "LEITE", "CAFE", "ACUCAR", 
-        "SAL", "FARINHA", "BISCOITO", "BOLACHA", "SABAO", "DETERGENTE", "AMACIANTE",
-        "DESINFETANTE", "SHAMPOO", "CONDICIONADOR", "SABONETE", "PASTA DENTAL",
-        "REFRIGERANTE", "SUCO", "AGUA", "CERVEJA", "VODKA", "WHISKY", "VINHO",
-        "CARNE", "FRANGO", "PEIXE", "OVO", "QUEIJO", "PRESUNTO", "IOURTE", "MANTEIGA"
-    );
-
-    public OcrService(@Value("${visionmarket.ocr.tessdata-path:}") String tessdataPathConfigurado,
-                      @Value("${visionmarket.ocr.language:eng}") String idiomaOcr) {
-        this.tessdataPathConfigurado = tessdataPathConfigurado;
-        this.idiomaOcr = idiomaOcr;
+    public OcrService(OcrExecutor ocrExecutor, OcrCache ocrCache, LeitorCodigoBarras leitorCodigoBarras,
+                      PreProcessadorOcr preProcessador, IndiceFuzzyProdutos indiceProdutos,
+                      MetricasOcr metricas) {
+        this.ocrExecutor = ocrExecutor;
+        this.ocrCache = ocrCache;
+        this.leitorCodigoBarras = leitorCodigoBarras;
+        this.preProcessador = preProcessador;
+        this.indiceProdutos = indiceProdutos;
+        this.metricas = metricas;
+        this.ocrCache.usarAssinatura(ocrExecutor.getIdiomaOcr() + "|" + ocrExecutor.getTessdataPath()
+                + "|" + preProcessador.getAssinatura() + "|v" + VERSAO_PIPELINE);
     }
 
     public DadosExtraidos extrairDadosDaImagem(String nomeArquivo) {
+        return extrairDadosDaImagem(nomeArquivo, null, etapa -> { });
+    }
+
+    /**
+     * Hash do conteúdo da foto na galeria, ou {@code null} se o arquivo não existir / não puder ser lido.
+     */
+    public String calcularHash(String nomeArquivo) {
+        File imagem = new File(CAMINHO_FOTOS, nomeArquivo);
+        if (!imagem.exists()) {
+            return null;
+        }
+        try {
+            return ConteudoHash.sha256(imagem.toPath());
+        } catch (IOException e) {
+            logger.warn("Erro ao calcular hash de {}: {}", nomeArquivo, e.getMessage());
+            return null;
+        }
+    }
+
+    /** Indica se a foto com este hash já tem leitura completa guardada no cache de OCR. */
+    public boolean jaProcessada(String hash) {
+        return hash != null && ocrCache.contem(hash);
+    }
+
+    /**
+     * Mesmo fluxo de {@link #extrairDadosDaImagem(String)}, notificando cada etapa em {@code progresso}.
+     * O hash pode ser informado quando o chamador já o calculou (ex.: deduplicação de jobs).
+     */
+    DadosExtraidos extrairDadosDaImagem(String nomeArquivo, String hashConhecido, Consumer<EtapaOcr> progresso) {
+        try {
+            return extrair(nomeArquivo, hashConhecido, progresso, false);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Fila OCR cheia. Scan recusado: {}", nomeArquivo);
+            return respostaIndisponivel(nomeArquivo, "OCR ocupado: muitas leituras em andamento, tente novamente em instantes.");
+        } catch (TimeoutException | CancellationException e) {
+            logger.warn("Tempo esgotado aguardando OCR: {}", nomeArquivo);
+            return respostaIndisponivel(nomeArquivo, "OCR ocupado: tempo de espera esgotado, tente novamente.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return respostaIndisponivel(nomeArquivo, "Leitura interrompida.");
+        }
+    }
+
+    /**
+     * Leitura do OCR em lote, na faixa própria do {@link OcrExecutor}. Ocupação não vira resposta:
+     * o lote decide se tenta de novo.
+     *
+     * @throws RejectedExecutionException se os workers do lote estiverem ocupados
+     * @throws TimeoutException se a leitura passar do prazo (inclui a tarefa descartada na fila)
+     */
+    DadosExtraidos extrairDadosDaImagemEmLote(String nomeArquivo, String hashConhecido) throws TimeoutException, InterruptedException {
+        try {
+            return extrair(nomeArquivo, hashConhecido, etapa -> { }, true);
+        } catch (CancellationException e) {
+            throw new TimeoutException(e.getMessage());
+        }
+    }
+
+    private DadosExtraidos extrair(String nomeArquivo, String hashConhecido, Consumer<EtapaOcr> progresso, boolean lote)
+            throws TimeoutException, InterruptedException {
         File imagem = new File(CAMINHO_FOTOS, nomeArquivo);
-        DadosExtraidos dados = new DadosExtraidos();
-        dados.setNomeArquivoImagem(nomeArquivo);
 
         if (!imagem.exists()) {
+            DadosExtraidos dados = new DadosExtraidos();
+            dados.setNomeArquivoImagem(nomeArquivo);
             dados.setTextoBruto("Erro: Arquivo não encontrado.");
             return dados;
         }
 
+        // Mesma foto (mesmo conteúdo) já lida antes: devolve o resultado sem decodificar de novo
+        long inicioTotal = metricas.iniciar();
+        String hash = hashConhecido;
+        if (hash == null) {
+            try {
+                long inicio = metricas.iniciar();
+                hash = ConteudoHash.sha256(imagem.toPath());
+                metricas.registrarEtapa(MetricasOcr.ETAPA_HASH, inicio);
+            } catch (IOException e) {
+                logger.error("Erro ao ler imagem {}: ", nomeArquivo, e);
+                return respostaIndisponivel(nomeArquivo, "Erro ao processar imagem: " + e.getMessage());
+            }
+        }
+        DadosExtraidos emCache = ocrCache.buscar(hash, nomeArquivo);
+        if (emCache != null) {
+            return associarProduto(emCache, inicioTotal);
+        }
+
+        // O processamento pesado roda nos workers OCR (fila limitada), não na thread do Tomcat
+        String hashFinal = hash;
+        Function<MotorTesseract, DadosExtraidos> tarefa = motor -> processarImagem(imagem, nomeArquivo, hashFinal, motor, progresso);
+        return associarProduto(lote ? ocrExecutor.executarLote(tarefa) : ocrExecutor.executar(tarefa), inicioTotal);
+    }
+
+    private DadosExtraidos respostaIndisponivel(String nomeArquivo, String mensagem) {
+        DadosExtraidos dados = new DadosExtraidos();
+        dados.setNomeArquivoImagem(nomeArquivo);
+        dados.setTextoBruto(mensagem);
+        return dados;
+    }
+
+    private DadosExtraidos processarImagem(File imagem, String nomeArquivo, String hash, MotorTesseract motor,
+                                            Consumer<EtapaOcr> progresso) {
+        DadosExtraidos dados = new DadosExtraidos();
+        dados.setNomeArquivoImagem(nomeArquivo);
+
+        // Decodifica uma única vez: código de barras e OCR compartilham o mesmo raster cinza
+        progresso.accept(EtapaOcr.PRE_PROCESSAMENTO);
+        ImagemCinza imagemCinza;
+        try {
+            long inicio = metricas.iniciar();
+            imagemCinza = ImagemCinza.decodificar(imagem);
+            metricas.registrarEtapa(MetricasOcr.ETAPA_DECODIFICACAO, inicio);
+        } catch (IOException e) {
+            dados.setTextoBruto("Erro ao processar imagem: " + e.getMessage());
+            logger.error("Erro ao decodificar imagem {}: ", nomeArquivo, e);
+            return dados;
+        }
+
         // 1. Tenta ler Código de Barras (Prioridade para Identificação)
+        progresso.accept(EtapaOcr.CODIGO_BARRAS);
         try {
-            String codigo = lerCodigoBarras(imagem);
-            if (codigo != null) {
-                dados.setCodigoBarras(codigo);
-            }
+            long inicio = metricas.iniciar();
+            leitorCodigoBarras.ler(imagemCinza, dados);
+            metricas.registrarEtapa(MetricasOcr.ETAPA_CODIGO_BARRAS, inicio);
         } catch (Exception e) {
             logger.warn("Erro ao ler código de barras: {}", e.getMessage());
         }
 
-        // 2. Tenta ler Texto (OCR) com Pré-processamento (Visão Computacional Básica)
-        String tessdataPath = resolverTessdataPath();
-        if (tessdataPath == null) {
+        // 2. Tenta ler Texto (OCR) sobre a imagem já em escala de cinza
+        if (motor == null) {
             dados.setTextoBruto("OCR indisponivel: pasta tessdata nao encontrada.");
-            logger.warn("OCR indisponivel: configure visionmarket.ocr.tessdata-path com uma pasta valida.");
             return dados;
         }
 
-        ITesseract instance = new Tesseract();
-        instance.setDatapath(tessdataPath);
-        instance.setLanguage(idiomaOcr);
-
         try {
-            // APLICAÇÃO DE IA/VISÃO: Melhora a imagem antes de ler
-            BufferedImage imagemProcessada = preProcessarImagem(imagem);
-            
-            String resultado = instance.doOCR(imagemProcessada);
+            // OCR só nas regiões com texto (o fundo da prateleira fica de fora), cada uma na escala das suas letras
+            long inicio = metricas.iniciar();
+            List<PreProcessadorOcr.Recorte> recortes = preProcessador.preparar(imagemCinza);
+            metricas.registrarEtapa(MetricasOcr.ETAPA_PRE_PROCESSAMENTO, inicio);
+
+            progresso.accept(EtapaOcr.OCR);
+            inicio = metricas.iniciar();
+            String resultado = motor.reconhecer(recortes);
+            metricas.registrarEtapa(MetricasOcr.ETAPA_TESSERACT, inicio);
             dados.setTextoBruto(resultado);
 
             // 3. Processa o texto com "Inteligência" (Heurística + Fuzzy)
+            progresso.accept(EtapaOcr.INTERPRETACAO);
+            inicio = metricas.iniciar();
             processarTexto(resultado, dados);
+            metricas.registrarEtapa(MetricasOcr.ETAPA_INTERPRETACAO, inicio);
+
+            // Só leituras completas entram no cache (erros e OCR indisponível são refeitos)
+            ocrCache.guardar(hash, dados);
 
-        } catch (TesseractException | IOException e) {
-            dados.setTextoBruto("Erro ao processar imagem: " + e.getMessage());
-            logger.error("Erro OCR Tesseract: ", e);
         } catch (Throwable t) {
             dados.setTextoBruto("OCR indisponivel no ambiente atual: " + t.getMessage());
             logger.error("Falha inesperada no mecanismo OCR: ", t);
@@ -99,128 +212,19 @@ public class OcrService {
         return dados;
     }
 
-    private String resolverTessdataPath() {
-        List<String> candidatos = new ArrayList<>();
-
-        if (tessdataPathConfigurado != null && !tessdataPathConfigurado.isBlank()) {
-            candidatos.add(tessdataPathConfigurado);
-        }
-
-        candidatos.add("D:\\PROJETO_AUTOMACAO_TRAE\\MERCADO_ORCAMENTOS\\tessdata");
-        candidatos.add("C:\\Program Files\\Tesseract-OCR\\tessdata");
-        candidatos.add("C:\\Program Files (x86)\\Tesseract-OCR\\tessdata");
-
-        for (String candidato : candidatos) {
-            if (candidato != null && !candidato.isBlank() && new File(candidato).exists()) {
-                return candidato;
-            }
-        }
-
-        return null;
-    }
-
-    /**
-     * Simula uma "Visão Computacional" limpando a imagem para facilitar a leitura.
-     * Converte para escala de cinza e aumenta contraste (binarização simples).
-     */
-    private BufferedImage preProcessarImagem(File arquivo) throws IOException {
-        BufferedImage original = ImageIO.read(arquivo);
-        if (original == null) throw new IOException("Não foi possível ler a imagem.");
-        
-        // Cria imagem em escala de cinza
-        BufferedImage processada = new BufferedImage(original.getWidth(), original.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
-        Graphics2D g = processada.createGraphics();
-        g.drawImage(original, 0, 0, null);
-        g.dispose();
-        
-        return processada;
-    }
-
-    private String lerCodigoBarras(File arquivoImagem) throws IOException, NotFoundException {
-        BufferedImage imagem = ImageIO.read(arquivoImagem);
-        if (imagem == null) return null;
-
-        LuminanceSource source = new BufferedImageLuminanceSource(imagem);
-        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
-
-        Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
-        hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
-        hints.put(DecodeHintType.POSSIBLE_FORMATS, EnumSet.allOf(BarcodeFormat.class));
-
-        try {
-            Result result = new MultiFormatReader().decode(bitmap, hints);
-            return result.getText();
-        } catch (NotFoundException e) {
-            return null; // Nenhum código encontrado
-        }
-    }
-
     private void processarTexto(String texto, DadosExtraidos dados) {
-        String limpo = texto.replace("\r", "");
-        String textoLinear = limpo.replaceAll("\n", " ").trim();
+        // Uma única passada no texto: preço, peso e linhas candidatas a descrição
+        InterpretadorTextoOcr.Candidatos candidatos = InterpretadorTextoOcr.interpretar(texto);
 
-        dados.setPrecoEncontrado(extrairMelhorPreco(limpo, textoLinear));
-        dados.setPesoEncontrado(extrairPeso(textoLinear));
+        dados.setPrecoEncontrado(candidatos.getPreco());
+        dados.setPesoEncontrado(candidatos.getPeso());
 
-        String descricao = extrairDescricaoProduto(limpo);
+        String descricao = extrairDescricaoProduto(candidatos.getLinhasDescricao());
         dados.setDescricaoProduto(descricao);
         dados.setNomePossivel(descricao);
     }
 
-    private String extrairMelhorPreco(String textoOriginal, String textoLinear) {
-        List<String> candidatos = new ArrayList<>();
-
-        for (String linha : textoOriginal.split("\n")) {
-            String linhaLimpa = linha.trim().toUpperCase();
-            if (linhaLimpa.isBlank()) {
-                continue;
-            }
-
-            boolean linhaDePreco = linhaLimpa.contains("R$")
-                    || linhaLimpa.matches(".*\\d+[.,]\\d{2}.*")
-                    || linhaLimpa.contains("ATAC")
-                    || linhaLimpa.contains("CART")
-                    || linhaLimpa.contains("CLUBE")
-                    || linhaLimpa.contains("OFERTA");
-
-            if (linhaDePreco) {
-                Matcher matcher = Pattern.compile("(\\d+[.,]\\d{2})").matcher(linhaLimpa);
-                while (matcher.find()) {
-                    candidatos.add(matcher.group(1).replace(",", "."));
-                }
-            }
-        }
-
-        if (candidatos.isEmpty()) {
-            Matcher matcherPreco = Pattern.compile("(?:R\\$\\s*)?(\\d+[.,]\\d{2})").matcher(textoLinear);
-            if (matcherPreco.find()) {
-                return matcherPreco.group(1).replace(",", ".");
-            }
-            return null;
-        }
-
-        return candidatos.get(0);
-    }
-
-    private String extrairPeso(String textoLinear) {
-        Pattern padraoPeso = Pattern.compile("(\\d+(?:[.,]\\d+)?\\s*(?:kg|g|ml|l|litros?))", Pattern.CASE_INSENSITIVE);
-        Matcher matcherPeso = padraoPeso.matcher(textoLinear);
-        if (matcherPeso.find()) {
-            return matcherPeso.group(1).toUpperCase();
-        }
-        return null;
-    }
-
-    private String extrairDescricaoProduto(String texto) {
-        List<String> linhasValidas = new ArrayList<>();
-        for (String linha : texto.split("\n")) {
-            String linhaNormalizada = normalizarLinhaProduto(linha);
-            if (linhaNormalizada == null) {
-                continue;
-            }
-            linhasValidas.add(linhaNormalizada);
-        }
-
+    private String extrairDescricaoProduto(List<String> linhasValidas) {
         if (linhasValidas.isEmpty()) {
             return null;
         }
@@ -229,18 +233,17 @@ public class OcrService {
         int menorDistancia = Integer.MAX_VALUE;
 
         for (String linha : linhasValidas) {
-            String[] palavras = linha.split("\\s+");
-            for (String palavra : palavras) {
+            // Linhas já normalizadas: palavras separadas por um espaço ou por um tab isolado
+            for (String palavra : ESPACOS.split(linha)) {
                 if (palavra.length() < 3) {
                     continue;
                 }
 
-                for (String produtoConhecido : DICIONARIO_PRODUTOS) {
-                    int distancia = calcularDistanciaLevenshtein(palavra, produtoConhecido);
-                    if (distancia < menorDistancia) {
-                        menorDistancia = distancia;
-                        melhorCandidato = linha;
-                    }
+                // Palavras do catálogo + genéricas de mercado, via BK-tree (raio 2)
+                int distancia = indiceProdutos.menorDistancia(palavra, 2);
+                if (distancia < menorDistancia) {
+                    menorDistancia = distancia;
+                    melhorCandidato = linha;
                 }
             }
         }
@@ -252,41 +255,23 @@ public class OcrService {
         return linhasValidas.get(0);
     }
 
-    private String normalizarLinhaProduto(String linha) {
-        String normalizada = linha == null ? "" : linha.trim().toUpperCase();
-        if (normalizada.length() < 3) {
-            return null;
-        }
-
-        if (normalizada.contains("R$") || normalizada.matches(".*\\d+[.,]\\d{2}.*")) {
-            return null;
-        }
-
-        if (normalizada.matches("^\\d+$") || normalizada.matches(".*\\b(COD|EAN|SKU|QTD|UN|UND)\\b.*")) {
-            return null;
-        }
-
-        normalizada = normalizada.replaceAll("[^A-Z0-9\\s]", " ").replaceAll("\\s{2,}", " ").trim();
-        if (normalizada.length() < 3) {
-            return null;
-        }
-
-        return normalizada;
-    }
-
-    // Algoritmo clássico de IA para medir similaridade entre textos
-    private int calcularDistanciaLevenshtein(String s1, String s2) {
-        int[][] dp = new int[s1.length() + 1][s2.length() + 1];
-
-        for (int i = 0; i <= s1.length(); i++) dp[i][0] = i;
-        for (int j = 0; j <= s2.length(); j++) dp[0][j] = j;
-
-        for (int i = 1; i <= s1.length(); i++) {
-            for (int j = 1; j <= s2.length(); j++) {
-                int custo = (s1.charAt(i - 1) == s2.charAt(j - 1)) ? 0 : 1;
-                dp[i][j] = Math.min(Math.min(dp[i - 1][j] + 1, dp[i][j - 1] + 1), dp[i - 1][j - 1] + custo);
+    /**
+     * Liga o resultado a um produto já cadastrado. Feito fora do cache de OCR porque o
+     * catálogo muda independente da foto.
+     */
+    private DadosExtraidos associarProduto(DadosExtraidos dados, long inicioTotal) {
+        long inicio = metricas.iniciar();
+        List<String> linhas = dados.getTextoBruto() == null ? List.of()
+                : InterpretadorTextoOcr.interpretar(dados.getTextoBruto()).getLinhasDescricao();
+        if (!linhas.isEmpty()) {
+            List<CorrespondenciaProduto> achados = indiceProdutos.buscar(String.join("\n", linhas), 1);
+            if (!achados.isEmpty()) {
+                dados.setProdutoId(achados.get(0).getProdutoId());
+                dados.setProdutoCatalogo(achados.get(0).getNome());
             }
         }
-        return dp[s1.length()][s2.length()];
+        metricas.registrarEtapa(MetricasOcr.ETAPA_ASSOCIACAO_PRODUTO, inicio);
+        metricas.registrarEtapa(MetricasOcr.ETAPA_TOTAL, inicioTotal);
+        return dados;
     }
 }
@@ -1,22 +1,40 @@
 package com.mercado.orcamento.service;
 
+import com.mercado.orcamento.dto.HistoricoPrecoDTO;
 import com.mercado.orcamento.dto.RegistroPrecoDTO;
+import com.mercado.orcamento.event.DadosOrcamentoAlteradosEvent;
+import com.mercado.orcamento.event.ProdutoAlteradoEvent;
 import com.mercado.orcamento.model.Mercado;
+import com.mercado.orcamento.model.PrecoAtual;
 import com.mercado.orcamento.model.Produto;
 import com.mercado.orcamento.model.RegistroPreco;
 import com.mercado.orcamento.model.TipoPreco;
+import com.mercado.orcamento.repository.PrecoAtualRepository;
 import com.mercado.orcamento.repository.ProdutoRepository;
 import com.mercado.orcamento.repository.RegistroPrecoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.text.Normalizer;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.regex.Pattern;
+import java.util.Set;
 
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -24,12 +42,29 @@ import java.util.stream.Collectors;
 @Service
 public class OrcamentoService {
 
+    private static final Logger logger = LoggerFactory.getLogger(OrcamentoService.class);
+
+    private static final int TAMANHO_BLOCO_IN = 1000;
+
     private final ProdutoRepository produtoRepository;
     private final RegistroPrecoRepository registroPrecoRepository;
+    private final PrecoAtualRepository precoAtualRepository;
+    private final ApplicationEventPublisher eventos;
+    private final IndiceNomesProdutos indiceNomes;
+    private final EstatisticasPrecoService estatisticasPreco;
+    private final TransactionTemplate transacao;
 
-    public OrcamentoService(ProdutoRepository produtoRepository, RegistroPrecoRepository registroPrecoRepository) {
+    public OrcamentoService(ProdutoRepository produtoRepository, RegistroPrecoRepository registroPrecoRepository,
+                            PrecoAtualRepository precoAtualRepository, ApplicationEventPublisher eventos,
+                            IndiceNomesProdutos indiceNomes, EstatisticasPrecoService estatisticasPreco,
+                            PlatformTransactionManager transactionManager) {
         this.produtoRepository = produtoRepository;
         this.registroPrecoRepository = registroPrecoRepository;
+        this.precoAtualRepository = precoAtualRepository;
+        this.eventos = eventos;
+        this.indiceNomes = indiceNomes;
+        this.estatisticasPreco = estatisticasPreco;
+        this.transacao = new TransactionTemplate(transactionManager);
     }
 
     public List<Produto> listarItens() {
@@ -38,48 +73,79 @@ public class OrcamentoService {
 
     @Transactional
     public void limparListaDeCompras() {
-        List<Produto> todos = produtoRepository.findAll();
-        for (Produto p : todos) {
-            p.setNaListaDeCompras(false);
+        // Um único UPDATE, independente do tamanho do catálogo
+        int alterados = produtoRepository.limparListaDeCompras();
+        if (alterados > 0) {
+            eventos.publishEvent(new DadosOrcamentoAlteradosEvent("limparListaDeCompras"));
         }
-        produtoRepository.saveAll(todos);
     }
 
     @Transactional
     public void importarListaRapida(String textoLista) {
         if (textoLista == null || textoLista.trim().isEmpty()) return;
+        long inicio = System.nanoTime();
 
         // 1. Separa por vírgula ou múltiplas quebras de linha (robustez para inputs sujos)
         String[] itens = textoLista.split("[,\\r\\n]+");
 
+        // 2. Resolve todas as linhas contra o índice em memória, numa passada só
+        Set<Long> idsExistentes = new LinkedHashSet<>();
+        Map<String, String> novosPorNomeNormalizado = new LinkedHashMap<>(); // Repetidos viram um produto só
+        int linhas = 0;
         for (String itemStr : itens) {
-            String nomeLimpo = itemStr.trim().toUpperCase(); // 2. Converte para Maiúsculo
+            String nomeLimpo = itemStr.trim().toUpperCase(); // Converte para Maiúsculo
             if (nomeLimpo.isEmpty()) continue;
+            linhas++;
 
-            // 3. Busca Inteligente (Exata ou Fonética/Sem Acento)
-            Optional<Produto> existente = buscarProdutoInteligente(nomeLimpo);
-            
+            Optional<Long> existente = indiceNomes.buscar(nomeLimpo);
             if (existente.isPresent()) {
-                Produto p = existente.get();
-                p.setNaListaDeCompras(true); // Marca na lista
-                produtoRepository.save(p);
+                idsExistentes.add(existente.get());
             } else {
-                Produto novo = new Produto(nomeLimpo, null);
-                novo.setNaListaDeCompras(true); // Já nasce na lista
-                produtoRepository.save(novo);
+                novosPorNomeNormalizado.putIfAbsent(Produto.normalizarNome(nomeLimpo), nomeLimpo);
+            }
+        }
+
+        // Confere os "novos" no banco de uma vez (cobre o que ainda não chegou ao índice)
+        if (!novosPorNomeNormalizado.isEmpty()) {
+            for (Produto p : produtoRepository.findByNomeNormalizadoIn(novosPorNomeNormalizado.keySet())) {
+                if (novosPorNomeNormalizado.remove(p.getNomeNormalizado()) != null) {
+                    idsExistentes.add(p.getId());
+                }
             }
         }
+
+        // 3. Marca os existentes com UPDATE ... WHERE id IN (...)
+        int marcados = atualizarLista(idsExistentes, true);
+
+        // 4. Cria os novos: INSERTs em lote (ids da sequence, sem ida ao banco por linha)
+        List<Produto> novos = new ArrayList<>(novosPorNomeNormalizado.size());
+        for (String nome : novosPorNomeNormalizado.values()) {
+            Produto novo = new Produto(nome, null);
+            novo.setNaListaDeCompras(true); // Já nasce na lista
+            novos.add(novo);
+        }
+        produtoRepository.saveAll(novos);
+        produtoRepository.flush();
+
+        for (Produto novo : novos) {
+            eventos.publishEvent(ProdutoAlteradoEvent.salvo(novo.getId(), novo.getNome()));
+        }
+        eventos.publishEvent(new DadosOrcamentoAlteradosEvent("importarListaRapida"));
+
+        long duracaoMs = Math.max(1, (System.nanoTime() - inicio) / 1_000_000);
+        logger.info("Lista rapida importada: {} linha(s), {} marcado(s), {} novo(s) em {}ms ({} linhas/s)",
+                linhas, marcados, novos.size(), duracaoMs, linhas * 1000L / duracaoMs);
     }
 
     public List<RegistroPrecoDTO> listarPrecosPlanos() {
-        // 1. Busca TUDO em UMA query (Performance Otimizada)
-        List<RegistroPreco> todosPrecos = registroPrecoRepository.findAllCompleto();
+        // 1. Busca os preços vigentes em UMA query (o histórico não entra)
+        List<PrecoAtual> todosPrecos = precoAtualRepository.findAllCompleto();
         
         // 2. Calcula o menor preço por produto em memória
         Map<Long, BigDecimal> menoresPrecos = todosPrecos.stream()
             .collect(Collectors.groupingBy(
                 rp -> rp.getProduto().getId(),
-                Collectors.mapping(RegistroPreco::getValor, Collectors.minBy(BigDecimal::compareTo))
+                Collectors.mapping(PrecoAtual::getValor, Collectors.minBy(BigDecimal::compareTo))
             ))
             .entrySet().stream()
             .filter(e -> e.getValue().isPresent())
@@ -88,7 +154,7 @@ public class OrcamentoService {
         List<RegistroPrecoDTO> tabelaPlana = new ArrayList<>();
         
         // 3. Monta a lista final
-        for (RegistroPreco rp : todosPrecos) {
+        for (PrecoAtual rp : todosPrecos) {
             BigDecimal menor = menoresPrecos.get(rp.getProduto().getId());
             boolean ehMelhor = menor != null && rp.getValor().compareTo(menor) == 0;
 
@@ -133,6 +199,7 @@ public class OrcamentoService {
              }
              // Se o usuário está adicionando explicitamente, talvez queira por na lista?
              // Mantendo lógica original: retorna o existente atualizado
+             eventos.publishEvent(new DadosOrcamentoAlteradosEvent("adicionarItem"));
              return produtoRepository.save(p);
         }
 
@@ -140,39 +207,138 @@ public class OrcamentoService {
         novo.setMarca(marca);
         novo.setPeso(peso);
         novo.setNaListaDeCompras(false); // Default: Fora da lista
-        return produtoRepository.save(novo);
+        Produto salvo = produtoRepository.save(novo);
+        // Índices em memória (ex.: fuzzy do OCR) são atualizados após o commit
+        eventos.publishEvent(ProdutoAlteradoEvent.salvo(salvo.getId(), salvo.getNome()));
+        eventos.publishEvent(new DadosOrcamentoAlteradosEvent("adicionarItem"));
+        return salvo;
     }
     
     @Transactional
     public void atualizarStatusListaCompras(Long idProduto, boolean naLista) {
-        produtoRepository.findById(idProduto).ifPresent(p -> {
-            p.setNaListaDeCompras(naLista);
-            produtoRepository.save(p);
-        });
+        atualizarStatusListaCompras(List.of(idProduto), naLista);
     }
 
+    /**
+     * Coloca ou tira vários produtos da lista de compras de uma vez.
+     *
+     * @return quantos produtos mudaram de estado (ids inexistentes ou já no estado pedido não contam)
+     */
     @Transactional
+    public int atualizarStatusListaCompras(Collection<Long> idsProdutos, boolean naLista) {
+        int alterados = atualizarLista(idsProdutos, naLista);
+        if (alterados > 0) {
+            eventos.publishEvent(new DadosOrcamentoAlteradosEvent("atualizarStatusListaCompras"));
+        }
+        return alterados;
+    }
+
+    // IN (...) em blocos, para não passar do limite de parâmetros do driver em listas enormes
+    private int atualizarLista(Collection<Long> idsProdutos, boolean naLista) {
+        List<Long> ids = idsProdutos.stream().filter(Objects::nonNull).distinct().toList();
+        int alterados = 0;
+        for (int i = 0; i < ids.size(); i += TAMANHO_BLOCO_IN) {
+            alterados += produtoRepository.atualizarListaDeCompras(ids.subList(i, Math.min(ids.size(), i + TAMANHO_BLOCO_IN)), naLista);
+        }
+        return alterados;
+    }
+
+    /**
+     * Registra o preço no histórico e atualiza o preço vigente (insere se for o primeiro).
+     * Transação própria: se outro pedido inserir o mesmo preço vigente entre a leitura e o insert,
+     * a restrição única recusa o nosso, a transação é desfeita e a gravação é refeita uma vez,
+     * agora encontrando a linha e atualizando-a.
+     */
     public void atualizarPreco(Long idProduto, Mercado mercado, TipoPreco tipo, BigDecimal valor) {
+        try {
+            transacao.executeWithoutResult(status -> gravarPreco(idProduto, mercado, tipo, valor));
+        } catch (DataIntegrityViolationException e) {
+            logger.debug("Preco vigente de {} ({}, {}) criado em paralelo; refazendo como atualizacao", idProduto, mercado, tipo);
+            transacao.executeWithoutResult(status -> gravarPreco(idProduto, mercado, tipo, valor));
+        }
+    }
+
+    private void gravarPreco(Long idProduto, Mercado mercado, TipoPreco tipo, BigDecimal valor) {
         produtoRepository.findById(idProduto).ifPresent(produto -> {
             RegistroPreco novoRegistro = new RegistroPreco(produto, mercado, valor, tipo);
             registroPrecoRepository.save(novoRegistro);
+
+            // Mesma transação: histórico e preço vigente nunca divergem
+            Optional<PrecoAtual> existente = precoAtualRepository.findByProdutoAndMercadoAndTipoPreco(produto, mercado, tipo);
+            PrecoAtual atual = existente.orElseGet(() -> new PrecoAtual(produto, mercado, tipo));
+            aplicarRegistro(atual, novoRegistro);
+            if (existente.isPresent()) {
+                precoAtualRepository.save(atual);
+            } else {
+                precoAtualRepository.saveAndFlush(atual); // Violação da restrição única aparece aqui, não no commit
+            }
+            eventos.publishEvent(new DadosOrcamentoAlteradosEvent("atualizarPreco"));
         });
     }
 
+    /**
+     * Histórico bruto de preços do produto, do mais recente para o mais antigo. Só cobre a janela de
+     * retenção; períodos mais antigos estão nos agregados (ConsolidacaoHistoricoService.listarSerie).
+     */
+    @Transactional(readOnly = true)
+    public List<HistoricoPrecoDTO> listarHistorico(Long idProduto) {
+        return registroPrecoRepository.findByProdutoIdOrderByDataRegistroDescIdDesc(idProduto).stream()
+            .map(rp -> new HistoricoPrecoDTO(
+                rp.getMercado() != null ? rp.getMercado().name() : null,
+                rp.getTipoPreco() != null ? rp.getTipoPreco().name() : null,
+                rp.getValor(),
+                rp.getDataRegistro()))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Preenche a tabela de preços vigentes a partir do histórico quando ela ainda está vazia
+     * (primeira subida depois da criação da tabela).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void reconstruirPrecosAtuaisSeVazio() {
+        if (precoAtualRepository.count() > 0 || registroPrecoRepository.count() == 0) return;
+
+        long inicio = System.currentTimeMillis();
+        Map<String, PrecoAtual> vigentes = new HashMap<>();
+        for (RegistroPreco rp : registroPrecoRepository.findAllEmOrdemCronologica()) {
+            if (rp.getMercado() == null || rp.getTipoPreco() == null || rp.getValor() == null) continue;
+            String chave = rp.getProduto().getId() + "|" + rp.getMercado() + "|" + rp.getTipoPreco();
+            aplicarRegistro(vigentes.computeIfAbsent(chave,
+                    k -> new PrecoAtual(rp.getProduto(), rp.getMercado(), rp.getTipoPreco())), rp);
+        }
+        precoAtualRepository.saveAll(vigentes.values());
+        logger.info("Tabela de precos vigentes reconstruida a partir do historico: {} registro(s) em {}ms",
+                vigentes.size(), System.currentTimeMillis() - inicio);
+    }
+
+    // O mais recente por dataRegistro vence (empate: o último aplicado)
+    static void aplicarRegistro(PrecoAtual atual, RegistroPreco registro) {
+        LocalDateTime data = registro.getDataRegistro();
+        if (atual.getDataRegistro() == null || data == null || !data.isBefore(atual.getDataRegistro())) {
+            atual.setValor(registro.getValor());
+            atual.setDataRegistro(data);
+        }
+    }
+
     @Transactional
     public void excluirItem(Long idProduto) {
         produtoRepository.deleteById(idProduto);
+        eventos.publishEvent(ProdutoAlteradoEvent.removido(idProduto));
+        eventos.publishEvent(new DadosOrcamentoAlteradosEvent("excluirItem"));
     }
 
     // --- Lógica de Inteligência de Mercado ---
 
+    // Da tabela de estatísticas em memória (EstatisticasPrecoService), sem consulta por produto
     public BigDecimal getMediaPreco(Produto p) {
-        BigDecimal media = registroPrecoRepository.findMediaPrecoByProduto(p);
+        BigDecimal media = estatisticasPreco.estatistica(p.getId()).getMedia();
         return media != null ? media.setScale(2, RoundingMode.HALF_UP) : BigDecimal.ZERO;
     }
 
     public BigDecimal getMenorPreco(Produto p) {
-        BigDecimal min = registroPrecoRepository.findMenorPrecoByProduto(p);
+        BigDecimal min = estatisticasPreco.estatistica(p.getId()).getMinimo();
         return min != null ? min : BigDecimal.ZERO;
     }
     
@@ -192,30 +358,24 @@ public class OrcamentoService {
     private Optional<Produto> buscarProdutoInteligente(String nomeBusca) {
         if (nomeBusca == null || nomeBusca.isEmpty()) return Optional.empty();
 
-        // 1. Tentativa Direta (Banco)
-        Optional<Produto> direto = produtoRepository.findByNomeContainingIgnoreCase(nomeBusca);
-        if (direto.isPresent()) return direto;
+        // 1. Índice em memória dos nomes normalizados (sem varrer a tabela)
+        Optional<Produto> indexado = indiceNomes.buscar(nomeBusca).flatMap(produtoRepository::findById);
+        if (indexado.isPresent()) return indexado;
 
-        // 2. Tentativa "Normalizada" (Memória)
-        // Normaliza o termo de busca (remove acentos)
-        String buscaNormalizada = removerAcentos(nomeBusca);
+        // 2. Igualdade na coluna indexada: cobre produtos criados nesta mesma transação,
+        // que só entram no índice depois do commit
+        return produtoRepository.findFirstByNomeNormalizadoOrderByIdAsc(Produto.normalizarNome(nomeBusca));
+    }
 
-        // Carrega todos (assumindo base pequena < 2000 itens) para filtrar
-        // Otimização futura: Criar coluna "nome_normalizado" no banco e indexar
-        List<Produto> todos = produtoRepository.findAll();
-        
-        return todos.stream()
-            .filter(p -> {
-                String nomeP = removerAcentos(p.getNome() != null ? p.getNome().toUpperCase() : "");
-                return nomeP.contains(buscaNormalizada) || buscaNormalizada.contains(nomeP);
-            })
-            .findFirst();
-    }
-
-    private String removerAcentos(String str) {
-        if (str == null) return "";
-        String nfdNormalizedString = Normalizer.normalize(str, Normalizer.Form.NFD); 
-        Pattern pattern = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
-        return pattern.matcher(nfdNormalizedString).replaceAll("");
+    /** Preenche nome_normalizado dos produtos gravados antes da coluna existir. */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void preencherNomesNormalizados() {
+        List<Produto> pendentes = produtoRepository.findByNomeNormalizadoIsNullAndNomeIsNotNull();
+        if (pendentes.isEmpty()) return;
+        for (Produto p : pendentes) {
+            p.setNomeNormalizado(Produto.normalizarNome(p.getNome()));
+        }
+        logger.info("Nome normalizado preenchido em {} produto(s)", pendentes.size());
     }
 }
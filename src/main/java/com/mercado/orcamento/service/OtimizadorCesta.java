@@ -0,0 +1,252 @@
+package com.mercado.orcamento.service;
+
+import com.mercado.orcamento.dto.ItemCestaDTO;
+import com.mercado.orcamento.dto.PlanoCompraDTO;
+import com.mercado.orcamento.dto.ResultadoCestaDTO;
+import com.mercado.orcamento.dto.TotalMercadoDTO;
+import com.mercado.orcamento.model.Mercado;
+import com.mercado.orcamento.model.TipoPreco;
+import com.mercado.orcamento.repository.PrecoAtualRepository;
+import com.mercado.orcamento.repository.ProdutoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Otimização da cesta (itens com naListaDeCompras): mercado único mais barato, melhor divisão
+ * em até N mercados e economia por tipo de preço.
+ *
+ * Trabalha sobre uma matriz de centavos em int[] (item x mercado x tipo), montada uma vez por
+ * versão dos dados ({@link VersaoDados}); cada consulta só percorre arrays, sem BigDecimal nem Map.
+ * Regras de preço iguais às do JavaScript da aba "Quero Comprar": VAREJO/ATACADO se o tipo foi
+ * escolhido nas preferências, CARTAO só nos mercados em que o usuário tem o cartão.
+ */
+@Service
+public class OtimizadorCesta {
+
+    private static final Logger logger = LoggerFactory.getLogger(OtimizadorCesta.class);
+
+    private static final int SEM_PRECO = Integer.MAX_VALUE;
+    private static final Mercado[] MERCADOS = Mercado.values();
+    private static final TipoPreco[] TIPOS = TipoPreco.values();
+    private static final int M = MERCADOS.length;
+    private static final int T = TIPOS.length;
+
+    private final ProdutoRepository produtoRepository;
+    private final PrecoAtualRepository precoAtualRepository;
+    private final VersaoDados versaoDados;
+
+    private volatile Matriz matriz;
+
+    public OtimizadorCesta(ProdutoRepository produtoRepository, PrecoAtualRepository precoAtualRepository,
+                           VersaoDados versaoDados) {
+        this.produtoRepository = produtoRepository;
+        this.precoAtualRepository = precoAtualRepository;
+        this.versaoDados = versaoDados;
+    }
+
+    /**
+     * @param tipos       tipos de preço aceitos (VAREJO/ATACADO); CARTAO depende só de {@code cartoes}
+     * @param cartoes     mercados em que o usuário tem cartão do clube
+     * @param maxMercados máximo de mercados na divisão (1 = mercado único)
+     */
+    public ResultadoCestaDTO otimizar(Set<TipoPreco> tipos, Set<Mercado> cartoes, int maxMercados) {
+        long inicio = System.nanoTime();
+        Matriz mz = obterMatriz();
+        int n = mz.ids.length;
+        int limiteMercados = Math.max(1, Math.min(maxMercados, M));
+
+        // 1. Melhor preço aceito por item/mercado (e o tipo que o deu)
+        int[] efetivo = new int[n * M];
+        byte[] tipoEfetivo = new byte[n * M];
+        boolean[] aceito = new boolean[M * T];
+        for (int m = 0; m < M; m++) {
+            for (int t = 0; t < T; t++) {
+                aceito[m * T + t] = TIPOS[t] == TipoPreco.CARTAO ? cartoes.contains(MERCADOS[m]) : tipos.contains(TIPOS[t]);
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            for (int m = 0; m < M; m++) {
+                int melhor = SEM_PRECO;
+                int base = (i * M + m) * T;
+                for (int t = 0; t < T; t++) {
+                    int v = mz.centavos[base + t];
+                    if (aceito[m * T + t] && v < melhor) {
+                        melhor = v;
+                        tipoEfetivo[i * M + m] = (byte) t;
+                    }
+                }
+                efetivo[i * M + m] = melhor;
+            }
+        }
+
+        // 2. Cada conjunto de até N mercados (máscara de bits): total e itens sem preço
+        long[] totalMercado = new long[M];
+        int[] faltandoMercado = new int[M];
+        int melhorMascara = 0;
+        long melhorTotal = Long.MAX_VALUE;
+        int melhorFaltando = Integer.MAX_VALUE;
+        for (int mascara = 1; mascara < (1 << M); mascara++) {
+            int tamanho = Integer.bitCount(mascara);
+            if (tamanho > limiteMercados) continue;
+            long total = 0;
+            int faltando = 0;
+            for (int i = 0; i < n; i++) {
+                int menor = SEM_PRECO;
+                for (int m = 0; m < M; m++) {
+                    if ((mascara & (1 << m)) != 0 && efetivo[i * M + m] < menor) menor = efetivo[i * M + m];
+                }
+                if (menor == SEM_PRECO) faltando++; else total += menor;
+            }
+            if (tamanho == 1) {
+                int m = Integer.numberOfTrailingZeros(mascara);
+                totalMercado[m] = total;
+                faltandoMercado[m] = faltando;
+            }
+            // Cobre mais itens > mais barato > menos mercados
+            if (faltando < melhorFaltando || (faltando == melhorFaltando && (total < melhorTotal
+                    || (total == melhorTotal && tamanho < Integer.bitCount(melhorMascara))))) {
+                melhorMascara = mascara;
+                melhorTotal = total;
+                melhorFaltando = faltando;
+            }
+        }
+
+        // 3. Ranking dos mercados isolados
+        Integer[] ordem = new Integer[M];
+        for (int m = 0; m < M; m++) ordem[m] = m;
+        Arrays.sort(ordem, (a, b) -> faltandoMercado[a] != faltandoMercado[b]
+                ? Integer.compare(faltandoMercado[a], faltandoMercado[b])
+                : Long.compare(totalMercado[a], totalMercado[b]));
+        List<TotalMercadoDTO> mercados = new ArrayList<>(M);
+        for (int m : ordem) {
+            mercados.add(new TotalMercadoDTO(MERCADOS[m], reais(totalMercado[m]), faltandoMercado[m]));
+        }
+
+        int melhorUnico = ordem[0];
+        int[] escolhaUnico = escolher(efetivo, n, 1 << melhorUnico);
+        int[] escolhaDivisao = escolher(efetivo, n, melhorMascara);
+
+        // 4. Economias: divisão x mercado único (itens com preço nos dois) e por tipo frente ao varejo
+        long economiaDivisao = 0;
+        long[] economiaTipo = new long[T];
+        int varejo = TipoPreco.VAREJO.ordinal();
+        for (int i = 0; i < n; i++) {
+            int mu = escolhaUnico[i];
+            int md = escolhaDivisao[i];
+            if (mu >= 0 && md >= 0) {
+                economiaDivisao += efetivo[i * M + mu] - efetivo[i * M + md];
+            }
+            if (md >= 0) {
+                int t = tipoEfetivo[i * M + md];
+                int precoVarejo = mz.centavos[(i * M + md) * T + varejo];
+                if (t != varejo && precoVarejo != SEM_PRECO) {
+                    economiaTipo[t] += precoVarejo - efetivo[i * M + md];
+                }
+            }
+        }
+        Map<TipoPreco, BigDecimal> economiaPorTipo = new EnumMap<>(TipoPreco.class);
+        for (int t = 0; t < T; t++) {
+            economiaPorTipo.put(TIPOS[t], reais(economiaTipo[t]));
+        }
+
+        ResultadoCestaDTO resultado = new ResultadoCestaDTO(n,
+                plano(mz, efetivo, tipoEfetivo, 1 << melhorUnico, escolhaUnico, totalMercado[melhorUnico], faltandoMercado[melhorUnico]),
+                mercados,
+                plano(mz, efetivo, tipoEfetivo, melhorMascara, escolhaDivisao, melhorTotal, melhorFaltando),
+                reais(economiaDivisao),
+                economiaPorTipo);
+        logger.debug("Cesta otimizada: {} item(ns), ate {} mercado(s) em {}us", n, limiteMercados, (System.nanoTime() - inicio) / 1000);
+        return resultado;
+    }
+
+    /** Mercado escolhido para cada item dentro da máscara (-1 se nenhum tem preço). */
+    private int[] escolher(int[] efetivo, int n, int mascara) {
+        int[] escolha = new int[n];
+        for (int i = 0; i < n; i++) {
+            int menor = SEM_PRECO;
+            escolha[i] = -1;
+            for (int m = 0; m < M; m++) {
+                if ((mascara & (1 << m)) != 0 && efetivo[i * M + m] < menor) {
+                    menor = efetivo[i * M + m];
+                    escolha[i] = m;
+                }
+            }
+        }
+        return escolha;
+    }
+
+    private PlanoCompraDTO plano(Matriz mz, int[] efetivo, byte[] tipoEfetivo, int mascara, int[] escolha, long total, int faltando) {
+        List<Mercado> mercados = new ArrayList<>();
+        for (int m = 0; m < M; m++) {
+            if ((mascara & (1 << m)) != 0) mercados.add(MERCADOS[m]);
+        }
+        List<ItemCestaDTO> itens = new ArrayList<>(escolha.length);
+        for (int i = 0; i < escolha.length; i++) {
+            int m = escolha[i];
+            itens.add(m < 0
+                    ? new ItemCestaDTO(mz.ids[i], mz.nomes[i], null, null, null)
+                    : new ItemCestaDTO(mz.ids[i], mz.nomes[i], MERCADOS[m], TIPOS[tipoEfetivo[i * M + m]], reais(efetivo[i * M + m])));
+        }
+        return new PlanoCompraDTO(mercados, reais(total), faltando, itens);
+    }
+
+    private static BigDecimal reais(long centavos) {
+        return BigDecimal.valueOf(centavos, 2);
+    }
+
+    // --- Matriz de preços da lista ---
+
+    private Matriz obterMatriz() {
+        Matriz atual = matriz;
+        if (atual != null && atual.versao == versaoDados.atual()) {
+            return atual;
+        }
+        synchronized (this) {
+            long versao = versaoDados.atual(); // Lida antes das consultas: escrita concorrente força nova montagem
+            if (matriz != null && matriz.versao == versao) {
+                return matriz;
+            }
+            matriz = montarMatriz(versao);
+            return matriz;
+        }
+    }
+
+    private Matriz montarMatriz(long versao) {
+        long inicio = System.currentTimeMillis();
+        List<Object[]> produtos = produtoRepository.findIdENomeNaLista();
+        long[] ids = new long[produtos.size()];
+        String[] nomes = new String[produtos.size()];
+        Map<Long, Integer> posicao = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = (Long) produtos.get(i)[0];
+            nomes[i] = (String) produtos.get(i)[1];
+            posicao.put(ids[i], i);
+        }
+
+        int[] centavos = new int[ids.length * M * T];
+        Arrays.fill(centavos, SEM_PRECO);
+        for (Object[] linha : precoAtualRepository.findValoresDaLista()) {
+            Integer i = posicao.get((Long) linha[0]);
+            if (i == null || linha[1] == null || linha[2] == null || linha[3] == null) continue;
+            int m = ((Mercado) linha[1]).ordinal();
+            int t = ((TipoPreco) linha[2]).ordinal();
+            centavos[(i * M + m) * T + t] = ((BigDecimal) linha[3]).movePointRight(2).setScale(0, RoundingMode.HALF_UP).intValueExact();
+        }
+        logger.debug("Matriz de precos da lista montada: {} item(ns) em {}ms", ids.length, System.currentTimeMillis() - inicio);
+        return new Matriz(versao, ids, nomes, centavos);
+    }
+
+    private record Matriz(long versao, long[] ids, String[] nomes, int[] centavos) {
+    }
+}
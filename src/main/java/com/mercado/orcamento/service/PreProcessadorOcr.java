@@ -0,0 +1,328 @@
+package com.mercado.orcamento.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Prepara a imagem cinza para o Tesseract: localiza as regiões com texto, para que o OCR rode
+ * só nelas em vez de varrer o fundo da prateleira, e redimensiona cada recorte pela altura das
+ * letras que ele contém (o Tesseract erra com letras muito pequenas e perde tempo com as enormes).
+ * A foto inteira só é usada quando nenhuma região confiável é encontrada.
+ */
+@Component
+public class PreProcessadorOcr {
+
+    // Lado da imagem reduzida usada só para localizar as regiões de texto
+    private static final int LADO_DETECCAO = 800;
+    private static final int LIMIAR_GRADIENTE = 40;
+    private static final double COBERTURA_MAXIMA = 0.6;
+    // Altura-x aproximada em relação à altura da linha (ascendentes a descendentes)
+    private static final double PROPORCAO_ALTURA_X = 0.6;
+    // A altura-x alvo corresponde a texto comum digitalizado a 300 DPI
+    private static final int DPI_REFERENCIA = 300;
+    private static final int DPI_MINIMO = 70;
+    private static final double ESCALA_MINIMA = 0.125;
+    private static final double ESCALA_MAXIMA = 4.0;
+
+    private final boolean habilitado;
+    private final int alturaXAlvo;
+    private final int ladoMaximo;
+    private final boolean recortarTexto;
+    private final int maxRegioes;
+
+    public PreProcessadorOcr(@Value("${visionmarket.ocr.preprocess.enabled:true}") boolean habilitado,
+                             @Value("${visionmarket.ocr.preprocess.altura-x:30}") int alturaXAlvo,
+                             @Value("${visionmarket.ocr.preprocess.lado-maximo:4000}") int ladoMaximo,
+                             @Value("${visionmarket.ocr.preprocess.recortar-texto:true}") boolean recortarTexto,
+                             @Value("${visionmarket.ocr.preprocess.max-regioes:8}") int maxRegioes) {
+        this.habilitado = habilitado;
+        this.alturaXAlvo = Math.max(8, alturaXAlvo);
+        this.ladoMaximo = Math.max(LADO_DETECCAO, ladoMaximo);
+        this.recortarTexto = recortarTexto;
+        this.maxRegioes = Math.max(1, maxRegioes);
+    }
+
+    public boolean isHabilitado() {
+        return habilitado;
+    }
+
+    /** Descreve a configuração; entra na assinatura do cache de OCR. */
+    public String getAssinatura() {
+        return habilitado
+                ? "pre:x" + alturaXAlvo + "/" + ladoMaximo + "/" + (recortarTexto ? maxRegioes : 0)
+                : "pre:off";
+    }
+
+    /**
+     * Recortes a entregar ao Tesseract, em ordem de leitura. Cada um já vem na escala em que a
+     * altura-x estimada fica perto do alvo, com o DPI correspondente a essa escala. Sem regiões
+     * (desligado, nada encontrado ou texto cobrindo quase tudo) devolve a imagem inteira.
+     */
+    public List<Recorte> preparar(ImagemCinza imagem) {
+        if (!habilitado) {
+            return List.of(new Recorte(imagem, 1.0, 0));
+        }
+
+        List<Bloco> blocos = localizarBlocos(imagem);
+        if (recortarTexto) {
+            List<Recorte> recortes = recortarRegioes(imagem, blocos);
+            if (!recortes.isEmpty()) {
+                return recortes;
+            }
+        }
+
+        // Imagem inteira: escala pela altura de linha mediana de tudo que parece texto
+        int[] alturas = blocos.stream().mapToInt(b -> b.alturaLinha).sorted().toArray();
+        Rectangle tudo = new Rectangle(0, 0, imagem.getLargura(), imagem.getAltura());
+        return List.of(alturas.length == 0
+                ? escalar(imagem, tudo, Math.min(1.0, ladoMaximo / (double) Math.max(tudo.width, tudo.height)), 0)
+                : recortar(imagem, tudo, alturas[alturas.length / 2]));
+    }
+
+    private List<Recorte> recortarRegioes(ImagemCinza imagem, List<Bloco> blocos) {
+        List<Bloco> maiores = new ArrayList<>(blocos);
+        maiores.sort(Comparator.comparingInt((Bloco b) -> b.regiao.width * b.regiao.height).reversed());
+        if (maiores.size() > maxRegioes) {
+            maiores = maiores.subList(0, maxRegioes);
+        }
+
+        long areaTotal = 0;
+        for (Bloco bloco : maiores) {
+            areaTotal += (long) bloco.regiao.width * bloco.regiao.height;
+        }
+        if (maiores.isEmpty() || areaTotal > COBERTURA_MAXIMA * imagem.getLargura() * imagem.getAltura()) {
+            return List.of();
+        }
+
+        maiores.sort(Comparator.comparingInt((Bloco b) -> b.regiao.y).thenComparingInt(b -> b.regiao.x));
+        List<Recorte> recortes = new ArrayList<>(maiores.size());
+        for (Bloco bloco : maiores) {
+            recortes.add(recortar(imagem, bloco.regiao, bloco.alturaLinha));
+        }
+        return recortes;
+    }
+
+    /**
+     * Escala que leva a altura-x estimada ao alvo, limitada para não ampliar ruído nem passar do
+     * lado máximo; o DPI informado acompanha a escala efetivamente aplicada.
+     */
+    private Recorte recortar(ImagemCinza imagem, Rectangle regiao, int alturaLinha) {
+        double alturaX = Math.max(1.0, alturaLinha * PROPORCAO_ALTURA_X);
+        double escala = Math.max(ESCALA_MINIMA, Math.min(ESCALA_MAXIMA, alturaXAlvo / alturaX));
+        escala = Math.min(escala, ladoMaximo / (double) Math.max(regiao.width, regiao.height));
+        int dpi = Math.max(DPI_MINIMO, (int) Math.round(DPI_REFERENCIA * alturaX * escala / alturaXAlvo));
+        return escalar(imagem, regiao, escala, dpi);
+    }
+
+    private Recorte escalar(ImagemCinza imagem, Rectangle regiao, double escala, int dpi) {
+        ImagemCinza recorte = regiao.width == imagem.getLargura() && regiao.height == imagem.getAltura()
+                ? imagem
+                : ImagemCinza.deImagem(imagem.getImagem().getSubimage(regiao.x, regiao.y, regiao.width, regiao.height));
+        // Quase na escala certa: reamostrar custaria mais do que ajuda
+        if (Math.abs(escala - 1.0) < 0.1) {
+            return new Recorte(recorte, 1.0, dpi == 0 ? 0 : Math.max(DPI_MINIMO, (int) Math.round(dpi / escala)));
+        }
+
+        // Redução grande: média de blocos primeiro (sem serrilhado), o resto com interpolação
+        int fator = escala < 0.5 ? (int) (1 / escala) : 1;
+        ImagemCinza base = recorte.reduzirPorFator(fator);
+        int largura = Math.max(1, (int) Math.round(recorte.getLargura() * escala));
+        int altura = Math.max(1, (int) Math.round(recorte.getAltura() * escala));
+        if (base.getLargura() == largura && base.getAltura() == altura) {
+            return new Recorte(base, escala, dpi);
+        }
+
+        BufferedImage destino = new BufferedImage(largura, altura, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = destino.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.drawImage(base.getImagem(), 0, 0, largura, altura, null);
+        g.dispose();
+        return new Recorte(ImagemCinza.deImagem(destino), escala, dpi);
+    }
+
+    /**
+     * Blocos de texto (em coordenadas da imagem informada, já com margem), cada um com a altura
+     * das suas linhas. A busca roda numa versão reduzida da foto.
+     */
+    private List<Bloco> localizarBlocos(ImagemCinza imagem) {
+        ImagemCinza reduzida = imagem.reduzir(LADO_DETECCAO);
+        int fator = imagem.fatorReducao(LADO_DETECCAO);
+        int largura = reduzida.getLargura();
+        int altura = reduzida.getAltura();
+        byte[] px = reduzida.getPixels();
+
+        // 1. Bordas: pixels com gradiente forte (contorno das letras)
+        boolean[] mascara = new boolean[largura * altura];
+        for (int y = 0; y < altura - 1; y++) {
+            int linha = y * largura;
+            for (int x = 0; x < largura - 1; x++) {
+                int p = px[linha + x] & 0xFF;
+                int gradiente = Math.abs(p - (px[linha + x + 1] & 0xFF)) + Math.abs(p - (px[linha + largura + x] & 0xFF));
+                mascara[linha + x] = gradiente > LIMIAR_GRADIENTE;
+            }
+        }
+
+        // 2. Borra na horizontal (RLSA) para juntar letras da mesma linha em um bloco
+        borrar(mascara, largura, altura, Math.max(4, largura / 60), true);
+        borrar(mascara, largura, altura, 3, false);
+
+        // 3. Componentes conexos -> caixas candidatas, levadas de volta à escala da imagem
+        List<Bloco> blocos = componentes(mascara, largura, altura);
+        Rectangle limites = new Rectangle(0, 0, largura, altura);
+        Rectangle limitesOriginais = new Rectangle(0, 0, imagem.getLargura(), imagem.getAltura());
+        for (Bloco bloco : blocos) {
+            Rectangle caixa = bloco.regiao;
+            // Margem para não cortar ascendentes/descendentes
+            int margem = Math.max(2, caixa.height / 4);
+            Rectangle expandida = new Rectangle(caixa.x - margem, caixa.y - margem, caixa.width + 2 * margem, caixa.height + 2 * margem)
+                    .intersection(limites);
+            bloco.regiao = new Rectangle(expandida.x * fator, expandida.y * fator, expandida.width * fator, expandida.height * fator)
+                    .intersection(limitesOriginais);
+            bloco.alturaLinha *= fator;
+        }
+        return blocos;
+    }
+
+    private void borrar(boolean[] mascara, int largura, int altura, int lacunaMaxima, boolean horizontal) {
+        int linhas = horizontal ? altura : largura;
+        int colunas = horizontal ? largura : altura;
+        for (int i = 0; i < linhas; i++) {
+            int ultimo = -1;
+            for (int j = 0; j < colunas; j++) {
+                int indice = horizontal ? i * largura + j : j * largura + i;
+                if (!mascara[indice]) continue;
+                if (ultimo >= 0 && j - ultimo > 1 && j - ultimo <= lacunaMaxima) {
+                    for (int k = ultimo + 1; k < j; k++) {
+                        mascara[horizontal ? i * largura + k : k * largura + i] = true;
+                    }
+                }
+                ultimo = j;
+            }
+        }
+    }
+
+    private List<Bloco> componentes(boolean[] mascara, int largura, int altura) {
+        List<Bloco> blocos = new ArrayList<>();
+        // Rótulo de cada pixel (0 = ainda não visitado), usado depois para medir as linhas
+        int[] rotulo = new int[mascara.length];
+        int[] pilha = new int[mascara.length];
+        int proximoRotulo = 0;
+
+        for (int inicio = 0; inicio < mascara.length; inicio++) {
+            if (!mascara[inicio] || rotulo[inicio] != 0) continue;
+
+            int atualRotulo = ++proximoRotulo;
+            int topoPilha = 0;
+            pilha[topoPilha++] = inicio;
+            rotulo[inicio] = atualRotulo;
+            int minX = largura, minY = altura, maxX = -1, maxY = -1, pixels = 0;
+
+            while (topoPilha > 0) {
+                int atual = pilha[--topoPilha];
+                int x = atual % largura;
+                int y = atual / largura;
+                pixels++;
+                minX = Math.min(minX, x);
+                maxX = Math.max(maxX, x);
+                minY = Math.min(minY, y);
+                maxY = Math.max(maxY, y);
+
+                if (x > 0 && mascara[atual - 1] && rotulo[atual - 1] == 0) { rotulo[atual - 1] = atualRotulo; pilha[topoPilha++] = atual - 1; }
+                if (x < largura - 1 && mascara[atual + 1] && rotulo[atual + 1] == 0) { rotulo[atual + 1] = atualRotulo; pilha[topoPilha++] = atual + 1; }
+                if (y > 0 && mascara[atual - largura] && rotulo[atual - largura] == 0) { rotulo[atual - largura] = atualRotulo; pilha[topoPilha++] = atual - largura; }
+                if (y < altura - 1 && mascara[atual + largura] && rotulo[atual + largura] == 0) { rotulo[atual + largura] = atualRotulo; pilha[topoPilha++] = atual + largura; }
+            }
+
+            int w = maxX - minX + 1;
+            int h = maxY - minY + 1;
+            // Linhas de texto: mais largas que altas, nem minúsculas nem ocupando metade da foto, razoavelmente densas
+            boolean pareceTexto = w >= 16 && h >= 5 && h <= altura / 3 && w >= h * 1.2 && pixels >= 0.12 * w * h;
+            if (pareceTexto) {
+                Rectangle caixa = new Rectangle(minX, minY, w, h);
+                blocos.add(new Bloco(caixa, alturaLinha(rotulo, largura, caixa, atualRotulo)));
+            }
+        }
+        return blocos;
+    }
+
+    /**
+     * Altura típica de uma linha do bloco pela projeção horizontal do componente: faixas de linhas
+     * de pixels ocupadas, separadas pelas quase vazias entre uma linha de texto e outra. Blocos com
+     * várias linhas continuam medindo uma linha só, ao contrário da altura da caixa.
+     */
+    private int alturaLinha(int[] rotulo, int largura, Rectangle caixa, int alvo) {
+        int[] ocupacao = new int[caixa.height];
+        int maiorOcupacao = 0;
+        for (int y = 0; y < caixa.height; y++) {
+            int inicio = (caixa.y + y) * largura + caixa.x;
+            for (int x = 0; x < caixa.width; x++) {
+                if (rotulo[inicio + x] == alvo) ocupacao[y]++;
+            }
+            maiorOcupacao = Math.max(maiorOcupacao, ocupacao[y]);
+        }
+
+        int limiar = Math.max(1, maiorOcupacao / 10);
+        int[] faixas = new int[(caixa.height + 1) / 2];
+        int quantidade = 0;
+        int corrida = 0;
+        for (int y = 0; y <= caixa.height; y++) {
+            if (y < caixa.height && ocupacao[y] >= limiar) {
+                corrida++;
+            } else if (corrida > 0) {
+                faixas[quantidade++] = corrida;
+                corrida = 0;
+            }
+        }
+        if (quantidade == 0) {
+            return caixa.height;
+        }
+        Arrays.sort(faixas, 0, quantidade);
+        // O gradiente alarga o contorno em cerca de um pixel
+        return Math.max(1, faixas[quantidade / 2] - 1);
+    }
+
+    private static final class Bloco {
+        private Rectangle regiao;
+        private int alturaLinha;
+
+        Bloco(Rectangle regiao, int alturaLinha) {
+            this.regiao = regiao;
+            this.alturaLinha = alturaLinha;
+        }
+    }
+
+    /** Trecho da foto já na escala de leitura, com a resolução a informar ao Tesseract (0 = padrão do motor). */
+    public static final class Recorte {
+        private final ImagemCinza imagem;
+        private final double escala;
+        private final int dpi;
+
+        Recorte(ImagemCinza imagem, double escala, int dpi) {
+            this.imagem = imagem;
+            this.escala = escala;
+            this.dpi = dpi;
+        }
+
+        public ImagemCinza getImagem() {
+            return imagem;
+        }
+
+        /** Fator aplicado sobre a foto original (1 = sem reamostragem). */
+        public double getEscala() {
+            return escala;
+        }
+
+        public int getDpi() {
+            return dpi;
+        }
+    }
+}
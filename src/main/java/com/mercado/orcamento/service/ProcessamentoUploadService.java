@@ -0,0 +1,70 @@
+package com.mercado.orcamento.service;
+
+import com.mercado.orcamento.dto.StatusJobOcr;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Processamento antecipado das fotos enviadas: assim que o upload termina, o OCR
+ * (código de barras, texto e produto do catálogo) entra na fila de jobs e a miniatura
+ * entra no pool do {@link MiniaturaService}, enquanto o navegador ainda está seguindo o redirect.
+ *
+ * As duas filas são limitadas. Se estiverem cheias, o upload não espera nem falha:
+ * a foto fica na galeria e é processada sob demanda, como antes.
+ */
+@Service
+public class ProcessamentoUploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessamentoUploadService.class);
+
+    private final String CAMINHO_FOTOS = "C:\\Users\\Borges\\Downloads\\MERCADO_FOTOS";
+
+    private final OcrJobService ocrJobService;
+    private final MiniaturaService miniaturaService;
+
+    public ProcessamentoUploadService(OcrJobService ocrJobService, MiniaturaService miniaturaService) {
+        this.ocrJobService = ocrJobService;
+        this.miniaturaService = miniaturaService;
+    }
+
+    /**
+     * Agenda o processamento da foto recém-gravada na galeria.
+     *
+     * @param hash SHA-256 já calculado no upload (evita reler o arquivo); pode ser null
+     * @return o que entrou nas filas (o que ficou de fora é feito sob demanda)
+     */
+    public Agendamento processar(String nomeArquivo, String hash) {
+        Path original = Paths.get(CAMINHO_FOTOS).resolve(nomeArquivo);
+        boolean miniatura = true;
+        try {
+            miniaturaService.agendarAntecipada(original).whenComplete((miniaturaGerada, erro) -> {
+                if (erro != null) {
+                    logger.warn("Nao foi possivel gerar a miniatura de {}: {}", nomeArquivo, erro.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            miniatura = false;
+            logger.debug("Fila de miniaturas cheia. {} sera reduzida no primeiro acesso", nomeArquivo);
+        }
+
+        try {
+            StatusJobOcr job = ocrJobService.submeter(nomeArquivo, hash);
+            return new Agendamento(job.getId(), miniatura);
+        } catch (RejectedExecutionException e) {
+            logger.info("Fila de OCR cheia. {} sera lida quando o usuario pedir o scan", nomeArquivo);
+            return new Agendamento(null, miniatura);
+        }
+    }
+
+    /**
+     * @param jobOcr    id do job de OCR, ou null se a fila estava cheia (o scan será feito sob demanda)
+     * @param miniatura false se a fila de miniaturas estava cheia (gerada no primeiro acesso)
+     */
+    public record Agendamento(String jobOcr, boolean miniatura) {
+    }
+}
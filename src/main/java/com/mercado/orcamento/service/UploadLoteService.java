@@ -0,0 +1,339 @@
+package com.mercado.orcamento.service;
+
+import com.mercado.orcamento.dto.FotoArmazenada;
+import com.mercado.orcamento.dto.ResumoUploadLote;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Upload em lote: várias fotos e/ou arquivos ZIP em uma única requisição.
+ * Cada foto solta é gravada em paralelo. As entradas de um ZIP são lidas em streaming, direto para
+ * um temporário em disco (sem carregar o arquivo compactado na memória), e cada entrada copiada vai
+ * para o mesmo pool calcular o hash e entrar na galeria enquanto a próxima é descompactada.
+ * As fotos novas seguem o mesmo caminho do upload simples (índice da galeria, OCR e miniatura
+ * antecipados); as já existentes são só contadas.
+ *
+ * Limites por requisição: tamanho de cada entrada, total de bytes e quantidade de entradas dos ZIPs.
+ * O que passa do limite é recusado e aparece em "erros".
+ */
+@Service
+public class UploadLoteService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadLoteService.class);
+
+    private final String CAMINHO_FOTOS = "C:\\Users\\Borges\\Downloads\\MERCADO_FOTOS";
+
+    private final ArmazenamentoFotos armazenamentoFotos;
+    private final IndiceGaleria indiceGaleria;
+    private final ProcessamentoUploadService processamentoUploadService;
+    private final ExecutorService executor;
+    private final int workers;
+    private final long tamanhoMaximoEntrada;
+    private final long tamanhoMaximoTotal;
+    private final int maxEntradas;
+
+    public UploadLoteService(ArmazenamentoFotos armazenamentoFotos, IndiceGaleria indiceGaleria,
+                             ProcessamentoUploadService processamentoUploadService,
+                             @Value("${visionmarket.upload.lote.workers:4}") int workers,
+                             @Value("${visionmarket.upload.lote.max-entrada-mb:50}") int tamanhoMaximoEntradaMb,
+                             @Value("${visionmarket.upload.lote.max-total-mb:2048}") int tamanhoMaximoTotalMb,
+                             @Value("${visionmarket.upload.lote.max-entradas:2000}") int maxEntradas) {
+        this.armazenamentoFotos = armazenamentoFotos;
+        this.indiceGaleria = indiceGaleria;
+        this.processamentoUploadService = processamentoUploadService;
+        this.workers = Math.max(1, workers);
+        this.tamanhoMaximoEntrada = Math.max(1, tamanhoMaximoEntradaMb) * 1024L * 1024L;
+        this.tamanhoMaximoTotal = Math.max(1, tamanhoMaximoTotalMb) * 1024L * 1024L;
+        this.maxEntradas = Math.max(1, maxEntradas);
+        AtomicInteger contador = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.workers, r -> {
+            Thread t = new Thread(r, "upload-lote-" + contador.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public ResumoUploadLote importar(List<MultipartFile> arquivos) {
+        long inicio = System.currentTimeMillis();
+        Resumo resumo = new Resumo();
+        Lote lote = new Lote();
+
+        // As fotos soltas vão direto para o pool; os ZIPs são lidos aqui (a descompactação é
+        // sequencial) e cada entrada já copiada para o disco vira uma tarefa do pool
+        for (MultipartFile arquivo : arquivos) {
+            if (arquivo.isEmpty()) continue;
+            String nome = ArmazenamentoFotos.nomeSeguro(arquivo.getOriginalFilename());
+            if (nome.toLowerCase().endsWith(".zip")) {
+                importarZip(arquivo, nome, resumo, lote);
+            } else if (!ehImagem(nome)) {
+                resumo.ignorada();
+            } else if (!lote.reservarBytes(arquivo.getSize())) {
+                resumo.falha(nome, "Lote maior que o limite de " + (tamanhoMaximoTotal / (1024 * 1024)) + "MB");
+            } else {
+                lote.submeter(() -> importarArquivo(arquivo, nome, resumo), null);
+            }
+        }
+        lote.aguardar();
+
+        long duracao = System.currentTimeMillis() - inicio;
+        ResumoUploadLote resultado = resumo.resultado(duracao);
+        logger.info("Upload em lote: {} foto(s), {} nova(s), {} duplicada(s), {} falha(s) em {}ms",
+                resultado.getTotal(), resultado.getNovas(), resultado.getDuplicadas(), resultado.getFalhas(), duracao);
+        return resultado;
+    }
+
+    private void importarArquivo(MultipartFile arquivo, String nome, Resumo resumo) {
+        try (InputStream conteudo = arquivo.getInputStream()) {
+            registrar(armazenamentoFotos.armazenar(conteudo, nome), resumo);
+        } catch (IOException | RuntimeException e) {
+            resumo.falha(nome, e);
+        }
+    }
+
+    private void importarZip(MultipartFile arquivo, String nomeZip, Resumo resumo, Lote lote) {
+        try (ZipInputStream zip = new ZipInputStream(arquivo.getInputStream())) {
+            ZipEntry entrada;
+            while ((entrada = zip.getNextEntry()) != null) {
+                if (entrada.isDirectory()) continue;
+                if (!lote.contarEntrada()) {
+                    resumo.falha(nomeZip, "Limite de " + maxEntradas + " entradas por lote atingido; o restante do ZIP foi ignorado");
+                    return;
+                }
+                // Só o nome do arquivo: descarta pastas internas (e "../") do ZIP
+                String nome = ArmazenamentoFotos.nomeSeguro(entrada.getName().replace('\\', '/'));
+                if (!ehImagem(nome) || nome.startsWith("._") || entrada.getName().startsWith("__MACOSX/")) {
+                    resumo.ignorada();
+                    continue;
+                }
+
+                lote.aguardarVaga(); // Poucos temporários à espera do pool por vez
+                Path temporario;
+                EntradaZip conteudo = new EntradaZip(zip, Math.min(tamanhoMaximoEntrada, lote.bytesRestantes()));
+                try {
+                    temporario = armazenamentoFotos.receber(conteudo);
+                } catch (IOException | RuntimeException e) {
+                    lote.liberarVaga();
+                    if (conteudo.lidos > lote.bytesRestantes()) {
+                        resumo.falha(nomeZip, "Lote maior que o limite de " + (tamanhoMaximoTotal / (1024 * 1024))
+                                + "MB; o restante do ZIP foi ignorado");
+                        return;
+                    }
+                    resumo.falha(nomeZip + "/" + nome, e);
+                    continue;
+                }
+                lote.reservarBytes(conteudo.lidos);
+                lote.submeter(() -> {
+                    try {
+                        registrar(armazenamentoFotos.armazenar(temporario, nome), resumo);
+                    } catch (IOException | RuntimeException e) {
+                        resumo.falha(nomeZip + "/" + nome, e);
+                    }
+                }, temporario);
+            }
+        } catch (IOException e) {
+            resumo.falha(nomeZip, e);
+        }
+    }
+
+    private void registrar(FotoArmazenada foto, Resumo resumo) {
+        if (foto.isNova()) {
+            indiceGaleria.registrar(Paths.get(CAMINHO_FOTOS).resolve(foto.getNome()));
+            ProcessamentoUploadService.Agendamento agendamento =
+                    processamentoUploadService.processar(foto.getNome(), foto.getHash());
+            resumo.agendada(agendamento);
+        }
+        resumo.armazenada(foto);
+    }
+
+    private static boolean ehImagem(String nome) {
+        String minusculo = nome.toLowerCase();
+        return minusculo.endsWith(".jpg") || minusculo.endsWith(".jpeg") || minusculo.endsWith(".png");
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        executor.shutdownNow();
+    }
+
+    /** Tarefas, bytes e entradas de uma requisição. */
+    private final class Lote {
+        private final List<Future<?>> tarefas = new ArrayList<>();
+        // Entradas de ZIP já em disco à espera do pool: o leitor para quando o pool não acompanha
+        private final Semaphore vagas = new Semaphore(workers * 2);
+        // Só a thread da requisição lê os arquivos e reserva bytes/entradas
+        private long bytes;
+        private int entradas;
+
+        boolean reservarBytes(long tamanho) {
+            if (bytes + tamanho > tamanhoMaximoTotal) return false;
+            bytes += tamanho;
+            return true;
+        }
+
+        long bytesRestantes() {
+            return tamanhoMaximoTotal - bytes;
+        }
+
+        boolean contarEntrada() {
+            return ++entradas <= maxEntradas;
+        }
+
+        void aguardarVaga() throws IOException {
+            try {
+                vagas.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Upload em lote interrompido");
+            }
+        }
+
+        void liberarVaga() {
+            vagas.release();
+        }
+
+        /** @param temporario arquivo da entrada de ZIP (ocupa uma vaga), ou null para fotos soltas */
+        void submeter(Runnable tarefa, Path temporario) {
+            try {
+                tarefas.add(executor.submit(() -> {
+                    try {
+                        tarefa.run();
+                    } finally {
+                        if (temporario != null) vagas.release();
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                // Aplicação encerrando
+                if (temporario != null) {
+                    vagas.release();
+                    try {
+                        Files.deleteIfExists(temporario);
+                    } catch (IOException ignorada) {
+                        // Temporário oculto (.upload-*.tmp), sem efeito na galeria
+                    }
+                }
+                throw e;
+            }
+        }
+
+        void aguardar() {
+            for (Future<?> tarefa : tarefas) {
+                try {
+                    tarefa.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (ExecutionException e) {
+                    // As tarefas já registram as falhas por arquivo
+                    logger.error("Falha inesperada no upload em lote: ", e.getCause());
+                }
+            }
+        }
+    }
+
+    /**
+     * Conteúdo de uma entrada do ZIP: não fecha o ZipInputStream ao ser fechado (a próxima
+     * entrada continua no mesmo stream) e recusa entradas maiores que o limite (ZIP bomb).
+     */
+    private static final class EntradaZip extends FilterInputStream {
+        private final long limite;
+        private long lidos;
+
+        private EntradaZip(InputStream zip, long limite) {
+            super(zip);
+            this.limite = limite;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) contar(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int inicio, int tamanho) throws IOException {
+            int n = super.read(buffer, inicio, tamanho);
+            if (n > 0) contar(n);
+            return n;
+        }
+
+        private void contar(int n) throws IOException {
+            lidos += n;
+            if (lidos > limite) {
+                throw new IOException("Entrada do ZIP maior que o limite de " + (limite / (1024 * 1024)) + "MB");
+            }
+        }
+
+        @Override
+        public void close() {
+            // O ZipInputStream é fechado por quem o abriu
+        }
+    }
+
+    private static final class Resumo {
+        private int total;
+        private int novas;
+        private int duplicadas;
+        private int ignoradas;
+        private int ocrNaoAgendados;
+        private int miniaturasNaoAgendadas;
+        private final List<String> arquivos = new ArrayList<>();
+        private final Map<String, String> erros = new LinkedHashMap<>();
+
+        synchronized void armazenada(FotoArmazenada foto) {
+            total++;
+            if (foto.isNova()) novas++;
+            else duplicadas++;
+            arquivos.add(foto.getNome());
+        }
+
+        synchronized void ignorada() {
+            ignoradas++;
+        }
+
+        synchronized void agendada(ProcessamentoUploadService.Agendamento agendamento) {
+            if (agendamento.jobOcr() == null) ocrNaoAgendados++;
+            if (!agendamento.miniatura()) miniaturasNaoAgendadas++;
+        }
+
+        void falha(String arquivo, Exception e) {
+            falha(arquivo, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        }
+
+        synchronized void falha(String arquivo, String motivo) {
+            total++;
+            erros.put(arquivo, motivo);
+            logger.warn("Falha no upload em lote de {}: {}", arquivo, motivo);
+        }
+
+        synchronized ResumoUploadLote resultado(long duracaoMs) {
+            return new ResumoUploadLote(total, novas, duplicadas, ignoradas, erros.size(),
+                    ocrNaoAgendados, miniaturasNaoAgendadas, new ArrayList<>(arquivos), Collections.unmodifiableMap(new LinkedHashMap<>(erros)), duracaoMs);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.mercado.orcamento.service;
+
+import com.mercado.orcamento.event.DadosOrcamentoAlteradosEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versão dos dados do orçamento (produtos, preços, lista de compras): incrementada após
+ * o commit de cada escrita do OrcamentoService. Usada pelos snapshots em memória e como
+ * ETag das APIs JSON (GET condicional).
+ */
+@Component
+public class VersaoDados {
+
+    private static final Logger logger = LoggerFactory.getLogger(VersaoDados.class);
+
+    // Diferencia ETags de execuções diferentes (a versão recomeça a cada subida)
+    private final String instancia = Long.toHexString(System.currentTimeMillis());
+    private final AtomicLong versao = new AtomicLong(1);
+
+    public long atual() {
+        return versao.get();
+    }
+
+    /** ETag forte da versão atual dos dados. */
+    public String etag() {
+        return "\"" + instancia + "-" + versao.get() + "\"";
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void aoAlterarDados(DadosOrcamentoAlteradosEvent evento) {
+        long nova = versao.incrementAndGet();
+        logger.debug("Dados alterados ({}): versao {}", evento.getOperacao(), nova);
+    }
+}
@@ -0,0 +1,183 @@
+package com.mercado.orcamento.ferramentas;
+
+import com.mercado.orcamento.service.ImagemCinza;
+import com.mercado.orcamento.service.MotorTesseract;
+import com.mercado.orcamento.service.PreProcessadorOcr;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Benchmark do pré-processamento do OCR sobre uma pasta de amostras (ferramenta de linha de
+ * comando, fora da aplicação). Depois de {@code mvn test-compile}:
+ * <pre>
+ * java -cp target/classes:target/test-classes:&lt;dependências&gt; \
+ *     com.mercado.orcamento.ferramentas.BenchmarkPreProcessamento &lt;pasta&gt; [tessdata] [idioma]
+ * </pre>
+ *
+ * Para cada foto compara o OCR da imagem inteira em resolução original com o OCR dos recortes
+ * escalados pela altura das letras: tempo de cada um e similaridade do texto. Se existir {@code <foto>.txt} ao lado da
+ * imagem, ele é usado como texto esperado (gabarito). Sem tessdata (ou se o Tesseract não carregar)
+ * mede só a etapa geométrica: tempo de normalização + detecção e megapixels entregues ao OCR.
+ * Uma amostra que falhe é contada e o benchmark segue com as demais.
+ */
+public class BenchmarkPreProcessamento {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Uso: BenchmarkPreProcessamento <pasta> [tessdata] [idioma]");
+            System.exit(2);
+        }
+        Path pasta = Paths.get(args[0]);
+        PreProcessadorOcr preProcessador = new PreProcessadorOcr(true, 30, 4000, true, 8);
+
+        MotorTesseract motor = null;
+        if (args.length > 1) {
+            try {
+                motor = new MotorTesseract(args[1], args.length > 2 ? args[2] : "eng");
+            } catch (Throwable t) {
+                String motivo = String.valueOf(t.getMessage()).lines().findFirst().orElse("");
+                System.err.println("Tesseract indisponivel (" + motivo + "); medindo so o pre-processamento");
+            }
+        }
+        try {
+            new BenchmarkPreProcessamento(preProcessador, motor).executar(pasta);
+        } finally {
+            if (motor != null) motor.close();
+        }
+    }
+
+    private final PreProcessadorOcr preProcessador;
+    private final MotorTesseract motor;
+
+    BenchmarkPreProcessamento(PreProcessadorOcr preProcessador, MotorTesseract motor) {
+        this.preProcessador = preProcessador;
+        this.motor = motor;
+    }
+
+    void executar(Path pasta) throws IOException {
+        List<Path> amostras;
+        try (Stream<Path> arquivos = Files.list(pasta)) {
+            amostras = arquivos
+                    .filter(p -> p.getFileName().toString().toLowerCase().matches(".*\\.(jpe?g|png)$"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        if (amostras.isEmpty()) {
+            System.out.println("Nenhuma imagem em " + pasta);
+            return;
+        }
+
+        long totalOriginalMs = 0;
+        long totalPreProcessadoMs = 0;
+        double totalMpOriginal = 0;
+        double totalMpOcr = 0;
+        double somaSimilaridadeOriginal = 0;
+        double somaSimilaridadePreProcessado = 0;
+        int medidas = 0;
+        int comGabarito = 0;
+        int falhas = 0;
+
+        for (Path amostra : amostras) {
+            try {
+                ImagemCinza imagem = ImagemCinza.decodificar(amostra.toFile());
+                String gabarito = lerGabarito(amostra);
+
+                long t0 = System.nanoTime();
+                String original = motor != null ? motor.reconhecer(imagem) : null;
+                long t1 = System.nanoTime();
+                List<PreProcessadorOcr.Recorte> regioes = preProcessador.preparar(imagem);
+                String preProcessado = motor != null ? motor.reconhecer(regioes) : null;
+                long t2 = System.nanoTime();
+
+                long msOriginal = (t1 - t0) / 1_000_000;
+                long msPre = (t2 - t1) / 1_000_000;
+                double mpOriginal = megapixels(imagem.getLargura(), imagem.getAltura());
+                double mpOcr = regioes.stream()
+                        .mapToDouble(r -> megapixels(r.getImagem().getLargura(), r.getImagem().getAltura()))
+                        .sum();
+                totalOriginalMs += msOriginal;
+                totalPreProcessadoMs += msPre;
+                totalMpOriginal += mpOriginal;
+                totalMpOcr += mpOcr;
+                medidas++;
+
+                if (motor == null) {
+                    System.out.printf("%s: pre-processamento %dms, %d regiao(oes), OCR sobre %.2f MP (original %.2f MP)%n",
+                            amostra.getFileName(), msPre, regioes.size(), mpOcr, mpOriginal);
+                } else if (gabarito != null) {
+                    double simOriginal = similaridade(original, gabarito);
+                    double simPre = similaridade(preProcessado, gabarito);
+                    somaSimilaridadeOriginal += simOriginal;
+                    somaSimilaridadePreProcessado += simPre;
+                    comGabarito++;
+                    System.out.printf("%s: original %dms (acerto %s%%) | pre-processado %dms, %d regiao(oes) (acerto %s%%)%n",
+                            amostra.getFileName(), msOriginal, pct(simOriginal), msPre, regioes.size(), pct(simPre));
+                } else {
+                    System.out.printf("%s: original %dms | pre-processado %dms, %d regiao(oes) | concordancia %s%%%n",
+                            amostra.getFileName(), msOriginal, msPre, regioes.size(), pct(similaridade(preProcessado, original)));
+                }
+            } catch (IOException | RuntimeException e) {
+                falhas++;
+                System.out.println(amostra.getFileName() + ": FALHA " + e.getClass().getSimpleName() + ": " + e.getMessage());
+            }
+        }
+
+        System.out.printf("Amostras: %d medida(s), %d falha(s) (%s)%n", medidas, falhas, preProcessador.getAssinatura());
+        if (medidas == 0) return;
+        System.out.printf("Entrada do OCR: media %.2f MP -> %.2f MP%n", totalMpOriginal / medidas, totalMpOcr / medidas);
+        if (motor == null) {
+            System.out.printf("Pre-processamento: media %dms por foto%n", totalPreProcessadoMs / medidas);
+            return;
+        }
+        double reducao = totalOriginalMs > 0 ? 100.0 * (totalOriginalMs - totalPreProcessadoMs) / totalOriginalMs : 0;
+        System.out.printf("Tempo medio: original %dms, pre-processado %dms (%.1f%% mais rapido)%n",
+                totalOriginalMs / medidas, totalPreProcessadoMs / medidas, reducao);
+        if (comGabarito > 0) {
+            System.out.printf("Acerto medio: original %s%%, pre-processado %s%% (%d amostras com gabarito)%n",
+                    pct(somaSimilaridadeOriginal / comGabarito), pct(somaSimilaridadePreProcessado / comGabarito), comGabarito);
+        }
+    }
+
+    private static String lerGabarito(Path amostra) throws IOException {
+        Path gabarito = amostra.resolveSibling(amostra.getFileName() + ".txt");
+        return Files.exists(gabarito) ? Files.readString(gabarito, StandardCharsets.UTF_8) : null;
+    }
+
+    private static double megapixels(int largura, int altura) {
+        return (double) largura * altura / 1_000_000;
+    }
+
+    private static String pct(double valor) {
+        return String.format("%.1f", valor * 100);
+    }
+
+    /** 1 - distância de edição normalizada, ignorando caixa e espaços repetidos. */
+    private static double similaridade(String a, String b) {
+        String s1 = a.toUpperCase().replaceAll("\\s+", " ").trim();
+        String s2 = b.toUpperCase().replaceAll("\\s+", " ").trim();
+        int maior = Math.max(s1.length(), s2.length());
+        if (maior == 0) return 1.0;
+
+        int[] anterior = new int[s2.length() + 1];
+        int[] atual = new int[s2.length() + 1];
+        for (int j = 0; j <= s2.length(); j++) anterior[j] = j;
+        for (int i = 1; i <= s1.length(); i++) {
+            atual[0] = i;
+            for (int j = 1; j <= s2.length(); j++) {
+                int custo = s1.charAt(i - 1) == s2.charAt(j - 1) ? 0 : 1;
+                atual[j] = Math.min(Math.min(anterior[j] + 1, atual[j - 1] + 1), anterior[j - 1] + custo);
+            }
+            int[] troca = anterior;
+            anterior = atual;
+            atual = troca;
+        }
+        return 1.0 - (double) anterior[s2.length()] / maior;
+    }
+}
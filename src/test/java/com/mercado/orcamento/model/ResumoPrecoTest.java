@@ -0,0 +1,71 @@
+package com.mercado.orcamento.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A consolidação junta agregados do mesmo período gerados em rodadas diferentes ({@link ResumoPreco#mesclar});
+ * o resultado tem de ser o mesmo de acumular todos os registros de uma vez.
+ */
+class ResumoPrecoTest {
+
+    private static final LocalDateTime BASE = LocalDate.of(2026, 10, 5).atStartOfDay();
+
+    @Test
+    void mesclarEquivaleAAcumularTudo() {
+        Random aleatorio = new Random(20261018L);
+        for (int rodada = 0; rodada < 1000; rodada++) {
+            int quantidade = aleatorio.nextInt(20);
+            List<BigDecimal> valores = new ArrayList<>();
+            List<LocalDateTime> datas = new ArrayList<>();
+            for (int i = 0; i < quantidade; i++) {
+                valores.add(BigDecimal.valueOf(100 + aleatorio.nextInt(2000), 2));
+                // Poucos horários distintos: empates de data e registros fora de ordem entre as rodadas
+                datas.add(BASE.plusHours(aleatorio.nextInt(6)));
+            }
+            int corte = quantidade == 0 ? 0 : aleatorio.nextInt(quantidade + 1);
+
+            ResumoPreco tudo = novo();
+            ResumoPreco primeiraRodada = novo();
+            ResumoPreco segundaRodada = novo();
+            for (int i = 0; i < quantidade; i++) {
+                tudo.acumular(valores.get(i), datas.get(i));
+                (i < corte ? primeiraRodada : segundaRodada).acumular(valores.get(i), datas.get(i));
+            }
+            primeiraRodada.mesclar(segundaRodada);
+
+            assertThat(primeiraRodada.getQuantidade()).isEqualTo(tudo.getQuantidade());
+            assertThat(primeiraRodada.getSoma()).isEqualByComparingTo(tudo.getSoma());
+            assertThat(primeiraRodada.getMinimo()).isEqualTo(tudo.getMinimo());
+            assertThat(primeiraRodada.getMaximo()).isEqualTo(tudo.getMaximo());
+            assertThat(primeiraRodada.getUltimo()).isEqualTo(tudo.getUltimo());
+            assertThat(primeiraRodada.getDataUltimo()).isEqualTo(tudo.getDataUltimo());
+        }
+    }
+
+    @Test
+    void registroMaisRecenteVenceMesmoSeConsolidadoAntes() {
+        ResumoPreco primeiraRodada = novo();
+        primeiraRodada.acumular(new BigDecimal("5.00"), BASE.plusDays(2));
+        ResumoPreco segundaRodada = novo();
+        segundaRodada.acumular(new BigDecimal("3.00"), BASE.plusDays(1)); // Chegou atrasado
+
+        primeiraRodada.mesclar(segundaRodada);
+
+        assertThat(primeiraRodada.getUltimo()).isEqualByComparingTo("5.00");
+        assertThat(primeiraRodada.getMinimo()).isEqualByComparingTo("3.00");
+        assertThat(primeiraRodada.getQuantidade()).isEqualTo(2);
+    }
+
+    private static ResumoPreco novo() {
+        return new ResumoPreco(null, Mercado.COOVABRA, TipoPreco.VAREJO, Granularidade.SEMANA, BASE.toLocalDate());
+    }
+}
@@ -0,0 +1,177 @@
+package com.mercado.orcamento.service;
+
+import com.mercado.orcamento.dto.ResumoConsolidacaoHistorico;
+import com.mercado.orcamento.model.ConsolidacaoHistorico;
+import com.mercado.orcamento.model.Granularidade;
+import com.mercado.orcamento.model.Mercado;
+import com.mercado.orcamento.model.Produto;
+import com.mercado.orcamento.model.ResumoPreco;
+import com.mercado.orcamento.model.TipoPreco;
+import com.mercado.orcamento.repository.ConsolidacaoHistoricoRepository;
+import com.mercado.orcamento.repository.ProdutoRepository;
+import com.mercado.orcamento.repository.RegistroPrecoRepository;
+import com.mercado.orcamento.repository.ResumoPrecoRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Janelas semanais, marca d'água e retenção da {@link ConsolidacaoHistoricoService}, com os
+ * repositórios simulados.
+ */
+class ConsolidacaoHistoricoServiceTest {
+
+    private static final long MINUTOS_POR_DIA = 24 * 60;
+
+    private final RegistroPrecoRepository registroPrecoRepository = mock(RegistroPrecoRepository.class);
+    private final ResumoPrecoRepository resumoPrecoRepository = mock(ResumoPrecoRepository.class);
+    private final ConsolidacaoHistoricoRepository consolidacaoRepository = mock(ConsolidacaoHistoricoRepository.class);
+    private final ProdutoRepository produtoRepository = mock(ProdutoRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    // Valores de consolidadoAte na ordem em que a marca foi gravada
+    private final List<LocalDateTime> marcas = new ArrayList<>();
+    private ConsolidacaoHistorico estado;
+
+    @BeforeEach
+    void repositorios() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(consolidacaoRepository.findById(ConsolidacaoHistorico.ID)).thenAnswer(i -> Optional.ofNullable(estado));
+        when(consolidacaoRepository.save(any())).thenAnswer(i -> {
+            estado = i.getArgument(0);
+            marcas.add(estado.getConsolidadoAte());
+            return estado;
+        });
+        when(produtoRepository.getReferenceById(any())).thenAnswer(i -> {
+            Produto produto = new Produto();
+            produto.setId(i.getArgument(0));
+            return produto;
+        });
+    }
+
+    @Test
+    void retencaoNuncaApagaAlemDaMarca() {
+        // Atraso maior que a retenção: a marca fica antes do limite de 180 dias
+        LocalDateTime antes = LocalDateTime.now();
+        ResumoConsolidacaoHistorico resumo = servico(200 * MINUTOS_POR_DIA, 180).consolidar();
+
+        ArgumentCaptor<LocalDateTime> apagarAntes = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(registroPrecoRepository).deleteAnteriores(apagarAntes.capture());
+        assertThat(apagarAntes.getValue()).isEqualTo(resumo.getConsolidadoAte());
+        assertThat(apagarAntes.getValue()).isBefore(antes.minusDays(199));
+        assertThat(marcas).containsExactly(resumo.getConsolidadoAte());
+    }
+
+    @Test
+    void retencaoUsaOLimiteQuandoAMarcaEstaAdiante() {
+        servico(5, 180).consolidar();
+
+        verify(registroPrecoRepository).deleteAnteriores(LocalDate.now().minusDays(180).atStartOfDay());
+    }
+
+    @Test
+    void marcaAdianteDoLimiteNaoRecua() {
+        estado = new ConsolidacaoHistorico(LocalDateTime.now().plusHours(1));
+        LocalDateTime marca = estado.getConsolidadoAte();
+
+        ResumoConsolidacaoHistorico resumo = servico(5, 0).consolidar();
+
+        assertThat(resumo.getConsolidadoAte()).isEqualTo(marca);
+        assertThat(marcas).containsExactly(marca);
+        verify(registroPrecoRepository, never()).findParaConsolidacao(any(), any());
+        verify(registroPrecoRepository, never()).deleteAnteriores(any());
+    }
+
+    @Test
+    void janelasSemanaisAvancamAMarcaEMesclamAgregadosExistentes() {
+        LocalDate segunda = Granularidade.SEMANA.inicio(LocalDate.now().minusWeeks(4));
+        LocalDateTime semana1 = segunda.atStartOfDay();
+        LocalDateTime semana2 = semana1.plusWeeks(1);
+        LocalDateTime semana3 = semana1.plusWeeks(2);
+        estado = new ConsolidacaoHistorico(semana1);
+
+        // Dois registros na primeira semana, um na segunda; nada depois
+        when(registroPrecoRepository.findDatasDesde(any(), any(Limit.class))).thenAnswer(i -> {
+            LocalDateTime desde = i.getArgument(0);
+            if (desde.equals(semana1)) return List.of(semana1.plusDays(1).plusHours(10));
+            if (desde.equals(semana2)) return List.of(semana2.plusDays(2));
+            return List.of();
+        });
+        when(registroPrecoRepository.findParaConsolidacao(semana1.plusDays(1).plusHours(10), semana2)).thenReturn(List.of(
+                registro(1L, "5.00", semana1.plusDays(1).plusHours(10)),
+                registro(1L, "4.00", semana1.plusDays(2))));
+        when(registroPrecoRepository.findParaConsolidacao(semana2.plusDays(2), semana3)).thenReturn(List.<Object[]>of(
+                registro(1L, "3.00", semana2.plusDays(2))));
+
+        // Agregado semanal já gravado numa execução anterior, com um registro mais antigo
+        ResumoPreco existente = new ResumoPreco(produto(1L), Mercado.COOVABRA, TipoPreco.VAREJO, Granularidade.SEMANA, segunda);
+        existente.acumular(new BigDecimal("9.00"), semana1);
+        when(resumoPrecoRepository.findParaConsolidacao(eq(Granularidade.SEMANA), eq(segunda), anyCollection()))
+                .thenReturn(List.of(existente));
+
+        List<ResumoPreco> gravados = new ArrayList<>();
+        when(resumoPrecoRepository.saveAll(any())).thenAnswer(i -> {
+            gravados.addAll((Collection<ResumoPreco>) i.getArgument(0));
+            return List.of();
+        });
+
+        ResumoConsolidacaoHistorico resumo = servico(5, 0).consolidar();
+
+        assertThat(resumo.getRegistrosConsolidados()).isEqualTo(3);
+        // Uma marca por janela e a final no limite
+        assertThat(marcas).hasSize(3);
+        assertThat(marcas.subList(0, 2)).containsExactly(semana2, semana3);
+        assertThat(marcas.get(2)).isEqualTo(resumo.getConsolidadoAte()).isAfter(semana3);
+
+        // O existente recebe a primeira janela em vez de um segundo agregado da mesma semana
+        assertThat(existente.getQuantidade()).isEqualTo(3);
+        assertThat(existente.getMinimo()).isEqualByComparingTo("4.00");
+        assertThat(existente.getMaximo()).isEqualByComparingTo("9.00");
+        assertThat(existente.getUltimo()).isEqualByComparingTo("4.00");
+        assertThat(gravados)
+                .filteredOn(rp -> rp.getGranularidade() == Granularidade.SEMANA)
+                .extracting(ResumoPreco::getInicio)
+                .containsExactly(segunda.plusWeeks(1));
+        assertThat(gravados)
+                .filteredOn(rp -> rp.getGranularidade() == Granularidade.DIA)
+                .extracting(ResumoPreco::getInicio)
+                .containsExactlyInAnyOrder(segunda.plusDays(1), segunda.plusDays(2), segunda.plusWeeks(1).plusDays(2));
+        assertThat(gravados).hasSize((int) resumo.getResumosGravados());
+    }
+
+    private ConsolidacaoHistoricoService servico(long atrasoMinutos, int retencaoDias) {
+        return new ConsolidacaoHistoricoService(registroPrecoRepository, resumoPrecoRepository, consolidacaoRepository,
+                produtoRepository, transactionManager, mock(EntityManager.class), 0, atrasoMinutos, retencaoDias, 0);
+    }
+
+    private static Object[] registro(Long produtoId, String valor, LocalDateTime data) {
+        return new Object[]{produtoId, Mercado.COOVABRA, TipoPreco.VAREJO, new BigDecimal(valor), data};
+    }
+
+    private static Produto produto(Long id) {
+        Produto produto = new Produto();
+        produto.setId(id);
+        return produto;
+    }
+}
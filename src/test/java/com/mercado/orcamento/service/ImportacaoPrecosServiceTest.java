@@ -0,0 +1,38 @@
+package com.mercado.orcamento.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImportacaoPrecosServiceTest {
+
+    @Test
+    void valoresSemAmbiguidadeSaemComDuasCasas() {
+        assertThat(ImportacaoPrecosService.valor("10")).isEqualTo("10.00");
+        assertThat(ImportacaoPrecosService.valor("10.5")).isEqualTo("10.50");
+        assertThat(ImportacaoPrecosService.valor("10,50")).isEqualTo("10.50");
+        assertThat(ImportacaoPrecosService.valor(" R$ 7,9 ")).isEqualTo("7.90");
+        assertThat(ImportacaoPrecosService.valor("1.234,56")).isEqualTo("1234.56");
+        assertThat(ImportacaoPrecosService.valor("12.345.678,9")).isEqualTo("12345678.90");
+    }
+
+    @Test
+    void valoresAmbiguosSaoRejeitados() {
+        assertThat(ImportacaoPrecosService.valor("1,234.56")).isNull(); // Milhar com vírgula
+        assertThat(ImportacaoPrecosService.valor("10.500")).isNull();   // 10,5 ou 10500?
+        assertThat(ImportacaoPrecosService.valor("1,234")).isNull();    // 1,234 ou 1234?
+        assertThat(ImportacaoPrecosService.valor("1.234")).isNull();
+        assertThat(ImportacaoPrecosService.valor("10.555")).isNull();   // Mais de 2 casas
+        assertThat(ImportacaoPrecosService.valor("1.23.4,00")).isNull();
+        assertThat(ImportacaoPrecosService.valor("10,5,0")).isNull();
+    }
+
+    @Test
+    void valoresInvalidos() {
+        assertThat(ImportacaoPrecosService.valor(null)).isNull();
+        assertThat(ImportacaoPrecosService.valor("")).isNull();
+        assertThat(ImportacaoPrecosService.valor("0,00")).isNull();
+        assertThat(ImportacaoPrecosService.valor("-5,00")).isNull();
+        assertThat(ImportacaoPrecosService.valor("abc")).isNull();
+    }
+}
@@ -0,0 +1,63 @@
+package com.mercado.orcamento.service;
+
+import com.mercado.orcamento.event.ProdutoAlteradoEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IndiceNomesProdutosTest {
+
+    private IndiceNomesProdutos indice;
+
+    @BeforeEach
+    void catalogo() {
+        indice = new IndiceNomesProdutos(null);
+        salvar(10L, "Arroz Tio João");
+        salvar(11L, "ARROZ TIO JOAO");
+        salvar(20L, "Café Pilão 500g");
+        salvar(30L, "Feijão Carioca");
+        salvar(31L, "Feijão Preto");
+    }
+
+    @Test
+    void nomeIgualIgnorandoAcentoCaixaEEspacos() {
+        assertThat(indice.buscar("  arroz   tio joao ")).contains(10L); // Empate: menor id
+        assertThat(indice.buscar("CAFE PILAO 500G")).contains(20L);
+    }
+
+    @Test
+    void nomeDoCatalogoContidoNaBusca() {
+        assertThat(indice.buscar("ARROZ TIO JOAO 5KG")).contains(10L);
+        assertThat(indice.buscar("OFERTA FEIJAO PRETO")).contains(31L);
+    }
+
+    @Test
+    void buscaContidaNoNomeAPartirDeUmaPalavra() {
+        assertThat(indice.buscar("CAFE PIL")).contains(20L);
+        assertThat(indice.buscar("PILAO")).contains(20L);
+        assertThat(indice.buscar("FEIJAO")).contains(30L); // Dois candidatos: menor id
+    }
+
+    @Test
+    void trechoNoMeioDaPalavraNaoCasa() {
+        assertThat(indice.buscar("ROZ")).isEmpty();
+        assertThat(indice.buscar("CAFE LAO")).isEmpty();
+    }
+
+    @Test
+    void acompanhaRenomeacaoERemocao() {
+        salvar(20L, "Café Melitta 500g");
+        assertThat(indice.buscar("CAFE PILAO")).isEmpty();
+        assertThat(indice.buscar("CAFE MELITTA")).contains(20L);
+
+        indice.aoAlterarProduto(ProdutoAlteradoEvent.removido(10L));
+        assertThat(indice.buscar("ARROZ TIO JOAO")).contains(11L);
+        indice.aoAlterarProduto(ProdutoAlteradoEvent.removido(11L));
+        assertThat(indice.buscar("ARROZ")).isEmpty();
+    }
+
+    private void salvar(Long id, String nome) {
+        indice.aoAlterarProduto(ProdutoAlteradoEvent.salvo(id, nome));
+    }
+}
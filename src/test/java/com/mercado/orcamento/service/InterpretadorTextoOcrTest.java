@@ -0,0 +1,175 @@
+package com.mercado.orcamento.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compara o {@link InterpretadorTextoOcr} com o pipeline de expressões regulares que ele substituiu
+ * (copiado abaixo do OcrService anterior, sem alterações): preço, peso e linhas de descrição devem
+ * sair idênticos.
+ */
+class InterpretadorTextoOcrTest {
+
+    private static final String[] AMOSTRAS = {
+            "ARROZ TIO JOAO\nTIPO 1 5kg\nR$ 24,90\nCOD 123456",
+            "OFERTA\nFEIJAO CARIOCA KICALDO 1 KG\nDe 9,99 por 7,49\nEAN 7891234567890",
+            "Leite Ninho Integral\t400g\nR$19.90 UN\nClube: 17,90",
+            "CAFE PILAO\r\n500 g\r\nATACADO 3 UN R$ 15,49\r\nVAREJO R$ 16,99\r\n",
+            "AÇÚCAR UNIÃO REFINADO 1kg\n  4,29  \nCartão 3,99",
+            "Sabão em pó OMO\tLavagem\tPerfeita 800 G\n12,90",
+            "DETERGENTE YPÊ  NEUTRO\n500ml\nQTD 24\n1,99",
+            "CERVEJA   BRAHMA\tCHOPP\nLATA 350\nml\n3,49 UND",
+            "ﬁlé de frango sassami\n1,5 kg\n29,90",
+            "Straße 2l\n\u000BREFRI\u000BCOLA\fZERO\n7,99",
+            "_COD_ BOLACHA\nSKU-998\nMARIA 200g\n   2,79",
+            "",
+            "\n\n\n",
+            "12345678\n5,00",
+    };
+
+    @Test
+    void amostrasDeEtiquetaIguaisAoPipelineAnterior() {
+        for (String amostra : AMOSTRAS) {
+            conferir(amostra);
+        }
+    }
+
+    @Test
+    void textoAleatorioIgualAoPipelineAnterior() {
+        // Alfabeto de etiqueta com as bordas que separam as duas implementações: \s x Character.isWhitespace,
+        // tab isolado, \r, maiúsculas que mudam de tamanho, marcas combinantes e pares substitutos.
+        // Fica de fora só U+0085/U+2028/U+2029 (diferença documentada no InterpretadorTextoOcr).
+        String[] pedacos = {
+                "A", "b", "K", "g", "G", "k", "m", "M", "l", "L", "x", "Z", "0", "1", "2", "5", "9",
+                ",", ".", " ", " ", "\t", "\n", "\r", "\u000B", "\f", "\u001C", " ", " ", "　",
+                "R$", "r$", "$", "-", "_", "/", "%", "ß", "ﬁ", "Ç", "ã", "́", "𝐀", "😀",
+                "COD", "EAN", "SKU", "QTD", "UN", "UND", "un", "kg", "ml", "KG", "ATAC", "CART", "OFERTA"
+        };
+        Random aleatorio = new Random(20261018L);
+        for (int n = 0; n < 100_000; n++) {
+            StringBuilder texto = new StringBuilder();
+            int tamanho = aleatorio.nextInt(40);
+            for (int i = 0; i < tamanho; i++) {
+                texto.append(pedacos[aleatorio.nextInt(pedacos.length)]);
+            }
+            conferir(texto.toString());
+        }
+    }
+
+    @Test
+    void tabIsoladoNaDescricaoEhMantido() {
+        InterpretadorTextoOcr.Candidatos candidatos = InterpretadorTextoOcr.interpretar("ARROZ\tTIO  JOAO - 5\n");
+        assertThat(candidatos.getLinhasDescricao()).containsExactly("ARROZ\tTIO JOAO 5");
+    }
+
+    private static void conferir(String texto) {
+        InterpretadorTextoOcr.Candidatos candidatos = InterpretadorTextoOcr.interpretar(texto);
+        String limpo = texto.replace("\r", "");
+        String textoLinear = limpo.replaceAll("\n", " ").trim();
+
+        assertThat(candidatos.getPreco()).as("preco de %s", visivel(texto))
+                .isEqualTo(PipelineAnterior.extrairMelhorPreco(limpo, textoLinear));
+        assertThat(candidatos.getPeso()).as("peso de %s", visivel(texto))
+                .isEqualTo(PipelineAnterior.extrairPeso(textoLinear));
+        assertThat(candidatos.getLinhasDescricao()).as("descricao de %s", visivel(texto))
+                .isEqualTo(PipelineAnterior.linhasDescricao(limpo));
+    }
+
+    private static String visivel(String texto) {
+        StringBuilder saida = new StringBuilder("\"");
+        texto.codePoints().forEach(c -> {
+            if (c >= ' ' && c < 0x7F) saida.appendCodePoint(c);
+            else saida.append(String.format("\\u%04X", c));
+        });
+        return saida.append('"').toString();
+    }
+
+    // OcrService antes do InterpretadorTextoOcr (extrairMelhorPreco, extrairPeso e normalizarLinhaProduto)
+    private static final class PipelineAnterior {
+
+        static String extrairMelhorPreco(String textoOriginal, String textoLinear) {
+            List<String> candidatos = new ArrayList<>();
+
+            for (String linha : textoOriginal.split("\n")) {
+                String linhaLimpa = linha.trim().toUpperCase();
+                if (linhaLimpa.isBlank()) {
+                    continue;
+                }
+
+                boolean linhaDePreco = linhaLimpa.contains("R$")
+                        || linhaLimpa.matches(".*\\d+[.,]\\d{2}.*")
+                        || linhaLimpa.contains("ATAC")
+                        || linhaLimpa.contains("CART")
+                        || linhaLimpa.contains("CLUBE")
+                        || linhaLimpa.contains("OFERTA");
+
+                if (linhaDePreco) {
+                    Matcher matcher = Pattern.compile("(\\d+[.,]\\d{2})").matcher(linhaLimpa);
+                    while (matcher.find()) {
+                        candidatos.add(matcher.group(1).replace(",", "."));
+                    }
+                }
+            }
+
+            if (candidatos.isEmpty()) {
+                Matcher matcherPreco = Pattern.compile("(?:R\\$\\s*)?(\\d+[.,]\\d{2})").matcher(textoLinear);
+                if (matcherPreco.find()) {
+                    return matcherPreco.group(1).replace(",", ".");
+                }
+                return null;
+            }
+
+            return candidatos.get(0);
+        }
+
+        static String extrairPeso(String textoLinear) {
+            Pattern padraoPeso = Pattern.compile("(\\d+(?:[.,]\\d+)?\\s*(?:kg|g|ml|l|litros?))", Pattern.CASE_INSENSITIVE);
+            Matcher matcherPeso = padraoPeso.matcher(textoLinear);
+            if (matcherPeso.find()) {
+                return matcherPeso.group(1).toUpperCase();
+            }
+            return null;
+        }
+
+        static List<String> linhasDescricao(String texto) {
+            List<String> linhasValidas = new ArrayList<>();
+            for (String linha : texto.split("\n")) {
+                String linhaNormalizada = normalizarLinhaProduto(linha);
+                if (linhaNormalizada == null) {
+                    continue;
+                }
+                linhasValidas.add(linhaNormalizada);
+            }
+            return linhasValidas;
+        }
+
+        static String normalizarLinhaProduto(String linha) {
+            String normalizada = linha == null ? "" : linha.trim().toUpperCase();
+            if (normalizada.length() < 3) {
+                return null;
+            }
+
+            if (normalizada.contains("R$") || normalizada.matches(".*\\d+[.,]\\d{2}.*")) {
+                return null;
+            }
+
+            if (normalizada.matches("^\\d+$") || normalizada.matches(".*\\b(COD|EAN|SKU|QTD|UN|UND)\\b.*")) {
+                return null;
+            }
+
+            normalizada = normalizada.replaceAll("[^A-Z0-9\\s]", " ").replaceAll("\\s{2,}", " ").trim();
+            if (normalizada.length() < 3) {
+                return null;
+            }
+
+            return normalizada;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.mercado.orcamento.service;
+
+import com.mercado.orcamento.dto.DadosExtraidos;
+import com.mercado.orcamento.dto.StatusLoteOcr;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * OCR ocupado no meio do lote: a foto volta para a fila e é lida depois, sem contar como falha.
+ */
+class OcrLoteServiceTest {
+
+    private final OcrService ocrService = mock(OcrService.class);
+    private final OcrExecutor ocrExecutor = mock(OcrExecutor.class);
+    private final Set<String> lidas = ConcurrentHashMap.newKeySet();
+    private OcrLoteService servico;
+
+    @AfterEach
+    void encerrar() {
+        servico.encerrar();
+    }
+
+    @Test
+    void ocupadoVoltaParaAFilaEmVezDeFalhar() throws Exception {
+        AtomicInteger chamadas = new AtomicInteger();
+        preparar(2);
+        when(ocrService.extrairDadosDaImagemEmLote(anyString(), anyString())).thenAnswer(i -> {
+            String arquivo = i.getArgument(0);
+            // Primeira leitura de cada foto: uma vez fila cheia, outra tempo esgotado
+            int n = chamadas.incrementAndGet();
+            if (n == 1) throw new RejectedExecutionException("fila cheia");
+            if (n == 2) throw new TimeoutException();
+            lidas.add("h-" + arquivo);
+            return new DadosExtraidos();
+        });
+
+        StatusLoteOcr status = aguardar(servico.iniciar(List.of("a.jpg", "b.jpg", "c.jpg")).getId());
+
+        assertThat(status.getProcessadas()).isEqualTo(3);
+        assertThat(status.getFalhas()).isZero();
+        assertThat(status.getReenvios()).isEqualTo(2);
+    }
+
+    @Test
+    void falhaDeLeituraNaoETentadaDeNovo() throws Exception {
+        preparar(2);
+        DadosExtraidos erro = new DadosExtraidos();
+        erro.setTextoBruto("Erro ao processar imagem: formato invalido");
+        when(ocrService.extrairDadosDaImagemEmLote(anyString(), anyString())).thenReturn(erro);
+
+        StatusLoteOcr status = aguardar(servico.iniciar(List.of("a.jpg")).getId());
+
+        assertThat(status.getErros()).containsEntry("a.jpg", "Erro ao processar imagem: formato invalido");
+        assertThat(status.getReenvios()).isZero();
+    }
+
+    private void preparar(int workers) {
+        when(ocrExecutor.getParalelismoLote()).thenReturn(workers);
+        when(ocrService.calcularHash(anyString())).thenAnswer(i -> "h-" + i.getArgument(0));
+        when(ocrService.jaProcessada(anyString())).thenAnswer(i -> lidas.contains(i.<String>getArgument(0)));
+        servico = new OcrLoteService(ocrService, ocrExecutor, 4);
+    }
+
+    private StatusLoteOcr aguardar(String id) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(120);
+        while (System.nanoTime() < limite) {
+            StatusLoteOcr status = servico.consultar(id).orElseThrow();
+            if (status.isFinalizado()) return status;
+            Thread.sleep(20);
+        }
+        throw new AssertionError("Lote nao terminou");
+    }
+}
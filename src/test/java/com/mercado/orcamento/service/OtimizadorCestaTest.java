@@ -0,0 +1,177 @@
+package com.mercado.orcamento.service;
+
+import com.mercado.orcamento.dto.ItemCestaDTO;
+import com.mercado.orcamento.dto.ResultadoCestaDTO;
+import com.mercado.orcamento.dto.TotalMercadoDTO;
+import com.mercado.orcamento.model.Mercado;
+import com.mercado.orcamento.model.TipoPreco;
+import com.mercado.orcamento.repository.PrecoAtualRepository;
+import com.mercado.orcamento.repository.ProdutoRepository;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Confere o {@link OtimizadorCesta} (matriz de centavos e máscaras de bits) contra um cálculo direto
+ * em BigDecimal sobre os mesmos preços.
+ */
+class OtimizadorCestaTest {
+
+    private final ProdutoRepository produtoRepository = mock(ProdutoRepository.class);
+    private final PrecoAtualRepository precoAtualRepository = mock(PrecoAtualRepository.class);
+
+    @Test
+    void cartaoSoValeNosMercadosComCartao() {
+        List<Object[]> precos = List.of(
+                preco(1L, Mercado.COOVABRA, TipoPreco.VAREJO, "10.00"),
+                preco(1L, Mercado.COOVABRA, TipoPreco.CARTAO, "7.00"),
+                preco(1L, Mercado.ATACADAO, TipoPreco.VAREJO, "9.00"),
+                preco(2L, Mercado.ATACADAO, TipoPreco.VAREJO, "5.00"),
+                preco(2L, Mercado.ATACADAO, TipoPreco.ATACADO, "4.50"));
+        OtimizadorCesta otimizador = otimizador(List.of(produto(1L, "ARROZ"), produto(2L, "FEIJAO")), precos);
+
+        // Sem cartão e só varejo: o Atacadão tem tudo por 14,00
+        ResultadoCestaDTO semCartao = otimizador.otimizar(EnumSet.of(TipoPreco.VAREJO), Set.of(), 1);
+        assertThat(semCartao.getMelhorMercado().getMercados()).containsExactly(Mercado.ATACADAO);
+        assertThat(semCartao.getMelhorMercado().getTotal()).isEqualByComparingTo("14.00");
+
+        // Com o cartão do Coovabra e dois mercados: arroz no cartão, feijão no atacado
+        ResultadoCestaDTO comCartao = otimizador.otimizar(EnumSet.of(TipoPreco.VAREJO, TipoPreco.ATACADO), Set.of(Mercado.COOVABRA), 2);
+        assertThat(comCartao.getDivisao().getTotal()).isEqualByComparingTo("11.50");
+        assertThat(comCartao.getDivisao().getItens())
+                .extracting(ItemCestaDTO::getMercado, ItemCestaDTO::getTipoPreco)
+                .containsExactly(
+                        tuple(Mercado.COOVABRA, TipoPreco.CARTAO),
+                        tuple(Mercado.ATACADAO, TipoPreco.ATACADO));
+        assertThat(comCartao.getEconomiaDivisao()).isEqualByComparingTo("2.00"); // Atacadão sozinho: 9,00 + 4,50
+        assertThat(comCartao.getEconomiaPorTipo().get(TipoPreco.CARTAO)).isEqualByComparingTo("3.00");
+        assertThat(comCartao.getEconomiaPorTipo().get(TipoPreco.ATACADO)).isEqualByComparingTo("0.50");
+    }
+
+    @Test
+    void totaisIguaisAoCalculoDireto() {
+        Random aleatorio = new Random(20261018L);
+        Mercado[] mercados = Mercado.values();
+        TipoPreco[] tipos = TipoPreco.values();
+
+        for (int rodada = 0; rodada < 300; rodada++) {
+            int itens = aleatorio.nextInt(12);
+            List<Object[]> produtos = new ArrayList<>();
+            List<Object[]> precos = new ArrayList<>();
+            for (long id = 1; id <= itens; id++) {
+                produtos.add(produto(id, "ITEM " + id));
+                for (Mercado mercado : mercados) {
+                    for (TipoPreco tipo : tipos) {
+                        if (aleatorio.nextInt(3) == 0) {
+                            precos.add(preco(id, mercado, tipo, BigDecimal.valueOf(50 + aleatorio.nextInt(5000), 2).toPlainString()));
+                        }
+                    }
+                }
+            }
+            Set<TipoPreco> aceitos = EnumSet.noneOf(TipoPreco.class);
+            if (aleatorio.nextBoolean()) aceitos.add(TipoPreco.VAREJO);
+            if (aleatorio.nextBoolean()) aceitos.add(TipoPreco.ATACADO);
+            Set<Mercado> cartoes = EnumSet.noneOf(Mercado.class);
+            for (Mercado mercado : mercados) {
+                if (aleatorio.nextBoolean()) cartoes.add(mercado);
+            }
+            int maxMercados = 1 + aleatorio.nextInt(mercados.length);
+
+            ResultadoCestaDTO resultado = otimizador(produtos, precos).otimizar(aceitos, cartoes, maxMercados);
+            Referencia referencia = new Referencia(itens, precos, aceitos, cartoes);
+
+            // Mercados isolados
+            for (TotalMercadoDTO total : resultado.getMercados()) {
+                long mascara = 1L << total.getMercado().ordinal();
+                assertThat(total.getTotal()).isEqualByComparingTo(referencia.total(mascara));
+                assertThat(total.getItensSemPreco()).isEqualTo(referencia.faltando(mascara));
+            }
+            // Melhor divisão: cobre mais itens, depois é a mais barata, entre os conjuntos de até N mercados
+            BigDecimal melhorTotal = null;
+            int melhorFaltando = Integer.MAX_VALUE;
+            for (long mascara = 1; mascara < (1L << mercados.length); mascara++) {
+                if (Long.bitCount(mascara) > maxMercados) continue;
+                int faltando = referencia.faltando(mascara);
+                BigDecimal total = referencia.total(mascara);
+                if (faltando < melhorFaltando || (faltando == melhorFaltando && total.compareTo(melhorTotal) < 0)) {
+                    melhorFaltando = faltando;
+                    melhorTotal = total;
+                }
+            }
+            assertThat(resultado.getDivisao().getItensSemPreco()).isEqualTo(melhorFaltando);
+            assertThat(resultado.getDivisao().getTotal()).isEqualByComparingTo(melhorTotal);
+            assertThat(resultado.getDivisao().getMercados()).hasSizeLessThanOrEqualTo(maxMercados);
+        }
+    }
+
+    private OtimizadorCesta otimizador(List<Object[]> produtos, List<Object[]> precos) {
+        when(produtoRepository.findIdENomeNaLista()).thenReturn(produtos);
+        when(precoAtualRepository.findValoresDaLista()).thenReturn(precos);
+        return new OtimizadorCesta(produtoRepository, precoAtualRepository, new VersaoDados());
+    }
+
+    private static Object[] produto(Long id, String nome) {
+        return new Object[]{id, nome};
+    }
+
+    private static Object[] preco(Long id, Mercado mercado, TipoPreco tipo, String valor) {
+        return new Object[]{id, mercado, tipo, new BigDecimal(valor)};
+    }
+
+    // Menor preço aceito de cada item em cada mercado, calculado sem a matriz
+    private static final class Referencia {
+        private final int itens;
+        private final Map<String, BigDecimal> efetivo = new HashMap<>();
+
+        Referencia(int itens, List<Object[]> precos, Set<TipoPreco> aceitos, Set<Mercado> cartoes) {
+            this.itens = itens;
+            for (Object[] linha : precos) {
+                Mercado mercado = (Mercado) linha[1];
+                TipoPreco tipo = (TipoPreco) linha[2];
+                boolean aceito = tipo == TipoPreco.CARTAO ? cartoes.contains(mercado) : aceitos.contains(tipo);
+                if (aceito) {
+                    efetivo.merge(linha[0] + "|" + mercado, (BigDecimal) linha[3], BigDecimal::min);
+                }
+            }
+        }
+
+        BigDecimal total(long mascara) {
+            BigDecimal total = BigDecimal.ZERO;
+            for (long id = 1; id <= itens; id++) {
+                BigDecimal menor = menor(id, mascara);
+                if (menor != null) total = total.add(menor);
+            }
+            return total;
+        }
+
+        int faltando(long mascara) {
+            int faltando = 0;
+            for (long id = 1; id <= itens; id++) {
+                if (menor(id, mascara) == null) faltando++;
+            }
+            return faltando;
+        }
+
+        private BigDecimal menor(long id, long mascara) {
+            BigDecimal menor = null;
+            for (Mercado mercado : Mercado.values()) {
+                if ((mascara & (1L << mercado.ordinal())) == 0) continue;
+                BigDecimal valor = efetivo.get(id + "|" + mercado);
+                if (valor != null && (menor == null || valor.compareTo(menor) < 0)) menor = valor;
+            }
+            return menor;
+        }
+    }
+}
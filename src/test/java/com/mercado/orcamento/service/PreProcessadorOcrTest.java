@@ -0,0 +1,86 @@
+package com.mercado.orcamento.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Cada recorte é escalado pela altura das suas próprias letras, e o DPI informado acompanha a escala.
+ */
+class PreProcessadorOcrTest {
+
+    private final PreProcessadorOcr preProcessador = new PreProcessadorOcr(true, 30, 4000, true, 8);
+
+    @Test
+    void letrasPequenasSaoAmpliadasEGrandesReduzidas() {
+        ImagemCinza foto = foto(3000, 2000, new Texto("ARROZ TIPO 1 PACOTE 5KG", 36, 300),
+                new Texto("R$ 24,90", 240, 1200));
+
+        List<PreProcessadorOcr.Recorte> recortes = preProcessador.preparar(foto);
+
+        // Descrição em cima; o preço pode sair em mais de um bloco (o espaço depois do R$ é largo)
+        assertThat(recortes).hasSizeGreaterThanOrEqualTo(2);
+        PreProcessadorOcr.Recorte descricao = recortes.get(0);
+        assertThat(descricao.getEscala()).isGreaterThan(1.0);
+        assertThat(descricao.getDpi()).isEqualTo(300);
+        for (PreProcessadorOcr.Recorte preco : recortes.subList(1, recortes.size())) {
+            // Fonte 6,7x maior: escala proporcionalmente menor
+            assertThat(descricao.getEscala() / preco.getEscala()).isCloseTo(240.0 / 36, within(1.0));
+            // Dentro dos limites de escala, a altura-x chega ao alvo e o DPI fica na referência
+            assertThat(preco.getDpi()).isEqualTo(300);
+        }
+    }
+
+    @Test
+    void ampliacaoLimitadaReduzODpi() {
+        // Letras de poucos pixels: a ampliação para no limite e o DPI diz que o texto continua pequeno
+        ImagemCinza foto = foto(1600, 1000, new Texto("PRECO POR QUILO DO PRODUTO", 10, 400));
+
+        List<PreProcessadorOcr.Recorte> recortes = preProcessador.preparar(foto);
+
+        PreProcessadorOcr.Recorte maior = recortes.stream()
+                .max(Comparator.comparingDouble(PreProcessadorOcr.Recorte::getEscala))
+                .orElseThrow();
+        assertThat(maior.getEscala()).isEqualTo(4.0);
+        assertThat(maior.getDpi()).isLessThan(300);
+    }
+
+    @Test
+    void desligadoEntregaAFotoOriginal() {
+        ImagemCinza foto = foto(1200, 800, new Texto("LEITE INTEGRAL", 40, 300));
+
+        List<PreProcessadorOcr.Recorte> recortes = new PreProcessadorOcr(false, 30, 4000, true, 8).preparar(foto);
+
+        assertThat(recortes).singleElement().satisfies(r -> {
+            assertThat(r.getImagem()).isSameAs(foto);
+            assertThat(r.getDpi()).isZero();
+        });
+    }
+
+    private static ImagemCinza foto(int largura, int altura, Texto... textos) {
+        BufferedImage imagem = new BufferedImage(largura, altura, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = imagem.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, largura, altura);
+        g.setColor(Color.BLACK);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        for (Texto texto : textos) {
+            g.setFont(new Font(Font.SANS_SERIF, Font.BOLD, texto.tamanho));
+            g.drawString(texto.conteudo, 100, texto.base);
+        }
+        g.dispose();
+        return ImagemCinza.deImagem(imagem);
+    }
+
+    private record Texto(String conteudo, int tamanho, int base) {
+    }
+}